@@ -0,0 +1,123 @@
+package github.javaguide.load;
+
+import github.javaguide.Hello;
+import github.javaguide.HelloService;
+import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.proxy.RpcClientProxy;
+import github.javaguide.remoting.transport.RpcRequestTransport;
+import github.javaguide.remoting.transport.netty.client.NettyRpcClient;
+import github.javaguide.remoting.transport.socket.SocketRpcClient;
+import org.HdrHistogram.HistogramLogWriter;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Drives a fixed rate of {@link HelloService#hello(Hello)} calls through {@link RpcClientProxy} against the server of
+ * example-server, see {@link OpenLoopLoadGenerator}. Options are given as {@code --name=value}:
+ * <pre>
+ * rate          calls started per second                              1000
+ * duration      seconds measured                                      60
+ * warmup        seconds run before measuring                          10
+ * interval      seconds between two report lines                      1
+ * threads       caller threads, i.e. the most calls in flight         64
+ * transport     netty or socket                                       netty
+ * serialization one of SerializationTypeEnum, the client default when empty
+ * compress      one of CompressTypeEnum, rpc.compress.type when empty
+ * messageBytes  length of the hello message                           64
+ * group/version of the referenced service                             test1/version1
+ * histogramLog  file the interval histograms are written to (HdrHistogram log format)
+ * </pre>
+ * e.g.
+ * {@code mvn -q -pl example-client exec:java -Dexec.mainClass=github.javaguide.load.LoadGeneratorMain -Dexec.args="--rate=5000 --serialization=kyro"}
+ */
+public class LoadGeneratorMain {
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("rate", "1000");
+        DEFAULTS.put("duration", "60");
+        DEFAULTS.put("warmup", "10");
+        DEFAULTS.put("interval", "1");
+        DEFAULTS.put("threads", "64");
+        DEFAULTS.put("transport", "netty");
+        DEFAULTS.put("serialization", "");
+        DEFAULTS.put("compress", "");
+        DEFAULTS.put("messageBytes", "64");
+        DEFAULTS.put("group", "test1");
+        DEFAULTS.put("version", "version1");
+        DEFAULTS.put("histogramLog", "");
+    }
+
+    public static void main(String[] args) throws InterruptedException, FileNotFoundException {
+        // the client logs every call at info level, which would be most of the work at a high rate
+        if (System.getProperty("org.slf4j.simpleLogger.defaultLogLevel") == null) {
+            System.setProperty("org.slf4j.simpleLogger.defaultLogLevel", "warn");
+        }
+        Map<String, String> options = parse(args);
+        RpcRequestTransport rpcRequestTransport;
+        switch (options.get("transport")) {
+            case "netty":
+                rpcRequestTransport = new NettyRpcClient();
+                break;
+            case "socket":
+                rpcRequestTransport = new SocketRpcClient();
+                break;
+            default:
+                throw new IllegalArgumentException("unknown transport: " + options.get("transport"));
+        }
+        RpcServiceConfig rpcServiceConfig = RpcServiceConfig.builder()
+                .group(options.get("group"))
+                .version(options.get("version"))
+                .serialization(options.get("serialization"))
+                .compress(options.get("compress"))
+                .build();
+        HelloService helloService = new RpcClientProxy(rpcRequestTransport, rpcServiceConfig).getProxy(HelloService.class);
+        Hello hello = new Hello(message(Integer.parseInt(options.get("messageBytes"))), "load");
+
+        String histogramLog = options.get("histogramLog");
+        PrintStream logStream = histogramLog.isEmpty() ? null : new PrintStream(histogramLog);
+        long errors;
+        try {
+            errors = new OpenLoopLoadGenerator(() -> helloService.hello(hello),
+                    Integer.parseInt(options.get("rate")),
+                    Integer.parseInt(options.get("threads")),
+                    Long.parseLong(options.get("warmup")),
+                    Long.parseLong(options.get("duration")),
+                    Long.parseLong(options.get("interval")),
+                    System.out,
+                    logStream == null ? null : new HistogramLogWriter(logStream)).run();
+        } finally {
+            if (logStream != null) {
+                logStream.close();
+            }
+        }
+        // the netty client keeps its event loop and the channels to the server open
+        System.exit(errors == 0 ? 0 : 1);
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            String name = arg.startsWith("--") && separator > 2 ? arg.substring(2, separator) : null;
+            if (name == null || !DEFAULTS.containsKey(name)) {
+                throw new IllegalArgumentException("unknown option [" + arg + "], expected --name=value with name one of " + DEFAULTS.keySet());
+            }
+            options.put(name, arg.substring(separator + 1));
+        }
+        return options;
+    }
+
+    private static String message(int length) {
+        StringBuilder message = new StringBuilder(length);
+        while (message.length() < length) {
+            message.append("hello rpc ");
+        }
+        message.setLength(length);
+        return message.toString();
+    }
+}
@@ -0,0 +1,177 @@
+package github.javaguide.load;
+
+import github.javaguide.utils.concurrent.threadpool.ThreadPoolFactoryUtil;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+
+import java.io.PrintStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load: calls are started on a fixed schedule of {@code rate} per second, whether or not the earlier ones
+ * have returned. A call that cannot start on time waits in the queue of the caller threads.
+ * <p>
+ * The response time of a call is measured from the time it was scheduled to start, so the time spent waiting behind
+ * slow calls is counted (coordinated omission correction). The service time from the actual start is recorded as well:
+ * the gap between the two is the queueing that a closed loop, which only sends when a caller is free, does not see.
+ * <p>
+ * Both are recorded in HdrHistograms. Every interval one line of percentiles is printed, and the interval histograms
+ * can be written to an HdrHistogram log for plotting. Intervals within the warmup are printed but left out of the
+ * summary.
+ */
+public final class OpenLoopLoadGenerator {
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final long DRAIN_TIMEOUT_SECONDS = 30;
+    private static final String RESPONSE_TAG = "response";
+    private static final String SERVICE_TAG = "service";
+
+    private final Runnable call;
+    private final int rate;
+    private final int threads;
+    private final long warmupSeconds;
+    private final long durationSeconds;
+    private final long intervalSeconds;
+    private final PrintStream out;
+    /**
+     * null when no HdrHistogram log is written
+     */
+    private final HistogramLogWriter logWriter;
+
+    private final Recorder responseTime = new Recorder(SIGNIFICANT_DIGITS);
+    private final Recorder serviceTime = new Recorder(SIGNIFICANT_DIGITS);
+    private final Histogram totalResponseTime = new Histogram(SIGNIFICANT_DIGITS);
+    private final Histogram totalServiceTime = new Histogram(SIGNIFICANT_DIGITS);
+    private final LongAdder errors = new LongAdder();
+    private Histogram intervalResponseTime;
+    private Histogram intervalServiceTime;
+    private ThreadPoolExecutor callers;
+    private long reportedIntervals;
+    private long totalErrors;
+
+    public OpenLoopLoadGenerator(Runnable call, int rate, int threads, long warmupSeconds, long durationSeconds,
+                                 long intervalSeconds, PrintStream out, HistogramLogWriter logWriter) {
+        if (rate <= 0 || threads <= 0 || durationSeconds <= 0 || intervalSeconds <= 0 || warmupSeconds < 0) {
+            throw new IllegalArgumentException("rate, threads, duration and interval must be positive, warmup must not be negative");
+        }
+        this.call = call;
+        this.rate = rate;
+        this.threads = threads;
+        this.warmupSeconds = warmupSeconds;
+        this.durationSeconds = durationSeconds;
+        this.intervalSeconds = intervalSeconds;
+        this.out = out;
+        this.logWriter = logWriter;
+    }
+
+    /**
+     * Run the warmup and the measurement, then wait for the calls still in flight and print the summary.
+     *
+     * @return the number of failed calls after the warmup
+     */
+    public long run() throws InterruptedException {
+        callers = (ThreadPoolExecutor) Executors.newFixedThreadPool(threads,
+                ThreadPoolFactoryUtil.createThreadFactory("load-caller", true));
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(
+                ThreadPoolFactoryUtil.createThreadFactory("load-reporter", true));
+        if (logWriter != null) {
+            logWriter.outputLogFormatVersion();
+            logWriter.outputStartTime(System.currentTimeMillis());
+            logWriter.outputLegend();
+        }
+        out.printf("%d calls/s for %ds after %ds of warmup, %d caller threads%n", rate, durationSeconds, warmupSeconds, threads);
+        out.printf("%8s %7s %9s %7s %9s %9s %9s %9s %9s %13s %8s%n", "time(s)", "phase", "calls/s", "errors",
+                "p50(ms)", "p90(ms)", "p99(ms)", "p99.9(ms)", "max(ms)", "svc p99(ms)", "queued");
+        reporter.scheduleAtFixedRate(this::report, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+
+        long start = System.nanoTime();
+        long calls = (warmupSeconds + durationSeconds) * rate;
+        for (long i = 0; i < calls; i++) {
+            // computed from the start instead of adding a rounded period, so the schedule does not drift
+            long intended = start + i * TimeUnit.SECONDS.toNanos(1) / rate;
+            long now;
+            while ((now = System.nanoTime()) < intended) {
+                LockSupport.parkNanos(intended - now);
+            }
+            callers.execute(() -> call(intended));
+        }
+
+        callers.shutdown();
+        if (!callers.awaitTermination(DRAIN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            out.printf("%d calls still queued after %ds, they are not counted%n", callers.getQueue().size(), DRAIN_TIMEOUT_SECONDS);
+            callers.shutdownNow();
+        }
+        reporter.shutdown();
+        reporter.awaitTermination(DRAIN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        // the calls that returned after the last scheduled report
+        report();
+        summary();
+        return totalErrors;
+    }
+
+    private void call(long intended) {
+        long started = System.nanoTime();
+        try {
+            call.run();
+        } catch (RuntimeException e) {
+            errors.increment();
+            return;
+        }
+        long done = System.nanoTime();
+        responseTime.recordValue(done - intended);
+        serviceTime.recordValue(done - started);
+    }
+
+    private void report() {
+        intervalResponseTime = responseTime.getIntervalHistogram(intervalResponseTime);
+        intervalServiceTime = serviceTime.getIntervalHistogram(intervalServiceTime);
+        long intervalErrors = errors.sumThenReset();
+        reportedIntervals++;
+        // the warmup is rounded up to whole intervals
+        boolean warmup = reportedIntervals * intervalSeconds <= warmupSeconds;
+        if (!warmup) {
+            totalResponseTime.add(intervalResponseTime);
+            totalServiceTime.add(intervalServiceTime);
+            totalErrors += intervalErrors;
+        }
+        if (logWriter != null) {
+            intervalResponseTime.setTag(RESPONSE_TAG);
+            intervalServiceTime.setTag(SERVICE_TAG);
+            logWriter.outputIntervalHistogram(intervalResponseTime);
+            logWriter.outputIntervalHistogram(intervalServiceTime);
+        }
+        double seconds = (intervalResponseTime.getEndTimeStamp() - intervalResponseTime.getStartTimeStamp()) / 1000.0;
+        out.printf("%8d %7s %9.0f %7d %9.3f %9.3f %9.3f %9.3f %9.3f %13.3f %8d%n",
+                reportedIntervals * intervalSeconds, warmup ? "warmup" : "measure",
+                seconds > 0 ? intervalResponseTime.getTotalCount() / seconds : 0.0, intervalErrors,
+                millis(intervalResponseTime, 50), millis(intervalResponseTime, 90), millis(intervalResponseTime, 99),
+                millis(intervalResponseTime, 99.9), intervalResponseTime.getMaxValue() / NANOS_PER_MILLI,
+                millis(intervalServiceTime, 99), callers.getQueue().size());
+    }
+
+    private void summary() {
+        long measured = totalResponseTime.getTotalCount();
+        out.printf("%n%d calls completed after the warmup (%.0f calls/s, %d scheduled), %d errors%n",
+                measured, measured / (double) durationSeconds, rate, totalErrors);
+        out.printf("%-30s %9s %9s %9s %9s %10s %9s%n", "", "p50(ms)", "p90(ms)", "p99(ms)", "p99.9(ms)", "p99.99(ms)", "max(ms)");
+        printPercentiles("response time (corrected)", totalResponseTime);
+        printPercentiles("service time (uncorrected)", totalServiceTime);
+    }
+
+    private void printPercentiles(String name, Histogram histogram) {
+        out.printf("%-30s %9.3f %9.3f %9.3f %9.3f %10.3f %9.3f%n", name, millis(histogram, 50), millis(histogram, 90),
+                millis(histogram, 99), millis(histogram, 99.9), millis(histogram, 99.99),
+                histogram.getMaxValue() / NANOS_PER_MILLI);
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / NANOS_PER_MILLI;
+    }
+}
@@ -0,0 +1,142 @@
+package github.javaguide.benchmark;
+
+import github.javaguide.Hello;
+import github.javaguide.HelloService;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Realistic message bodies for the benchmarks, built from the {@link HelloService} example.
+ * Text is drawn from a fixed vocabulary with a fixed seed so that every run compresses the same data.
+ */
+public final class Payloads {
+
+    private static final String[] WORDS = {"rpc", "netty", "zookeeper", "service", "hello", "request", "response",
+            "channel", "client", "server", "registry", "provider", "consumer", "group", "version", "timeout",
+            "serialize", "compress", "message", "future", "thread", "pool", "address", "balance", "retry"};
+
+    private static final String BLOB = "blob";
+    private static final int BLOB_SIZE = 64 * 1024;
+
+    private Payloads() {
+    }
+
+    /**
+     * @param size one of {@code small} (a single hello call), {@code medium} (~4 KB), {@code large} (~64 KB),
+     *             {@code blob} (a 64 KB byte[], half text and half random bytes)
+     */
+    public static Object create(String type, String size) {
+        switch (type) {
+            case "request":
+                return request(size);
+            case "response":
+                return response(size);
+            default:
+                throw new IllegalArgumentException("unknown payload type: " + type);
+        }
+    }
+
+    public static RpcRequest request(String size) {
+        if (BLOB.equals(size)) {
+            return RpcRequest.builder()
+                    .requestId(UUID.randomUUID().toString())
+                    .interfaceName(HelloService.class.getName())
+                    .methodName("upload")
+                    .parameters(new Object[]{blob()})
+                    .paramTypes(new Class<?>[]{byte[].class})
+                    .group("test1")
+                    .version("version1")
+                    .build();
+        }
+        List<Hello> hellos = hellos(size);
+        return RpcRequest.builder()
+                .requestId(UUID.randomUUID().toString())
+                .interfaceName(HelloService.class.getName())
+                .methodName("hello")
+                .parameters(hellos.size() == 1 ? new Object[]{hellos.get(0)} : new Object[]{hellos})
+                .paramTypes(hellos.size() == 1 ? new Class<?>[]{Hello.class} : new Class<?>[]{List.class})
+                .group("test1")
+                .version("version1")
+                .build();
+    }
+
+    public static RpcResponse<Object> response(String size) {
+        if (BLOB.equals(size)) {
+            return RpcResponse.success(blob(), UUID.randomUUID().toString());
+        }
+        List<Hello> hellos = hellos(size);
+        Object data = hellos.size() == 1 ? hellos.get(0).getMessage() : hellos;
+        return RpcResponse.success(data, UUID.randomUUID().toString());
+    }
+
+    /**
+     * a single argument of {@link HelloService#hello(Hello)} whose message carries the text of {@link #hellos(String)}
+     */
+    public static Hello hello(String size) {
+        List<Hello> hellos = hellos(size);
+        StringBuilder message = new StringBuilder();
+        for (Hello hello : hellos) {
+            message.append(hello.getMessage()).append(". ").append(hello.getDescription()).append(". ");
+        }
+        return new Hello(message.toString(), hellos.get(0).getDescription());
+    }
+
+    public static List<Hello> hellos(String size) {
+        int count;
+        switch (size) {
+            case "small":
+                count = 1;
+                break;
+            case "medium":
+                count = 32;
+                break;
+            case "large":
+                count = 512;
+                break;
+            default:
+                throw new IllegalArgumentException("unknown payload size: " + size);
+        }
+        Random random = new Random(42);
+        List<Hello> hellos = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            hellos.add(new Hello(sentence(random, 3 + random.nextInt(5)), sentence(random, 8 + random.nextInt(12))));
+        }
+        return hellos;
+    }
+
+    public static byte[] blob() {
+        Random random = new Random(42);
+        byte[] blob = new byte[BLOB_SIZE];
+        int i = 0;
+        while (i < BLOB_SIZE / 2) {
+            byte[] text = (sentence(random, 16) + '\n').getBytes(StandardCharsets.UTF_8);
+            int length = Math.min(text.length, BLOB_SIZE / 2 - i);
+            System.arraycopy(text, 0, blob, i, length);
+            i += length;
+        }
+        byte[] noise = new byte[BLOB_SIZE - i];
+        random.nextBytes(noise);
+        System.arraycopy(noise, 0, blob, i, noise.length);
+        return blob;
+    }
+
+    private static String sentence(Random random, int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+            if (random.nextInt(4) == 0) {
+                sb.append(random.nextInt(10_000));
+            }
+        }
+        return sb.toString();
+    }
+}
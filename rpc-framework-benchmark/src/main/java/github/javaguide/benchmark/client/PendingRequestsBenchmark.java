@@ -0,0 +1,67 @@
+package github.javaguide.benchmark.client;
+
+import github.javaguide.remoting.dto.RpcMessage;
+import github.javaguide.remoting.transport.netty.client.UnprocessedRequests;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One request/response correlation round trip from several caller threads sharing a connection:
+ * generate an id, register the pending future, then look it up and remove it as the response handler does.
+ * <ul>
+ *     <li>{@code uuidStringIds}: the previous scheme, {@code UUID.randomUUID().toString()} as key of a shared ConcurrentHashMap</li>
+ *     <li>{@code connectionLongIds}: per-connection long ids and the striped {@link UnprocessedRequests} table</li>
+ * </ul>
+ * <pre>
+ * mvn -pl rpc-framework-benchmark -am package -DskipTests
+ * java -jar rpc-framework-benchmark/target/benchmarks.jar PendingRequestsBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class PendingRequestsBenchmark {
+
+    private final Map<String, CompletableFuture<RpcMessage>> uuidTable = new ConcurrentHashMap<>();
+    private final CompletableFuture<RpcMessage> future = new CompletableFuture<>();
+    private UnprocessedRequests unprocessedRequests;
+
+    @Setup
+    public void setup() {
+        unprocessedRequests = UnprocessedRequests.get(new EmbeddedChannel());
+    }
+
+    @Benchmark
+    public Object uuidStringIds() {
+        String requestId = UUID.randomUUID().toString();
+        uuidTable.put(requestId, future);
+        return uuidTable.remove(requestId);
+    }
+
+    @Benchmark
+    public Object connectionLongIds() {
+        long requestId = unprocessedRequests.nextRequestId();
+        unprocessedRequests.put(requestId, future);
+        return unprocessedRequests.remove(requestId);
+    }
+}
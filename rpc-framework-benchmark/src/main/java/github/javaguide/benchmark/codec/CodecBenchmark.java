@@ -0,0 +1,137 @@
+package github.javaguide.benchmark.codec;
+
+import github.javaguide.benchmark.Payloads;
+import github.javaguide.compress.Compress;
+import github.javaguide.extension.ExtensionLoader;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.serialize.Serializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every {@link Serializer} x {@link Compress} combination on RpcRequest/RpcResponse bodies: a small DTO, a large list
+ * and a byte blob. {@code encode} serializes and compresses into a pooled direct buffer like the netty transport,
+ * {@code decode} reverses it. Besides the throughput, the {@code wireBytes} counter reports the encoded body size.
+ * <p>
+ * {@link #main(String[])} runs the whole matrix with the gc profiler (allocation rate per operation) and writes the
+ * results as JSON, to be compared between runs:
+ * <pre>
+ * mvn -pl rpc-framework-benchmark -am package -DskipTests
+ * java -cp rpc-framework-benchmark/target/benchmarks.jar github.javaguide.benchmark.codec.CodecBenchmark [result.json]
+ * </pre>
+ * or a subset through the JMH command line, e.g.
+ * {@code java -jar benchmarks.jar CodecBenchmark -p serialization=kyro -prof gc -rf json -rff result.json}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodecBenchmark {
+
+    private static final String DEFAULT_RESULT_FILE = "rpc-framework-benchmark/target/codec-benchmark.json";
+
+    @Param({"kyro", "protostuff", "hessian", "hessian2", "fury"})
+    private String serialization;
+
+    @Param({"none", "gzip", "lz4", "zstd", "snappy"})
+    private String compress;
+
+    @Param({"request", "response"})
+    private String type;
+
+    @Param({"small", "large", "blob"})
+    private String size;
+
+    private Serializer serializer;
+    private Compress compressor;
+    private Object payload;
+    private Class<?> payloadClass;
+    private ByteBuf encoded;
+    private ByteBuf serialized;
+    private ByteBuf out;
+
+    /**
+     * Size of the body written by the last operation. The counter is assigned instead of accumulated, so the
+     * reported value is the body size and not a total over the iteration.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class WireSize {
+        public long wireBytes;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        serializer = ExtensionLoader.getExtensionLoader(Serializer.class).getExtension(serialization);
+        compressor = ExtensionLoader.getExtensionLoader(Compress.class).getExtension(compress);
+        payload = Payloads.create(type, size);
+        payloadClass = "request".equals(type) ? RpcRequest.class : RpcResponse.class;
+        serialized = PooledByteBufAllocator.DEFAULT.directBuffer();
+        encoded = PooledByteBufAllocator.DEFAULT.directBuffer();
+        out = PooledByteBufAllocator.DEFAULT.directBuffer();
+        encode(encoded);
+        System.out.printf("%n[%s %s %s %s] %d bytes on the wire%n", serialization, compress, type, size, encoded.readableBytes());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        serialized.release();
+        encoded.release();
+        out.release();
+    }
+
+    @Benchmark
+    public int encode(WireSize wireSize) {
+        out.clear();
+        encode(out);
+        wireSize.wireBytes = out.readableBytes();
+        return out.readableBytes();
+    }
+
+    @Benchmark
+    public Object decode(WireSize wireSize) {
+        wireSize.wireBytes = encoded.readableBytes();
+        serialized.clear();
+        compressor.decompress(encoded.duplicate(), serialized);
+        return serializer.deserialize(serialized, payloadClass);
+    }
+
+    private void encode(ByteBuf target) {
+        serialized.clear();
+        serializer.serialize(payload, serialized);
+        compressor.compress(serialized, target);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CodecBenchmark.class.getName())
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(args.length > 0 ? args[0] : DEFAULT_RESULT_FILE)
+                .build()).run();
+    }
+}
@@ -0,0 +1,88 @@
+package github.javaguide.benchmark.compress;
+
+import github.javaguide.benchmark.Payloads;
+import github.javaguide.compress.Compress;
+import github.javaguide.extension.ExtensionLoader;
+import github.javaguide.serialize.Serializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compress and decompress hessian serialized RpcRequest/RpcResponse bodies with every {@link Compress} extension,
+ * using pooled direct buffers like the netty transport does. Compressed sizes are printed in the setup.
+ * <pre>
+ * mvn -pl rpc-framework-benchmark -am package -DskipTests
+ * java -jar rpc-framework-benchmark/target/benchmarks.jar CompressBenchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompressBenchmark {
+
+    @Param({"gzip", "lz4", "zstd", "snappy"})
+    private String compress;
+
+    @Param({"request", "response"})
+    private String type;
+
+    @Param({"small", "medium", "large"})
+    private String size;
+
+    private Compress compressor;
+    private ByteBuf raw;
+    private ByteBuf compressed;
+    private ByteBuf out;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        compressor = ExtensionLoader.getExtensionLoader(Compress.class).getExtension(compress);
+        Serializer serializer = ExtensionLoader.getExtensionLoader(Serializer.class).getExtension("hessian");
+        raw = PooledByteBufAllocator.DEFAULT.directBuffer();
+        serializer.serialize(Payloads.create(type, size), raw);
+        compressed = PooledByteBufAllocator.DEFAULT.directBuffer();
+        compressor.compress(raw.duplicate(), compressed);
+        out = PooledByteBufAllocator.DEFAULT.directBuffer(raw.readableBytes() * 2);
+        System.out.printf("%n[%s %s %s] raw %d bytes, compressed %d bytes (%.1f%%)%n", compress, type, size,
+                raw.readableBytes(), compressed.readableBytes(), 100.0 * compressed.readableBytes() / raw.readableBytes());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        raw.release();
+        compressed.release();
+        out.release();
+    }
+
+    @Benchmark
+    public int compress() {
+        out.clear();
+        compressor.compress(raw.duplicate(), out);
+        return out.readableBytes();
+    }
+
+    @Benchmark
+    public int decompress() {
+        out.clear();
+        compressor.decompress(compressed.duplicate(), out);
+        return out.readableBytes();
+    }
+}
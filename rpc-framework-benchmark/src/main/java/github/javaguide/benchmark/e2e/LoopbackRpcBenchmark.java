@@ -0,0 +1,197 @@
+package github.javaguide.benchmark.e2e;
+
+import github.javaguide.Hello;
+import github.javaguide.HelloService;
+import github.javaguide.benchmark.Payloads;
+import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.enums.ServiceRegistryEnum;
+import github.javaguide.proxy.RpcClientProxy;
+import github.javaguide.remoting.transport.RpcRequestTransport;
+import github.javaguide.remoting.transport.netty.client.NettyRpcClient;
+import github.javaguide.remoting.transport.netty.server.NettyRpcServer;
+import github.javaguide.remoting.transport.socket.SocketRpcClient;
+import github.javaguide.remoting.transport.socket.SocketRpcServer;
+import github.javaguide.utils.concurrent.threadpool.ThreadPoolFactoryUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatFactory;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole calls through {@link RpcClientProxy} to a server started in the same JVM: client encoding, the loopback
+ * connection, server decoding, dispatch to the service and the way back. The server publishes to the in-memory
+ * registry ({@code rpc.registry.type=local}) so that no ZooKeeper is needed.
+ * <ul>
+ *     <li>{@code throughput}: calls per second over all the caller threads</li>
+ *     <li>{@code latency}: the distribution of single calls, JMH reports p50/p90/p99/p99.9/p99.99 of the samples</li>
+ * </ul>
+ * The socket transport opens a connection per call and always uses java serialization, its {@code serialization}
+ * parameter is ignored. Only one server runs per fork, both transports listen on {@link NettyRpcServer#PORT}.
+ * <p>
+ * {@link #main(String[])} runs the matrix at 1, 4, 16 and 64 caller threads and writes all results into one JSON file:
+ * <pre>
+ * mvn -pl rpc-framework-benchmark -am package -DskipTests
+ * java -cp rpc-framework-benchmark/target/benchmarks.jar github.javaguide.benchmark.e2e.LoopbackRpcBenchmark [result.json]
+ * </pre>
+ * or a single point through the JMH command line, e.g.
+ * {@code java -jar benchmarks.jar LoopbackRpcBenchmark -p transport=netty -p serialization=kyro -p size=small -t 16}.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+// keep the per-call info logs of client and server out of the measurement
+@Fork(value = 1, jvmArgsAppend = {"-Drpc.registry.type=local", "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn"})
+public class LoopbackRpcBenchmark {
+
+    private static final String DEFAULT_RESULT_FILE = "rpc-framework-benchmark/target/loopback-rpc-benchmark.json";
+    private static final int[] CONCURRENCY = {1, 4, 16, 64};
+    private static final String GROUP = "benchmark";
+    private static final String VERSION = "1";
+    private static final long SERVER_START_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    @Param({"netty", "socket"})
+    private String transport;
+
+    @Param({"kyro", "protostuff", "hessian", "hessian2", "fury"})
+    private String serialization;
+
+    @Param({"small", "medium", "large"})
+    private String size;
+
+    private RpcRequestTransport rpcRequestTransport;
+    private Thread serverThread;
+    private HelloService helloService;
+    private Hello hello;
+
+    /**
+     * returns the message, so that the response is as large as the request
+     */
+    public static class EchoHelloService implements HelloService {
+        @Override
+        public String hello(Hello hello) {
+            return hello.getMessage();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        // also when the benchmark runs without forking (-f 0)
+        System.setProperty(RpcConfigEnum.REGISTRY_TYPE.getPropertyValue(), ServiceRegistryEnum.LOCAL.getName());
+        RpcServiceConfig serverConfig = RpcServiceConfig.builder()
+                .group(GROUP).version(VERSION).service(new EchoHelloService()).build();
+        Runnable server;
+        switch (transport) {
+            case "netty":
+                NettyRpcServer nettyRpcServer = new NettyRpcServer();
+                nettyRpcServer.registerService(serverConfig);
+                server = nettyRpcServer::start;
+                rpcRequestTransport = new NettyRpcClient();
+                break;
+            case "socket":
+                SocketRpcServer socketRpcServer = new SocketRpcServer();
+                socketRpcServer.registerService(serverConfig);
+                server = socketRpcServer::start;
+                rpcRequestTransport = new SocketRpcClient();
+                break;
+            default:
+                throw new IllegalArgumentException("unknown transport: " + transport);
+        }
+        serverThread = new Thread(server, transport + "-rpc-server");
+        serverThread.setDaemon(true);
+        serverThread.start();
+        awaitServer();
+        RpcServiceConfig clientConfig = RpcServiceConfig.builder()
+                .group(GROUP).version(VERSION).serialization(serialization).build();
+        helloService = new RpcClientProxy(rpcRequestTransport, clientConfig).getProxy(HelloService.class);
+        hello = Payloads.hello(size);
+        // fail the trial early instead of measuring errors
+        if (!hello.getMessage().equals(helloService.hello(hello))) {
+            throw new IllegalStateException("unexpected response from the " + transport + " server");
+        }
+    }
+
+    /**
+     * stop the non-daemon threads of client and server, the forked VM would otherwise wait for them before exiting
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (rpcRequestTransport instanceof NettyRpcClient) {
+            ((NettyRpcClient) rpcRequestTransport).close();
+        }
+        // NettyRpcServer shuts its event loops down when start() is interrupted, the socket server's pool is shared
+        serverThread.interrupt();
+        ThreadPoolFactoryUtil.shutDownAllThreadPool();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public String throughput() {
+        return helloService.hello(hello);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public String latency() {
+        return helloService.hello(hello);
+    }
+
+    /**
+     * the servers block in start() without telling when they listen, poll the port they bind
+     */
+    private static void awaitServer() throws IOException, InterruptedException {
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLocalHost().getHostAddress(), NettyRpcServer.PORT);
+        long deadline = System.currentTimeMillis() + SERVER_START_TIMEOUT_MILLIS;
+        while (true) {
+            try (Socket socket = new Socket()) {
+                socket.connect(address, 1000);
+                return;
+            } catch (IOException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        List<RunResult> results = new ArrayList<>();
+        for (int threads : CONCURRENCY) {
+            results.addAll(run(new OptionsBuilder().threads(threads).param("transport", "netty")));
+            // java serialization only, one serializer is enough
+            results.addAll(run(new OptionsBuilder().threads(threads).param("transport", "socket").param("serialization", "hessian")));
+        }
+        ResultFormatFactory.getInstance(ResultFormatType.JSON, args.length > 0 ? args[0] : DEFAULT_RESULT_FILE).writeOut(results);
+    }
+
+    private static List<RunResult> run(ChainedOptionsBuilder options) throws RunnerException {
+        return new ArrayList<>(new Runner(options.include(LoopbackRpcBenchmark.class.getName()).build()).run());
+    }
+}
@@ -0,0 +1,85 @@
+package github.javaguide.benchmark.serialize;
+
+import github.javaguide.benchmark.Payloads;
+import github.javaguide.extension.ExtensionLoader;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.serialize.Serializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialize and deserialize RpcRequest/RpcResponse bodies into pooled direct buffers with the Hessian 1
+ * ({@code hessian}) and Hessian 2 ({@code hessian2}) serializers. Serialized sizes are printed in the setup.
+ * <pre>
+ * mvn -pl rpc-framework-benchmark -am package -DskipTests
+ * java -jar rpc-framework-benchmark/target/benchmarks.jar SerializeBenchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializeBenchmark {
+
+    @Param({"hessian", "hessian2"})
+    private String serialization;
+
+    @Param({"request", "response"})
+    private String type;
+
+    @Param({"small", "medium", "large"})
+    private String size;
+
+    private Serializer serializer;
+    private Object payload;
+    private Class<?> payloadClass;
+    private ByteBuf serialized;
+    private ByteBuf out;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        serializer = ExtensionLoader.getExtensionLoader(Serializer.class).getExtension(serialization);
+        payload = Payloads.create(type, size);
+        payloadClass = "request".equals(type) ? RpcRequest.class : RpcResponse.class;
+        serialized = PooledByteBufAllocator.DEFAULT.directBuffer();
+        serializer.serialize(payload, serialized);
+        out = PooledByteBufAllocator.DEFAULT.directBuffer(serialized.readableBytes() * 2);
+        System.out.printf("%n[%s %s %s] serialized %d bytes%n", serialization, type, size, serialized.readableBytes());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        serialized.release();
+        out.release();
+    }
+
+    @Benchmark
+    public int serialize() {
+        out.clear();
+        serializer.serialize(payload, out);
+        return out.readableBytes();
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return serializer.deserialize(serialized.duplicate(), payloadClass);
+    }
+}
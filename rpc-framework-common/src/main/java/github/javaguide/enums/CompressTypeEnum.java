@@ -11,7 +11,12 @@ import lombok.Getter;
 @Getter
 public enum CompressTypeEnum {
 
-    GZIP((byte) 0x01, "gzip");
+    NONE((byte) 0x00, "none"),
+    GZIP((byte) 0x01, "gzip"),
+    LZ4((byte) 0x02, "lz4"),
+    ZSTD((byte) 0x03, "zstd"),
+    SNAPPY((byte) 0x04, "snappy"),
+    ZSTD_DICT((byte) 0x05, "zstd-dict");
 
     private final byte code;
     private final String name;
@@ -25,4 +30,13 @@ public enum CompressTypeEnum {
         return null;
     }
 
+    public static CompressTypeEnum getByName(String name) {
+        for (CompressTypeEnum c : CompressTypeEnum.values()) {
+            if (c.name.equals(name)) {
+                return c;
+            }
+        }
+        throw new IllegalArgumentException("unknown compress type: " + name);
+    }
+
 }
@@ -8,7 +8,112 @@ import lombok.Getter;
 public enum RpcConfigEnum {
 
     RPC_CONFIG_PATH("rpc.properties"),
-    ZK_ADDRESS("rpc.zookeeper.address");
+    ZK_ADDRESS("rpc.zookeeper.address"),
+    /**
+     * registry used to publish and discover services, one of the names of ServiceRegistryEnum, zk by default
+     */
+    REGISTRY_TYPE("rpc.registry.type"),
+    /**
+     * serialize and compress message bodies on the thread that sends them instead of the channel's event loop
+     */
+    PRE_ENCODE("rpc.codec.preEncode"),
+    /**
+     * bodies smaller than this many serialized bytes are sent uncompressed, to peers that sent the handshake
+     */
+    COMPRESS_MIN_SIZE("rpc.compress.minSize"),
+    /**
+     * sample compression ratio and cost per service method and stop compressing where it does not pay
+     */
+    COMPRESS_ADAPTIVE("rpc.compress.adaptive"),
+    /**
+     * adaptive mode keeps compressing a method only while compressed size / raw size stays at or below this percentage
+     */
+    COMPRESS_ADAPTIVE_MAX_RATIO_PERCENT("rpc.compress.adaptive.maxRatioPercent"),
+    /**
+     * adaptive mode keeps compressing a method only while each saved byte costs at most this many nanoseconds of CPU
+     */
+    COMPRESS_ADAPTIVE_MAX_NANOS_PER_SAVED_BYTE("rpc.compress.adaptive.maxNanosPerSavedByte"),
+    /**
+     * zstd compression level, defaults to the zstd default level (3)
+     */
+    ZSTD_LEVEL("rpc.compress.zstd.level"),
+    /**
+     * number of idle native zstd contexts kept for reuse per kind, twice the number of processors by default
+     */
+    ZSTD_POOL_SIZE("rpc.compress.zstd.poolSize"),
+    /**
+     * directory with the trained zstd dictionaries, one {@code <service>-<version>.dict} file each
+     */
+    ZSTD_DICT_DIR("rpc.compress.zstd.dictDir"),
+    /**
+     * keep every N-th serialized body of each service as a sample for training zstd dictionaries, 0 disables sampling
+     */
+    ZSTD_DICT_SAMPLE_RATE("rpc.compress.zstd.dictSampleRate"),
+    /**
+     * largest body a compressed message may declare to decompress to, in bytes, 4 times the max frame length (32MB)
+     * by default. The declared length comes from the peer and is checked before any buffer is allocated for it
+     */
+    COMPRESS_MAX_DECOMPRESSED_SIZE("rpc.compress.maxDecompressedSize"),
+    /**
+     * compress type used for requests and responses, one of the names of CompressTypeEnum, gzip by default
+     */
+    COMPRESS_TYPE("rpc.compress.type"),
+    /**
+     * most connections a client opens to one provider address, another one is opened while all of them have requests
+     * in flight, 1 by default
+     */
+    CLIENT_CONNECTIONS_PER_ADDRESS("rpc.client.connectionsPerAddress"),
+    /**
+     * seconds without requests after which an extra connection to an address is closed, 60 by default
+     */
+    CLIENT_CONNECTION_IDLE_TIMEOUT("rpc.client.connectionIdleTimeout"),
+    /**
+     * milliseconds to wait before connecting again to an address after the first failure, doubled after every further
+     * failure and randomized between half and all of it, 100 by default
+     */
+    CLIENT_RECONNECT_BACKOFF("rpc.client.reconnectBackoff"),
+    /**
+     * upper bound of the reconnect backoff in milliseconds, 10000 by default
+     */
+    CLIENT_RECONNECT_MAX_BACKOFF("rpc.client.reconnectMaxBackoff"),
+    /**
+     * threads that complete the futures returned by CompletableFuture methods of referenced services, so that the
+     * callbacks of the caller do not run on the netty event loop, the number of processors by default
+     */
+    CLIENT_CALLBACK_THREADS("rpc.client.callbackThreads"),
+    /**
+     * milliseconds a call waits for its response when neither the reference nor the method sets a timeout,
+     * 5000 by default, 0 waits forever
+     */
+    CLIENT_REQUEST_TIMEOUT("rpc.client.requestTimeout"),
+    /**
+     * highest protocol version offered in the connection handshake, 2 by default, 1 keeps every connection on v1
+     */
+    PROTOCOL_MAX_VERSION("rpc.protocol.maxVersion"),
+    /**
+     * whether methods are interned to per-connection ids on v2 connections, true by default
+     */
+    PROTOCOL_METHOD_ID("rpc.protocol.methodId"),
+    /**
+     * whether the request/response envelope of v2 frames is written in a fixed binary layout, true by default
+     */
+    PROTOCOL_BINARY_ENVELOPE("rpc.protocol.binaryEnvelope"),
+    /**
+     * whether class names written by kryo and hessian are replaced by per-connection ids on v2 connections, false by default
+     */
+    SERIALIZE_CLASS_DICTIONARY("rpc.serialize.classDictionary"),
+    /**
+     * number of idle Kryo instances kept for reuse, twice the number of processors by default
+     */
+    KRYO_POOL_SIZE("rpc.serialize.kryo.poolSize"),
+    /**
+     * maximum number of Fury instances kept for reuse, twice the number of processors by default
+     */
+    FURY_POOL_SIZE("rpc.serialize.fury.poolSize"),
+    /**
+     * number of idle Hessian 2 outputs and inputs kept for reuse, twice the number of processors by default
+     */
+    HESSIAN_POOL_SIZE("rpc.serialize.hessian.poolSize");
 
     private final String propertyValue;
 
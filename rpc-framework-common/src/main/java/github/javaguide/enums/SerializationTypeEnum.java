@@ -13,7 +13,9 @@ public enum SerializationTypeEnum {
 
     KYRO((byte) 0x01, "kyro"),
     PROTOSTUFF((byte) 0x02, "protostuff"),
-    HESSIAN((byte) 0X03, "hessian");
+    HESSIAN((byte) 0X03, "hessian"),
+    HESSIAN2((byte) 0x04, "hessian2"),
+    FURY((byte) 0x05, "fury");
 
     private final byte code;
     private final String name;
@@ -27,4 +29,13 @@ public enum SerializationTypeEnum {
         return null;
     }
 
+    public static SerializationTypeEnum getByName(String name) {
+        for (SerializationTypeEnum c : SerializationTypeEnum.values()) {
+            if (c.name.equals(name)) {
+                return c;
+            }
+        }
+        throw new IllegalArgumentException("unknown serialization type: " + name);
+    }
+
 }
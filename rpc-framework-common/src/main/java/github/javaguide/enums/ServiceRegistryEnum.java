@@ -11,7 +11,11 @@ import lombok.Getter;
 @Getter
 public enum ServiceRegistryEnum {
 
-    ZK("zk");
+    ZK("zk"),
+    /**
+     * in-memory registry of the current JVM, for tests and benchmarks that run client and server together
+     */
+    LOCAL("local");
 
     private final String name;
 }
@@ -0,0 +1,58 @@
+package github.javaguide.utils;
+
+import github.javaguide.enums.RpcConfigEnum;
+
+import java.util.Properties;
+
+/**
+ * 读取 rpc.properties 中的配置项。
+ * 同名的 JVM 系统属性（-Dkey=value）优先于配置文件，配置文件只读取一次
+ */
+public final class RpcConfigUtil {
+
+    private static volatile Properties properties;
+
+    private RpcConfigUtil() {
+    }
+
+    public static String getString(RpcConfigEnum rpcConfigEnum, String defaultValue) {
+        String key = rpcConfigEnum.getPropertyValue();
+        String value = System.getProperty(key);
+        if (value == null) {
+            value = getProperties().getProperty(key);
+        }
+        return StringUtil.isBlank(value) ? defaultValue : value.trim();
+    }
+
+    public static boolean getBoolean(RpcConfigEnum rpcConfigEnum, boolean defaultValue) {
+        String value = getString(rpcConfigEnum, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    public static int getInt(RpcConfigEnum rpcConfigEnum, int defaultValue) {
+        String value = getString(rpcConfigEnum, null);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    public static long getLong(RpcConfigEnum rpcConfigEnum, long defaultValue) {
+        String value = getString(rpcConfigEnum, null);
+        return value == null ? defaultValue : Long.parseLong(value);
+    }
+
+    private static Properties getProperties() {
+        Properties result = properties;
+        if (result == null) {
+            synchronized (RpcConfigUtil.class) {
+                result = properties;
+                if (result == null) {
+                    result = PropertiesFileUtil.readPropertiesFile(RpcConfigEnum.RPC_CONFIG_PATH.getPropertyValue());
+                    if (result == null) {
+                        result = new Properties();
+                    }
+                    properties = result;
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,37 @@
+package github.javaguide.annotation;
+
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * RPC method annotation, overrides the serialization and compression of the service for one method.
+ * Marked on a method of the service interface it is seen by both sides, on a method of the service implementation
+ * only by the server.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD})
+public @interface RpcMethod {
+
+    /**
+     * Serialization of the requests, one of the names of SerializationTypeEnum, default value is empty string (the service's).
+     * The server always answers with the serialization of the request
+     */
+    String serialization() default "";
+
+    /**
+     * Compression of the requests (client) or responses (server), one of the names of CompressTypeEnum,
+     * "none" for the uncompressed path, default value is empty string (the service's)
+     */
+    String compress() default "";
+
+    /**
+     * Milliseconds a call waits for its response, only seen by the client, default value is 0 (the service's)
+     */
+    long timeout() default 0;
+
+}
@@ -30,4 +30,19 @@ public @interface RpcReference {
      */
     String group() default "";
 
+    /**
+     * Serialization of the requests, one of the names of SerializationTypeEnum, default value is empty string (hessian)
+     */
+    String serialization() default "";
+
+    /**
+     * Compression of the requests, one of the names of CompressTypeEnum, default value is empty string (rpc.compress.type)
+     */
+    String compress() default "";
+
+    /**
+     * Milliseconds a call waits for its response, default value is 0 (rpc.client.requestTimeout)
+     */
+    long timeout() default 0;
+
 }
@@ -30,4 +30,9 @@ public @interface RpcService {
      */
     String group() default "";
 
+    /**
+     * Compression of the responses, one of the names of CompressTypeEnum, default value is empty string (rpc.compress.type)
+     */
+    String compress() default "";
+
 }
@@ -1,6 +1,8 @@
 package github.javaguide.compress;
 
 import github.javaguide.extension.SPI;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 
 /**
  * @author wangtao .
@@ -14,4 +16,24 @@ public interface Compress {
 
 
     byte[] decompress(byte[] bytes);
+
+    /**
+     * Compress all readable bytes of {@code in} and append the result to {@code out}.
+     * The default implementation falls back to {@link #compress(byte[])}.
+     */
+    default void compress(ByteBuf in, ByteBuf out) {
+        byte[] bytes = ByteBufUtil.getBytes(in);
+        in.skipBytes(bytes.length);
+        out.writeBytes(compress(bytes));
+    }
+
+    /**
+     * Decompress all readable bytes of {@code in} and append the result to {@code out}.
+     * The default implementation falls back to {@link #decompress(byte[])}.
+     */
+    default void decompress(ByteBuf in, ByteBuf out) {
+        byte[] bytes = ByteBufUtil.getBytes(in);
+        in.skipBytes(bytes.length);
+        out.writeBytes(decompress(bytes));
+    }
 }
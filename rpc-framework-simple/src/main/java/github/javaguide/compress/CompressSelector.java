@@ -0,0 +1,142 @@
+package github.javaguide.compress;
+
+import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.utils.RpcConfigUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 决定一个消息体是否真的需要压缩。
+ * <p>
+ * 序列化后小于 {@link RpcConfigEnum#COMPRESS_MIN_SIZE} 的消息体不压缩（gzip 对几十字节的消息只会让它变大）。
+ * 开启 {@link RpcConfigEnum#COMPRESS_ADAPTIVE} 后，按 服务#方法 统计压缩率和每节省一个字节所花费的 CPU 时间，
+ * 不划算时对该方法关闭压缩，之后每 {@link #SAMPLE_INTERVAL} 次调用仍压缩一次作为采样，以便收益回升时重新开启。
+ * 每个方法当前使用的压缩方式通过 {@link #getChosenCompressors()} 公布。
+ */
+@Slf4j
+public class CompressSelector {
+
+    private static final int DEFAULT_MIN_SIZE = 512;
+    private static final int DEFAULT_MAX_RATIO_PERCENT = 90;
+    private static final int DEFAULT_MAX_NANOS_PER_SAVED_BYTE = 100;
+    /**
+     * number of compressed samples needed before the adaptive mode makes its first decision
+     */
+    static final int WARM_UP_SAMPLES = 8;
+    /**
+     * while compression is off for a method, every SAMPLE_INTERVAL-th body is still compressed as a sample
+     */
+    static final int SAMPLE_INTERVAL = 64;
+
+    private final int minSize;
+    private final boolean adaptive;
+    private final double maxRatio;
+    private final double maxNanosPerSavedByte;
+    private final Map<String, MethodStats> statsMap = new ConcurrentHashMap<>();
+
+    public CompressSelector() {
+        this(RpcConfigUtil.getInt(RpcConfigEnum.COMPRESS_MIN_SIZE, DEFAULT_MIN_SIZE),
+                RpcConfigUtil.getBoolean(RpcConfigEnum.COMPRESS_ADAPTIVE, false),
+                RpcConfigUtil.getInt(RpcConfigEnum.COMPRESS_ADAPTIVE_MAX_RATIO_PERCENT, DEFAULT_MAX_RATIO_PERCENT),
+                RpcConfigUtil.getInt(RpcConfigEnum.COMPRESS_ADAPTIVE_MAX_NANOS_PER_SAVED_BYTE, DEFAULT_MAX_NANOS_PER_SAVED_BYTE));
+    }
+
+    CompressSelector(int minSize, boolean adaptive, int maxRatioPercent, int maxNanosPerSavedByte) {
+        this.minSize = minSize;
+        this.adaptive = adaptive;
+        this.maxRatio = maxRatioPercent / 100.0;
+        this.maxNanosPerSavedByte = maxNanosPerSavedByte;
+    }
+
+    /**
+     * @param methodKey service#method the body belongs to, may be null when unknown
+     * @param requested compress type configured for the message
+     * @param rawSize   serialized body size in bytes
+     * @return the compress type to use for this body
+     */
+    public byte select(String methodKey, byte requested, int rawSize) {
+        if (requested == CompressTypeEnum.NONE.getCode() || rawSize < minSize) {
+            return CompressTypeEnum.NONE.getCode();
+        }
+        if (!adaptive || methodKey == null) {
+            return requested;
+        }
+        MethodStats stats = statsMap.computeIfAbsent(methodKey, k -> new MethodStats(requested));
+        return stats.select(requested);
+    }
+
+    /**
+     * feed back the outcome of compressing a body that {@link #select(String, byte, int)} chose to compress
+     */
+    public void record(String methodKey, byte compressType, int rawSize, int compressedSize, long nanos) {
+        if (!adaptive || methodKey == null || rawSize <= 0) {
+            return;
+        }
+        MethodStats stats = statsMap.get(methodKey);
+        if (stats != null) {
+            stats.record(methodKey, compressType, (double) compressedSize / rawSize, (double) nanos / rawSize);
+        }
+    }
+
+    /**
+     * @return service#method -> name of the compressor currently used for it, {@code none} where compression was turned off
+     */
+    public Map<String, String> getChosenCompressors() {
+        Map<String, String> chosen = new TreeMap<>();
+        statsMap.forEach((key, stats) -> chosen.put(key, stats.chosenName()));
+        return Collections.unmodifiableMap(chosen);
+    }
+
+    private final class MethodStats {
+        private byte compressType;
+        private boolean enabled = true;
+        private long calls;
+        private int samples;
+        /**
+         * exponentially weighted moving averages, weight 1/8 for the newest sample
+         */
+        private double ratio;
+        private double nanosPerRawByte;
+
+        private MethodStats(byte compressType) {
+            this.compressType = compressType;
+        }
+
+        private synchronized byte select(byte requested) {
+            compressType = requested;
+            if (enabled || ++calls % SAMPLE_INTERVAL == 0) {
+                return requested;
+            }
+            return CompressTypeEnum.NONE.getCode();
+        }
+
+        private synchronized void record(String methodKey, byte type, double sampleRatio, double sampleNanosPerRawByte) {
+            compressType = type;
+            if (samples++ == 0) {
+                ratio = sampleRatio;
+                nanosPerRawByte = sampleNanosPerRawByte;
+            } else {
+                ratio += (sampleRatio - ratio) / 8;
+                nanosPerRawByte += (sampleNanosPerRawByte - nanosPerRawByte) / 8;
+            }
+            if (samples < WARM_UP_SAMPLES) {
+                return;
+            }
+            boolean pays = ratio <= maxRatio && nanosPerRawByte / (1 - ratio) <= maxNanosPerSavedByte;
+            if (pays != enabled) {
+                enabled = pays;
+                log.info("compression for [{}] switched to [{}], ratio [{}], ns per raw byte [{}]",
+                        methodKey, chosenName(), String.format("%.2f", ratio), String.format("%.1f", nanosPerRawByte));
+            }
+        }
+
+        private synchronized String chosenName() {
+            return enabled ? CompressTypeEnum.getName(compressType) : CompressTypeEnum.NONE.getName();
+        }
+    }
+}
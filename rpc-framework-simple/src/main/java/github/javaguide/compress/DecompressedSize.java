@@ -0,0 +1,46 @@
+package github.javaguide.compress;
+
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.utils.RpcConfigUtil;
+
+/**
+ * 解压后的长度由对端写在压缩数据里，分配缓冲区之前先用 {@link RpcConfigEnum#COMPRESS_MAX_DECOMPRESSED_SIZE} 限制它，
+ * 解压之后再确认实际长度和声明的一致，避免对端用一个很小的帧让我们分配上 GB 的内存。
+ * gzip 不声明长度，边解压边检查已经输出的长度。
+ */
+public final class DecompressedSize {
+
+    private static final int MAX = RpcConfigUtil.getInt(RpcConfigEnum.COMPRESS_MAX_DECOMPRESSED_SIZE,
+            4 * RpcConstants.MAX_FRAME_LENGTH);
+
+    private DecompressedSize() {
+    }
+
+    /**
+     * @param compress name of the compress type, for the error message
+     * @param length   decompressed length declared by the peer
+     * @return the length, once it is known to be within the limit
+     */
+    public static int check(String compress, long length) {
+        return check(compress, length, MAX);
+    }
+
+    static int check(String compress, long length, int max) {
+        if (length < 0 || length > max) {
+            throw new IllegalArgumentException(compress + " decompress error, invalid decompressed length: " + length
+                    + ", max: " + max);
+        }
+        return (int) length;
+    }
+
+    /**
+     * @throws IllegalArgumentException when the body decompressed to a different length than it declared
+     */
+    public static void checkActual(String compress, int declared, int actual) {
+        if (declared != actual) {
+            throw new IllegalArgumentException(compress + " decompress error, declared length " + declared
+                    + " but decompressed " + actual + " bytes");
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package github.javaguide.compress.gzip;
 
 import github.javaguide.compress.Compress;
+import github.javaguide.compress.DecompressedSize;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -45,10 +49,41 @@ public class GzipCompress implements Compress {
             int n;
             while ((n = gunzip.read(buffer)) > -1) {
                 out.write(buffer, 0, n);
+                // gzip does not declare the length up front, stop once the output outgrows the limit
+                DecompressedSize.check("gzip", out.size());
             }
             return out.toByteArray();
         } catch (IOException e) {
             throw new RuntimeException("gzip decompress error", e);
         }
     }
+
+    @Override
+    public void compress(ByteBuf in, ByteBuf out) {
+        if (in == null) {
+            throw new NullPointerException("in is null");
+        }
+        try (GZIPOutputStream gzip = new GZIPOutputStream(new ByteBufOutputStream(out), BUFFER_SIZE)) {
+            in.readBytes(gzip, in.readableBytes());
+            gzip.finish();
+        } catch (IOException e) {
+            throw new RuntimeException("gzip compress error", e);
+        }
+    }
+
+    @Override
+    public void decompress(ByteBuf in, ByteBuf out) {
+        if (in == null) {
+            throw new NullPointerException("in is null");
+        }
+        int start = out.writerIndex();
+        try (GZIPInputStream gunzip = new GZIPInputStream(new ByteBufInputStream(in), BUFFER_SIZE)) {
+            while (out.writeBytes(gunzip, BUFFER_SIZE) > -1) {
+                // keep draining until the end of the gzip stream, but not past the limit
+                DecompressedSize.check("gzip", out.writerIndex() - start);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("gzip decompress error", e);
+        }
+    }
 }
@@ -0,0 +1,91 @@
+package github.javaguide.compress.lz4;
+
+import github.javaguide.compress.Compress;
+import github.javaguide.compress.DecompressedSize;
+import io.netty.buffer.ByteBuf;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * LZ4 block compression. The compressed body is the 4-byte uncompressed length followed by one LZ4 block.
+ * The length comes from the peer, so it is bounded by {@link DecompressedSize} and the block is decompressed with the
+ * safe decompressor, which never reads or writes past the buffers it is given.
+ */
+public class Lz4Compress implements Compress {
+
+    private static final LZ4Factory FACTORY = LZ4Factory.fastestInstance();
+    private static final LZ4Compressor COMPRESSOR = FACTORY.fastCompressor();
+    private static final LZ4SafeDecompressor DECOMPRESSOR = FACTORY.safeDecompressor();
+    private static final int LENGTH_FIELD_SIZE = 4;
+
+    @Override
+    public byte[] compress(byte[] bytes) {
+        if (bytes == null) {
+            throw new NullPointerException("bytes is null");
+        }
+        int maxLength = COMPRESSOR.maxCompressedLength(bytes.length);
+        byte[] out = new byte[LENGTH_FIELD_SIZE + maxLength];
+        ByteBuffer.wrap(out).putInt(bytes.length);
+        int compressedLength = COMPRESSOR.compress(bytes, 0, bytes.length, out, LENGTH_FIELD_SIZE, maxLength);
+        return Arrays.copyOf(out, LENGTH_FIELD_SIZE + compressedLength);
+    }
+
+    @Override
+    public byte[] decompress(byte[] bytes) {
+        if (bytes == null) {
+            throw new NullPointerException("bytes is null");
+        }
+        byte[] out = new byte[readLength(ByteBuffer.wrap(bytes).getInt())];
+        int length = DECOMPRESSOR.decompress(bytes, LENGTH_FIELD_SIZE, bytes.length - LENGTH_FIELD_SIZE, out, 0, out.length);
+        DecompressedSize.checkActual("lz4", out.length, length);
+        return out;
+    }
+
+    @Override
+    public void compress(ByteBuf in, ByteBuf out) {
+        if (in == null) {
+            throw new NullPointerException("in is null");
+        }
+        int length = in.readableBytes();
+        int maxLength = COMPRESSOR.maxCompressedLength(length);
+        out.ensureWritable(LENGTH_FIELD_SIZE + maxLength);
+        if (out.nioBufferCount() != 1) {
+            Compress.super.compress(in, out);
+            return;
+        }
+        out.writeInt(length);
+        ByteBuffer src = in.nioBuffer();
+        ByteBuffer dest = out.nioBuffer(out.writerIndex(), maxLength);
+        int compressedLength = COMPRESSOR.compress(src, src.position(), length, dest, dest.position(), maxLength);
+        in.skipBytes(length);
+        out.writerIndex(out.writerIndex() + compressedLength);
+    }
+
+    @Override
+    public void decompress(ByteBuf in, ByteBuf out) {
+        if (in == null) {
+            throw new NullPointerException("in is null");
+        }
+        int length = readLength(in.getInt(in.readerIndex()));
+        out.ensureWritable(length);
+        if (out.nioBufferCount() != 1) {
+            Compress.super.decompress(in, out);
+            return;
+        }
+        in.skipBytes(LENGTH_FIELD_SIZE);
+        ByteBuffer src = in.nioBuffer();
+        ByteBuffer dest = out.nioBuffer(out.writerIndex(), length);
+        int decompressedLength = DECOMPRESSOR.decompress(src, src.position(), src.remaining(), dest, dest.position(), length);
+        DecompressedSize.checkActual("lz4", length, decompressedLength);
+        in.skipBytes(src.remaining());
+        out.writerIndex(out.writerIndex() + length);
+    }
+
+    private static int readLength(int length) {
+        return DecompressedSize.check("lz4", length);
+    }
+}
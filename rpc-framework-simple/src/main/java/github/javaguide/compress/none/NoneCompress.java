@@ -0,0 +1,42 @@
+package github.javaguide.compress.none;
+
+import github.javaguide.compress.Compress;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * 不压缩，消息体原样传输。用于小消息或压缩收益不足的方法
+ */
+public class NoneCompress implements Compress {
+
+    @Override
+    public byte[] compress(byte[] bytes) {
+        if (bytes == null) {
+            throw new NullPointerException("bytes is null");
+        }
+        return bytes;
+    }
+
+    @Override
+    public byte[] decompress(byte[] bytes) {
+        if (bytes == null) {
+            throw new NullPointerException("bytes is null");
+        }
+        return bytes;
+    }
+
+    @Override
+    public void compress(ByteBuf in, ByteBuf out) {
+        if (in == null) {
+            throw new NullPointerException("in is null");
+        }
+        out.writeBytes(in);
+    }
+
+    @Override
+    public void decompress(ByteBuf in, ByteBuf out) {
+        if (in == null) {
+            throw new NullPointerException("in is null");
+        }
+        out.writeBytes(in);
+    }
+}
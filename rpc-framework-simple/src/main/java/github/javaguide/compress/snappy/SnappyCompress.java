@@ -0,0 +1,109 @@
+package github.javaguide.compress.snappy;
+
+import github.javaguide.compress.Compress;
+import github.javaguide.compress.DecompressedSize;
+import io.netty.buffer.ByteBuf;
+import org.xerial.snappy.Snappy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Snappy raw block compression, the block starts with the varint encoded uncompressed length.
+ * That length comes from the peer and is bounded by {@link DecompressedSize} before anything is allocated for it.
+ */
+public class SnappyCompress implements Compress {
+
+    @Override
+    public byte[] compress(byte[] bytes) {
+        if (bytes == null) {
+            throw new NullPointerException("bytes is null");
+        }
+        try {
+            return Snappy.compress(bytes);
+        } catch (IOException e) {
+            throw new RuntimeException("snappy compress error", e);
+        }
+    }
+
+    @Override
+    public byte[] decompress(byte[] bytes) {
+        if (bytes == null) {
+            throw new NullPointerException("bytes is null");
+        }
+        try {
+            int length = DecompressedSize.check("snappy", Snappy.uncompressedLength(bytes));
+            byte[] out = new byte[length];
+            DecompressedSize.checkActual("snappy", length, Snappy.rawUncompress(bytes, 0, bytes.length, out, 0));
+            return out;
+        } catch (IOException e) {
+            throw new RuntimeException("snappy decompress error", e);
+        }
+    }
+
+    @Override
+    public void compress(ByteBuf in, ByteBuf out) {
+        if (in == null) {
+            throw new NullPointerException("in is null");
+        }
+        int length = in.readableBytes();
+        int maxLength = Snappy.maxCompressedLength(length);
+        out.ensureWritable(maxLength);
+        try {
+            int compressedLength;
+            if (isDirect(in) && isDirect(out)) {
+                compressedLength = Snappy.compress(in.nioBuffer(), out.nioBuffer(out.writerIndex(), maxLength));
+            } else if (in.hasArray() && out.hasArray()) {
+                compressedLength = Snappy.rawCompress(in.array(), in.arrayOffset() + in.readerIndex(), length,
+                        out.array(), out.arrayOffset() + out.writerIndex());
+            } else {
+                Compress.super.compress(in, out);
+                return;
+            }
+            in.skipBytes(length);
+            out.writerIndex(out.writerIndex() + compressedLength);
+        } catch (IOException e) {
+            throw new RuntimeException("snappy compress error", e);
+        }
+    }
+
+    @Override
+    public void decompress(ByteBuf in, ByteBuf out) {
+        if (in == null) {
+            throw new NullPointerException("in is null");
+        }
+        int compressedLength = in.readableBytes();
+        try {
+            if (isDirect(in)) {
+                ByteBuffer src = in.nioBuffer();
+                int length = DecompressedSize.check("snappy", Snappy.uncompressedLength(src));
+                out.ensureWritable(length);
+                if (isDirect(out)) {
+                    DecompressedSize.checkActual("snappy", length, Snappy.uncompress(src, out.nioBuffer(out.writerIndex(), length)));
+                    in.skipBytes(compressedLength);
+                    out.writerIndex(out.writerIndex() + length);
+                    return;
+                }
+            } else if (in.hasArray()) {
+                int srcOffset = in.arrayOffset() + in.readerIndex();
+                int length = DecompressedSize.check("snappy", Snappy.uncompressedLength(in.array(), srcOffset, compressedLength));
+                out.ensureWritable(length);
+                if (out.hasArray()) {
+                    int decompressedLength = Snappy.rawUncompress(in.array(), srcOffset, compressedLength,
+                            out.array(), out.arrayOffset() + out.writerIndex());
+                    DecompressedSize.checkActual("snappy", length, decompressedLength);
+                    in.skipBytes(compressedLength);
+                    out.writerIndex(out.writerIndex() + length);
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("snappy decompress error", e);
+        }
+        Compress.super.decompress(in, out);
+    }
+
+    private static boolean isDirect(ByteBuf buf) {
+        return buf.isDirect() && buf.nioBufferCount() == 1;
+    }
+}
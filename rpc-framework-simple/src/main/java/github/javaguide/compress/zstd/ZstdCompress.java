@@ -0,0 +1,153 @@
+package github.javaguide.compress.zstd;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDecompressCtx;
+import github.javaguide.compress.Compress;
+import github.javaguide.compress.DecompressedSize;
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.utils.RpcConfigUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Zstandard compression, one zstd frame (with content size) per body.
+ * The level is read from {@link RpcConfigEnum#ZSTD_LEVEL}; native contexts are reused through a {@link ZstdContextPool}.
+ * The content size written in the frame comes from the peer and is bounded by {@link DecompressedSize}.
+ */
+public class ZstdCompress implements Compress {
+
+    private final ZstdContextPool<ZstdCompressCtx> compressCtxPool;
+    private final ZstdContextPool<ZstdDecompressCtx> decompressCtxPool = new ZstdContextPool<>(ZstdDecompressCtx::new);
+
+    public ZstdCompress() {
+        this(RpcConfigUtil.getInt(RpcConfigEnum.ZSTD_LEVEL, Zstd.defaultCompressionLevel()));
+    }
+
+    public ZstdCompress(int level) {
+        this.compressCtxPool = new ZstdContextPool<>(() -> new ZstdCompressCtx().setLevel(level).setContentSize(true));
+    }
+
+    @Override
+    public byte[] compress(byte[] bytes) {
+        if (bytes == null) {
+            throw new NullPointerException("bytes is null");
+        }
+        ZstdCompressCtx ctx = compressCtxPool.obtain();
+        try {
+            return ctx.compress(bytes);
+        } finally {
+            compressCtxPool.free(ctx);
+        }
+    }
+
+    @Override
+    public byte[] decompress(byte[] bytes) {
+        if (bytes == null) {
+            throw new NullPointerException("bytes is null");
+        }
+        ZstdDecompressCtx ctx = decompressCtxPool.obtain();
+        try {
+            return decompress(bytes, ctx);
+        } finally {
+            decompressCtxPool.free(ctx);
+        }
+    }
+
+    @Override
+    public void compress(ByteBuf in, ByteBuf out) {
+        if (in == null) {
+            throw new NullPointerException("in is null");
+        }
+        ZstdCompressCtx ctx = compressCtxPool.obtain();
+        try {
+            compress(in, out, ctx);
+        } finally {
+            compressCtxPool.free(ctx);
+        }
+    }
+
+    @Override
+    public void decompress(ByteBuf in, ByteBuf out) {
+        if (in == null) {
+            throw new NullPointerException("in is null");
+        }
+        ZstdDecompressCtx ctx = decompressCtxPool.obtain();
+        try {
+            decompress(in, out, ctx);
+        } finally {
+            decompressCtxPool.free(ctx);
+        }
+    }
+
+    protected static byte[] decompress(byte[] bytes, ZstdDecompressCtx ctx) {
+        int length = checkContentSize(Zstd.getFrameContentSize(bytes));
+        byte[] out = ctx.decompress(bytes, length);
+        DecompressedSize.checkActual("zstd", length, out.length);
+        return out;
+    }
+
+    protected static void compress(ByteBuf in, ByteBuf out, ZstdCompressCtx ctx) {
+        int length = in.readableBytes();
+        int maxLength = (int) Zstd.compressBound(length);
+        out.ensureWritable(maxLength);
+        int compressedLength;
+        if (isDirect(in) && isDirect(out)) {
+            ByteBuffer src = in.nioBuffer();
+            ByteBuffer dest = out.nioBuffer(out.writerIndex(), maxLength);
+            compressedLength = ctx.compressDirectByteBuffer(dest, dest.position(), maxLength, src, src.position(), length);
+        } else if (in.hasArray() && out.hasArray()) {
+            compressedLength = ctx.compressByteArray(out.array(), out.arrayOffset() + out.writerIndex(), maxLength,
+                    in.array(), in.arrayOffset() + in.readerIndex(), length);
+        } else {
+            out.writeBytes(ctx.compress(ByteBufUtil.getBytes(in)));
+            in.skipBytes(length);
+            return;
+        }
+        in.skipBytes(length);
+        out.writerIndex(out.writerIndex() + compressedLength);
+    }
+
+    protected static void decompress(ByteBuf in, ByteBuf out, ZstdDecompressCtx ctx) {
+        int compressedLength = in.readableBytes();
+        if (isDirect(in)) {
+            ByteBuffer src = in.nioBuffer();
+            int length = checkContentSize(Zstd.getDirectByteBufferFrameContentSize(src, src.position(), compressedLength));
+            out.ensureWritable(length);
+            if (isDirect(out)) {
+                ByteBuffer dest = out.nioBuffer(out.writerIndex(), length);
+                int decompressedLength = ctx.decompressDirectByteBuffer(dest, dest.position(), length, src, src.position(), compressedLength);
+                DecompressedSize.checkActual("zstd", length, decompressedLength);
+                in.skipBytes(compressedLength);
+                out.writerIndex(out.writerIndex() + length);
+                return;
+            }
+        } else if (in.hasArray()) {
+            int length = checkContentSize(Zstd.getFrameContentSize(in.array(), in.arrayOffset() + in.readerIndex(), compressedLength));
+            out.ensureWritable(length);
+            if (out.hasArray()) {
+                int decompressedLength = ctx.decompressByteArray(out.array(), out.arrayOffset() + out.writerIndex(), length,
+                        in.array(), in.arrayOffset() + in.readerIndex(), compressedLength);
+                DecompressedSize.checkActual("zstd", length, decompressedLength);
+                in.skipBytes(compressedLength);
+                out.writerIndex(out.writerIndex() + length);
+                return;
+            }
+        }
+        out.writeBytes(decompress(ByteBufUtil.getBytes(in), ctx));
+        in.skipBytes(compressedLength);
+    }
+
+    private static boolean isDirect(ByteBuf buf) {
+        return buf.isDirect() && buf.nioBufferCount() == 1;
+    }
+
+    /**
+     * @param contentSize content size from the frame header, negative when the frame does not carry it
+     */
+    private static int checkContentSize(long contentSize) {
+        return DecompressedSize.check("zstd", contentSize);
+    }
+}
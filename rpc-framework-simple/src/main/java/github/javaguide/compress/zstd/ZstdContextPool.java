@@ -0,0 +1,60 @@
+package github.javaguide.compress.zstd;
+
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.utils.RpcConfigUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * Idle native zstd contexts kept for reuse.
+ * <p>
+ * zstd-jni frees a context only when it is closed, there is no cleaner, so contexts are not kept per thread: a caller
+ * thread that dies would take its context with it. At most {@link RpcConfigEnum#ZSTD_POOL_SIZE} idle contexts are
+ * kept, the ones returned beyond that are closed.
+ */
+@Slf4j
+final class ZstdContextPool<T extends Closeable> {
+
+    static final int POOL_SIZE = RpcConfigUtil.getInt(RpcConfigEnum.ZSTD_POOL_SIZE,
+            Runtime.getRuntime().availableProcessors() * 2);
+
+    private final BlockingQueue<T> idle;
+    private final Supplier<T> factory;
+
+    ZstdContextPool(Supplier<T> factory) {
+        this(factory, POOL_SIZE);
+    }
+
+    ZstdContextPool(Supplier<T> factory, int size) {
+        this.idle = new ArrayBlockingQueue<>(Math.max(1, size));
+        this.factory = factory;
+    }
+
+    T obtain() {
+        T context = idle.poll();
+        return context != null ? context : factory.get();
+    }
+
+    void free(T context) {
+        if (!idle.offer(context)) {
+            close(context);
+        }
+    }
+
+    int idle() {
+        return idle.size();
+    }
+
+    private static void close(Closeable context) {
+        try {
+            context.close();
+        } catch (IOException e) {
+            log.warn("failed to close zstd context", e);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package github.javaguide.compress.zstd;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDecompressCtx;
+import github.javaguide.factory.SingletonFactory;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Zstandard compression with a trained dictionary, see {@link ZstdDictionaries}.
+ * <p>
+ * The frame header carries the dictionary id (0 when compressed without dictionary), so decompression looks up the
+ * dictionary by id. Without a dictionary this behaves exactly like {@link ZstdCompress}, which is also what the
+ * codec falls back to when the peer does not have the dictionary.
+ */
+public class ZstdDictCompress extends ZstdCompress {
+
+    /**
+     * the largest zstd frame header, enough to read the dictionary id
+     */
+    private static final int MAX_FRAME_HEADER_SIZE = 18;
+
+    private final ZstdDictionaries dictionaries = SingletonFactory.getInstance(ZstdDictionaries.class);
+    /**
+     * contexts with a dictionary loaded, each use loads the dictionary it needs
+     */
+    private final ZstdContextPool<ZstdCompressCtx> dictCompressCtxPool = new ZstdContextPool<>(ZstdCompressCtx::new);
+    private final ZstdContextPool<ZstdDecompressCtx> dictDecompressCtxPool = new ZstdContextPool<>(ZstdDecompressCtx::new);
+
+    public void compress(ByteBuf in, ByteBuf out, ZstdDictionary dictionary) {
+        if (in == null) {
+            throw new NullPointerException("in is null");
+        }
+        ZstdCompressCtx ctx = dictCompressCtxPool.obtain();
+        try {
+            ctx.loadDict(dictionary.getCompressDict());
+            compress(in, out, ctx);
+        } finally {
+            dictCompressCtxPool.free(ctx);
+        }
+    }
+
+    public byte[] compress(byte[] bytes, ZstdDictionary dictionary) {
+        if (bytes == null) {
+            throw new NullPointerException("bytes is null");
+        }
+        ZstdCompressCtx ctx = dictCompressCtxPool.obtain();
+        try {
+            ctx.loadDict(dictionary.getCompressDict());
+            return ctx.compress(bytes);
+        } finally {
+            dictCompressCtxPool.free(ctx);
+        }
+    }
+
+    @Override
+    public byte[] decompress(byte[] bytes) {
+        if (bytes == null) {
+            throw new NullPointerException("bytes is null");
+        }
+        ZstdDictionary dictionary = dictionary(Zstd.getDictIdFromFrame(bytes));
+        if (dictionary == null) {
+            return super.decompress(bytes);
+        }
+        ZstdDecompressCtx ctx = dictDecompressCtxPool.obtain();
+        try {
+            ctx.loadDict(dictionary.getDecompressDict());
+            return decompress(bytes, ctx);
+        } finally {
+            dictDecompressCtxPool.free(ctx);
+        }
+    }
+
+    @Override
+    public void decompress(ByteBuf in, ByteBuf out) {
+        if (in == null) {
+            throw new NullPointerException("in is null");
+        }
+        byte[] header = new byte[Math.min(MAX_FRAME_HEADER_SIZE, in.readableBytes())];
+        in.getBytes(in.readerIndex(), header);
+        ZstdDictionary dictionary = dictionary(Zstd.getDictIdFromFrame(header));
+        if (dictionary == null) {
+            super.decompress(in, out);
+            return;
+        }
+        ZstdDecompressCtx ctx = dictDecompressCtxPool.obtain();
+        try {
+            ctx.loadDict(dictionary.getDecompressDict());
+            decompress(in, out, ctx);
+        } finally {
+            dictDecompressCtxPool.free(ctx);
+        }
+    }
+
+    /**
+     * @return the dictionary a frame was compressed with, null when it was compressed without
+     */
+    private ZstdDictionary dictionary(long dictId) {
+        if (dictId == 0) {
+            return null;
+        }
+        ZstdDictionary dictionary = dictionaries.get((int) dictId);
+        if (dictionary == null) {
+            throw new IllegalStateException("zstd dictionary [" + dictId + "] is not loaded");
+        }
+        return dictionary;
+    }
+}
@@ -0,0 +1,124 @@
+package github.javaguide.compress.zstd;
+
+import com.github.luben.zstd.ZstdDictTrainer;
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.factory.SingletonFactory;
+import github.javaguide.utils.RpcConfigUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Samples serialized bodies of live traffic per service and trains zstd dictionaries from them.
+ * <p>
+ * Sampling is off unless {@link RpcConfigEnum#ZSTD_DICT_SAMPLE_RATE} is set to N > 0, then every N-th body of a
+ * service is kept, up to {@link #MAX_SAMPLES} per service (older samples are overwritten).
+ * {@link #trainAndSave(String, Path)} writes the dictionary as {@code <service>-<version>.dict}, ready to be copied
+ * to the dictionary directory of every peer.
+ */
+@Slf4j
+public class ZstdDictSampler {
+
+    static final int MAX_SAMPLES = 4096;
+    private static final int DEFAULT_DICT_SIZE = 16 * 1024;
+
+    private final int sampleRate;
+    private final Map<String, Samples> samplesMap = new ConcurrentHashMap<>();
+
+    public ZstdDictSampler() {
+        this(RpcConfigUtil.getInt(RpcConfigEnum.ZSTD_DICT_SAMPLE_RATE, 0));
+    }
+
+    public ZstdDictSampler(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public boolean isEnabled() {
+        return sampleRate > 0;
+    }
+
+    /**
+     * @param methodKey service#method of the body, the sample is kept under the service part
+     * @param body      serialized, not yet compressed body, it is not consumed
+     */
+    public void sample(String methodKey, ByteBuf body) {
+        if (!isEnabled() || methodKey == null) {
+            return;
+        }
+        int index = methodKey.indexOf('#');
+        String service = index < 0 ? methodKey : methodKey.substring(0, index);
+        Samples samples = samplesMap.computeIfAbsent(service, k -> new Samples());
+        if (samples.counter.getAndIncrement() % sampleRate == 0) {
+            samples.add(ByteBufUtil.getBytes(body, body.readerIndex(), body.readableBytes()));
+        }
+    }
+
+    public int sampleCount(String service) {
+        Samples samples = samplesMap.get(service);
+        return samples == null ? 0 : samples.size();
+    }
+
+    /**
+     * @return a dictionary trained from the samples of the service
+     */
+    public byte[] train(String service, int dictSize) {
+        Samples samples = samplesMap.get(service);
+        if (samples == null || samples.size() == 0) {
+            throw new IllegalStateException("no samples for service [" + service + "]");
+        }
+        List<byte[]> copy = samples.snapshot();
+        long totalSize = copy.stream().mapToLong(b -> b.length).sum();
+        ZstdDictTrainer trainer = new ZstdDictTrainer((int) Math.min(Integer.MAX_VALUE, totalSize), dictSize);
+        copy.forEach(trainer::addSample);
+        return trainer.trainSamples();
+    }
+
+    /**
+     * train a dictionary for the service, write it to {@code dir} and register it with this process
+     *
+     * @return the written file
+     */
+    public Path trainAndSave(String service, Path dir) throws IOException {
+        byte[] dict = train(service, DEFAULT_DICT_SIZE);
+        ZstdDictionaries dictionaries = SingletonFactory.getInstance(ZstdDictionaries.class);
+        int version = dictionaries.nextVersion(service);
+        Files.createDirectories(dir);
+        Path file = dir.resolve(service + "-" + version + ".dict");
+        Files.write(file, dict);
+        ZstdDictionary dictionary = dictionaries.register(service, version, dict);
+        log.info("trained zstd dictionary [{}] id [{}] from [{}] samples", file, dictionary.getId(), sampleCount(service));
+        return file;
+    }
+
+    private static final class Samples {
+        private final AtomicLong counter = new AtomicLong();
+        private final List<byte[]> ring = new ArrayList<>();
+        private int next;
+
+        private synchronized void add(byte[] sample) {
+            if (ring.size() < MAX_SAMPLES) {
+                ring.add(sample);
+            } else {
+                ring.set(next, sample);
+                next = (next + 1) % MAX_SAMPLES;
+            }
+        }
+
+        private synchronized int size() {
+            return ring.size();
+        }
+
+        private synchronized List<byte[]> snapshot() {
+            return new ArrayList<>(ring);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package github.javaguide.compress.zstd;
+
+import com.github.luben.zstd.Zstd;
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.utils.RpcConfigUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Zstd dictionaries known by this process.
+ * <p>
+ * Dictionaries are loaded from the directory {@link RpcConfigEnum#ZSTD_DICT_DIR}, one file per dictionary named
+ * {@code <key>-<version>.dict}, where key is the service the dictionary was trained for (usually the interface name).
+ * Every loaded version stays available for decompression by id; compression uses the highest version of the
+ * longest key that prefixes the service#method of the body.
+ * <p>
+ * Both peers load the same files. A new dictionary version must be rolled out to the receivers before the senders:
+ * a sender only uses a dictionary the peer announced in the connection handshake and falls back to plain zstd otherwise.
+ */
+@Slf4j
+public class ZstdDictionaries {
+
+    private static final Pattern FILE_NAME = Pattern.compile("(.+)-(\\d+)\\.dict");
+
+    private final int level;
+    private final Map<Integer, ZstdDictionary> byId = new ConcurrentHashMap<>();
+    private final Map<String, ZstdDictionary> latestByKey = new ConcurrentHashMap<>();
+
+    public ZstdDictionaries() {
+        this.level = RpcConfigUtil.getInt(RpcConfigEnum.ZSTD_LEVEL, Zstd.defaultCompressionLevel());
+        String dir = RpcConfigUtil.getString(RpcConfigEnum.ZSTD_DICT_DIR, null);
+        if (dir != null) {
+            load(Paths.get(dir));
+        }
+    }
+
+    /**
+     * load every {@code <key>-<version>.dict} file of the directory
+     */
+    public void load(Path dir) {
+        if (!Files.isDirectory(dir)) {
+            log.warn("zstd dictionary directory [{}] does not exist", dir);
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.dict")) {
+            for (Path file : files) {
+                Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+                if (!matcher.matches()) {
+                    log.warn("ignore zstd dictionary [{}], the file name should be <key>-<version>.dict", file);
+                    continue;
+                }
+                ZstdDictionary dictionary = register(matcher.group(1), Integer.parseInt(matcher.group(2)), Files.readAllBytes(file));
+                log.info("loaded zstd dictionary [{}] version [{}] id [{}]", dictionary.getKey(), dictionary.getVersion(), dictionary.getId());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("load zstd dictionaries from " + dir + " failed", e);
+        }
+    }
+
+    public ZstdDictionary register(String key, int version, byte[] bytes) {
+        ZstdDictionary dictionary = new ZstdDictionary(key, version, bytes, level);
+        byId.put(dictionary.getId(), dictionary);
+        latestByKey.merge(key, dictionary, (old, cur) -> cur.getVersion() >= old.getVersion() ? cur : old);
+        return dictionary;
+    }
+
+    /**
+     * @return the dictionary with this id, or null if this process does not have it
+     */
+    public ZstdDictionary get(int id) {
+        return byId.get(id);
+    }
+
+    /**
+     * @return the latest dictionary for the longest key that prefixes {@code methodKey}, or null if there is none
+     */
+    public ZstdDictionary select(String methodKey) {
+        if (methodKey == null || latestByKey.isEmpty()) {
+            return null;
+        }
+        ZstdDictionary selected = null;
+        for (ZstdDictionary dictionary : latestByKey.values()) {
+            if (methodKey.startsWith(dictionary.getKey())
+                    && (selected == null || dictionary.getKey().length() > selected.getKey().length())) {
+                selected = dictionary;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * @return the next version for dictionaries of this key
+     */
+    public int nextVersion(String key) {
+        ZstdDictionary latest = latestByKey.get(key);
+        return latest == null ? 1 : latest.getVersion() + 1;
+    }
+
+    /**
+     * @return ids of all dictionaries this process can decompress with, announced to peers in the handshake
+     */
+    public Set<Integer> ids() {
+        return Collections.unmodifiableSet(new HashSet<>(byId.keySet()));
+    }
+}
@@ -0,0 +1,36 @@
+package github.javaguide.compress.zstd;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import lombok.Getter;
+
+/**
+ * A trained zstd dictionary. The id is the one zstd stores in the dictionary and writes into every frame
+ * compressed with it, so the receiver can tell which dictionary to decompress with.
+ */
+@Getter
+public class ZstdDictionary {
+
+    /**
+     * prefix of the service#method keys this dictionary is used for, e.g. github.javaguide.HelloService
+     */
+    private final String key;
+    private final int version;
+    private final int id;
+    private final byte[] bytes;
+    private final ZstdDictCompress compressDict;
+    private final ZstdDictDecompress decompressDict;
+
+    public ZstdDictionary(String key, int version, byte[] bytes, int level) {
+        this.key = key;
+        this.version = version;
+        this.id = (int) Zstd.getDictIdFromDict(bytes);
+        if (this.id == 0) {
+            throw new IllegalArgumentException("not a zstd dictionary: " + key + "-" + version);
+        }
+        this.bytes = bytes;
+        this.compressDict = new ZstdDictCompress(bytes, level);
+        this.decompressDict = new ZstdDictDecompress(bytes);
+    }
+}
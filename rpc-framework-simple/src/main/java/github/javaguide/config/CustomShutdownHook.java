@@ -1,7 +1,10 @@
 package github.javaguide.config;
 
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.enums.ServiceRegistryEnum;
 import github.javaguide.registry.zk.util.CuratorUtils;
 import github.javaguide.remoting.transport.netty.server.NettyRpcServer;
+import github.javaguide.utils.RpcConfigUtil;
 import github.javaguide.utils.concurrent.threadpool.ThreadPoolFactoryUtil;
 import lombok.extern.slf4j.Slf4j;
 
@@ -26,12 +29,20 @@ public class CustomShutdownHook {
     public void clearAll() {
         log.info("addShutdownHook for clearAll");
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            try {
-                InetSocketAddress inetSocketAddress = new InetSocketAddress(InetAddress.getLocalHost().getHostAddress(), NettyRpcServer.PORT);
-                CuratorUtils.clearRegistry(CuratorUtils.getZkClient(), inetSocketAddress);
-            } catch (UnknownHostException ignored) {
+            // the local registry lives in this JVM, only zookeeper keeps the nodes after the server is gone
+            String registryType = RpcConfigUtil.getString(RpcConfigEnum.REGISTRY_TYPE, ServiceRegistryEnum.ZK.getName());
+            if (ServiceRegistryEnum.ZK.getName().equals(registryType)) {
+                clearZkRegistry();
             }
             ThreadPoolFactoryUtil.shutDownAllThreadPool();
         }));
     }
+
+    private static void clearZkRegistry() {
+        try {
+            InetSocketAddress inetSocketAddress = new InetSocketAddress(InetAddress.getLocalHost().getHostAddress(), NettyRpcServer.PORT);
+            CuratorUtils.clearRegistry(CuratorUtils.getZkClient(), inetSocketAddress);
+        } catch (UnknownHostException ignored) {
+        }
+    }
 }
@@ -0,0 +1,66 @@
+package github.javaguide.config;
+
+import github.javaguide.annotation.RpcMethod;
+import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.enums.SerializationTypeEnum;
+import github.javaguide.utils.RpcConfigUtil;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.lang.reflect.Method;
+
+/**
+ * Serialization and compression chosen for the calls of one method: {@link RpcMethod} on the method, else the
+ * {@link RpcServiceConfig} of the service, else hessian and rpc.compress.type.
+ * The client also takes the response timeout of its calls from here, falling back to rpc.client.requestTimeout.
+ */
+@Getter
+@ToString
+public final class MethodCodec {
+    private static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+
+    /**
+     * SerializationTypeEnum code
+     */
+    private final byte serialization;
+    /**
+     * CompressTypeEnum code, null when rpc.compress.type applies
+     */
+    private final Byte compress;
+    /**
+     * milliseconds a call waits for its response, 0 waits forever
+     */
+    private final long timeout;
+
+    private MethodCodec(byte serialization, Byte compress, long timeout) {
+        this.serialization = serialization;
+        this.compress = compress;
+        this.timeout = timeout;
+    }
+
+    /**
+     * @param methods the method, in the order its annotations take precedence (implementation, then interface)
+     */
+    public static MethodCodec of(RpcServiceConfig rpcServiceConfig, Method... methods) {
+        String serialization = rpcServiceConfig.getSerialization();
+        String compress = rpcServiceConfig.getCompress();
+        long timeout = rpcServiceConfig.getTimeout();
+        for (int i = methods.length - 1; i >= 0; i--) {
+            RpcMethod rpcMethod = methods[i] == null ? null : methods[i].getAnnotation(RpcMethod.class);
+            if (rpcMethod != null) {
+                serialization = rpcMethod.serialization().isEmpty() ? serialization : rpcMethod.serialization();
+                compress = rpcMethod.compress().isEmpty() ? compress : rpcMethod.compress();
+                timeout = rpcMethod.timeout() > 0 ? rpcMethod.timeout() : timeout;
+            }
+        }
+        return new MethodCodec(
+                isEmpty(serialization) ? SerializationTypeEnum.HESSIAN.getCode() : SerializationTypeEnum.getByName(serialization).getCode(),
+                isEmpty(compress) ? null : CompressTypeEnum.getByName(compress).getCode(),
+                timeout > 0 ? timeout : RpcConfigUtil.getLong(RpcConfigEnum.CLIENT_REQUEST_TIMEOUT, DEFAULT_TIMEOUT_MILLIS));
+    }
+
+    private static boolean isEmpty(String name) {
+        return name == null || name.isEmpty();
+    }
+}
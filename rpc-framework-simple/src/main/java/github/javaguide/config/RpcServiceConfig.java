@@ -27,6 +27,27 @@ public class RpcServiceConfig {
      */
     private String group = "";
 
+    /**
+     * serialization of the requests sent to a referenced service, one of the names of SerializationTypeEnum,
+     * hessian when empty. The server answers with the serialization of the request
+     */
+    @Builder.Default
+    private String serialization = "";
+
+    /**
+     * compression of the requests sent to a referenced service, or of the responses of an exported one,
+     * one of the names of CompressTypeEnum, rpc.compress.type when empty. {@link github.javaguide.annotation.RpcMethod}
+     * overrides it for one method
+     */
+    @Builder.Default
+    private String compress = "";
+
+    /**
+     * milliseconds a call to a referenced service waits for its response, rpc.client.requestTimeout when 0.
+     * {@link github.javaguide.annotation.RpcMethod} overrides it for one method
+     */
+    private long timeout;
+
     /**
      * target service
      */
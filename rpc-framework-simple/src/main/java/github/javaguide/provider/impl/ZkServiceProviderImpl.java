@@ -1,6 +1,7 @@
 package github.javaguide.provider.impl;
 
 import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.enums.RpcConfigEnum;
 import github.javaguide.enums.RpcErrorMessageEnum;
 import github.javaguide.enums.ServiceRegistryEnum;
 import github.javaguide.exception.RpcException;
@@ -8,6 +9,8 @@ import github.javaguide.extension.ExtensionLoader;
 import github.javaguide.provider.ServiceProvider;
 import github.javaguide.registry.ServiceRegistry;
 import github.javaguide.remoting.transport.netty.server.NettyRpcServer;
+import github.javaguide.serialize.ServiceTypes;
+import github.javaguide.utils.RpcConfigUtil;
 import lombok.extern.slf4j.Slf4j;
 
 import java.net.InetAddress;
@@ -26,16 +29,17 @@ public class ZkServiceProviderImpl implements ServiceProvider {
 
     /**
      * key: rpc service name(interface name + version + group)
-     * value: service object
+     * value: service object and the attributes it was added with
      */
-    private final Map<String, Object> serviceMap;
+    private final Map<String, RpcServiceConfig> serviceMap;
     private final Set<String> registeredService;
     private final ServiceRegistry serviceRegistry;
 
     public ZkServiceProviderImpl() {
         serviceMap = new ConcurrentHashMap<>();
         registeredService = ConcurrentHashMap.newKeySet();
-        serviceRegistry = ExtensionLoader.getExtensionLoader(ServiceRegistry.class).getExtension(ServiceRegistryEnum.ZK.getName());
+        serviceRegistry = ExtensionLoader.getExtensionLoader(ServiceRegistry.class)
+                .getExtension(RpcConfigUtil.getString(RpcConfigEnum.REGISTRY_TYPE, ServiceRegistryEnum.ZK.getName()));
     }
 
     @Override
@@ -45,17 +49,25 @@ public class ZkServiceProviderImpl implements ServiceProvider {
             return;
         }
         registeredService.add(rpcServiceName);
-        serviceMap.put(rpcServiceName, rpcServiceConfig.getService());
+        serviceMap.put(rpcServiceName, rpcServiceConfig);
+        // 提前为服务接口用到的类型准备好序列化器，第一次调用不再卡在构建 schema 上
+        ServiceTypes.prepareSerializers(rpcServiceConfig, rpcServiceConfig.getService().getClass().getInterfaces()[0],
+                rpcServiceConfig.getService().getClass());
         log.info("Add service: {} and interfaces:{}", rpcServiceName, rpcServiceConfig.getService().getClass().getInterfaces());
     }
 
     @Override
     public Object getService(String rpcServiceName) {
-        Object service = serviceMap.get(rpcServiceName);
-        if (null == service) {
+        return getServiceConfig(rpcServiceName).getService();
+    }
+
+    @Override
+    public RpcServiceConfig getServiceConfig(String rpcServiceName) {
+        RpcServiceConfig rpcServiceConfig = serviceMap.get(rpcServiceName);
+        if (null == rpcServiceConfig) {
             throw new RpcException(RpcErrorMessageEnum.SERVICE_CAN_NOT_BE_FOUND);
         }
-        return service;
+        return rpcServiceConfig;
     }
 
     @Override
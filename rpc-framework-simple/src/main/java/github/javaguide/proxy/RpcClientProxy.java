@@ -1,27 +1,44 @@
 package github.javaguide.proxy;
 
+import github.javaguide.config.MethodCodec;
 import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.enums.RpcConfigEnum;
 import github.javaguide.enums.RpcErrorMessageEnum;
 import github.javaguide.enums.RpcResponseCodeEnum;
 import github.javaguide.exception.RpcException;
+import github.javaguide.remoting.dto.RpcMessage;
 import github.javaguide.remoting.dto.RpcRequest;
 import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.remoting.handler.Deadline;
 import github.javaguide.remoting.transport.RpcRequestTransport;
-import github.javaguide.remoting.transport.netty.client.NettyRpcClient;
-import github.javaguide.remoting.transport.socket.SocketRpcClient;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageBodyCodec;
+import github.javaguide.serialize.ServiceTypes;
+import github.javaguide.utils.RpcConfigUtil;
+import github.javaguide.utils.RuntimeUtil;
+import github.javaguide.utils.concurrent.threadpool.CustomThreadPoolConfig;
+import github.javaguide.utils.concurrent.threadpool.ThreadPoolFactoryUtil;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
-import java.util.UUID;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * Dynamic proxy class.
  * When a dynamic proxy object calls a method, it actually calls the following invoke method.
  * It is precisely because of the dynamic proxy that the remote method called by the client is like calling the local method (the intermediate process is shielded)
+ * <p>
+ * 返回 {@link CompletableFuture} 的接口方法是异步调用：netty 传输发出请求后立即返回一个 future，响应到达后在回调线程池
+ * （{@code rpc.client.callbackThreads}）上反序列化并完成它，调用方的回调不会跑在 Netty 的 I/O 线程上，也没有线程阻塞等待。
+ * socket 传输本身是同步的，异步方法在调用线程上发送完请求后返回一个已经完成的 future。
  *
  * @author shuang.kou
  * @createTime 2020年05月10日 19:01:00
@@ -30,6 +47,7 @@ import java.util.concurrent.CompletableFuture;
 public class RpcClientProxy implements InvocationHandler {
 
     private static final String INTERFACE_NAME = "interfaceName";
+    private static final String CALLBACK_THREAD_NAME_PREFIX = "rpc-client-callback";
 
     /**
      * Used to send requests to the server.And there are two implementations: socket and netty
@@ -39,16 +57,27 @@ public class RpcClientProxy implements InvocationHandler {
      */
     private final RpcRequestTransport rpcRequestTransport;
     private final RpcServiceConfig rpcServiceConfig;
+    /**
+     * serialization and compression of each invoked method, see {@link MethodCodec}
+     */
+    private final Map<Method, MethodCodec> methodCodecs = new ConcurrentHashMap<>();
+    /**
+     * completes the futures of asynchronous methods
+     */
+    private final Executor callbackExecutor;
 
     public RpcClientProxy(RpcRequestTransport rpcRequestTransport, RpcServiceConfig rpcServiceConfig) {
+        this(rpcRequestTransport, rpcServiceConfig, defaultCallbackExecutor());
+    }
+
+    public RpcClientProxy(RpcRequestTransport rpcRequestTransport, RpcServiceConfig rpcServiceConfig, Executor callbackExecutor) {
         this.rpcRequestTransport = rpcRequestTransport;
         this.rpcServiceConfig = rpcServiceConfig;
+        this.callbackExecutor = callbackExecutor;
     }
 
-
     public RpcClientProxy(RpcRequestTransport rpcRequestTransport) {
-        this.rpcRequestTransport = rpcRequestTransport;
-        this.rpcServiceConfig = new RpcServiceConfig();
+        this(rpcRequestTransport, new RpcServiceConfig());
     }
 
     /**
@@ -56,6 +85,8 @@ public class RpcClientProxy implements InvocationHandler {
      */
     @SuppressWarnings("unchecked")
     public <T> T getProxy(Class<T> clazz) {
+        // 引用服务时就准备好序列化器（例如注册 Kryo 类型），与服务端导出时的准备一致
+        ServiceTypes.prepareSerializers(rpcServiceConfig, clazz, null);
         return (T) Proxy.newProxyInstance(clazz.getClassLoader(), new Class<?>[]{clazz}, this);
     }
 
@@ -68,35 +99,94 @@ public class RpcClientProxy implements InvocationHandler {
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) {
         log.info("invoked method: [{}]", method.getName());
+        MethodCodec methodCodec = methodCodecs.computeIfAbsent(method, m -> MethodCodec.of(rpcServiceConfig, m));
+        boolean async = CompletableFuture.class.isAssignableFrom(method.getReturnType());
+        long timeout;
+        try {
+            // 在服务方法里发起的调用不会等得比外层请求的调用方更久
+            timeout = Deadline.timeout(methodCodec.getTimeout());
+        } catch (RpcException e) {
+            if (async) {
+                CompletableFuture<Object> expired = new CompletableFuture<>();
+                expired.completeExceptionally(e);
+                return expired;
+            }
+            throw e;
+        }
         RpcRequest rpcRequest = RpcRequest.builder()
                 .methodName(method.getName())// 被调用的方法名（如 "hello"）
                 .parameters(args)  // 方法参数数组（如 new Hello("111", "222")）
                 .interfaceName(method.getDeclaringClass().getName()) // 方法所属的接口全限定名（如 "github.javaguide.HelloService"）
                 .paramTypes(method.getParameterTypes()) // 参数类型数组（如 Hello.class）
-                .requestId(UUID.randomUUID().toString()) // 唯一请求 ID（用于匹配服务端响应）
                 .group(rpcServiceConfig.getGroup()) // 服务分组（来自 @RpcReference 的 group 属性）
                 .version(rpcServiceConfig.getVersion()) // 服务版本（来自 @RpcReference 的 version 属性）
+                .codec(methodCodec.getSerialization()) // 序列化方式（来自 @RpcMethod 或 @RpcReference 的 serialization 属性）
+                .compress(methodCodec.getCompress()) // 压缩方式（来自 @RpcMethod 或 @RpcReference 的 compress 属性）
+                .timeout(timeout) // 等待响应的超时时间（来自 @RpcMethod 或 @RpcReference 的 timeout 属性）
                 .build();
-        RpcResponse<Object> rpcResponse = null;
+        Object result = rpcRequestTransport.sendRpcRequest(rpcRequest);
         // Netty 异步传输实现
-        if (rpcRequestTransport instanceof NettyRpcClient) {
-
-            CompletableFuture<RpcResponse<Object>> completableFuture = (CompletableFuture<RpcResponse<Object>>) rpcRequestTransport.sendRpcRequest(rpcRequest);
-            rpcResponse = completableFuture.get(); // 阻塞等待异步结果，获取响应对象返回响应结果
+        if (result instanceof CompletableFuture) {
+            CompletableFuture<RpcMessage> completableFuture = (CompletableFuture<RpcMessage>) result;
+            if (async) {
+                // 无论成功还是失败都在回调线程池上完成，响应体也在那里反序列化
+                return completableFuture.handleAsync((rpcMessage, cause) -> {
+                    if (cause != null) {
+                        throw cause instanceof CompletionException ? (CompletionException) cause : new CompletionException(cause);
+                    }
+                    return getData((RpcResponse<Object>) RpcMessageBodyCodec.decodeBody(rpcMessage), rpcRequest);
+                }, callbackExecutor);
+            }
+            // 阻塞等待异步结果，响应体在当前调用线程上反序列化，而不是在 Netty 的 I/O 线程上。超时由传输层的定时器完成 future
+            RpcMessage rpcMessage;
+            try {
+                rpcMessage = completableFuture.get();
+            } catch (ExecutionException e) {
+                // 把超时、连接失败等 RpcException 原样抛给调用方
+                throw e.getCause() instanceof RuntimeException ? e.getCause() : e;
+            }
+            result = RpcMessageBodyCodec.decodeBody(rpcMessage);
         }
-        if (rpcRequestTransport instanceof SocketRpcClient) {  // Socket 同步传输实现
-            rpcResponse = (RpcResponse<Object>) rpcRequestTransport.sendRpcRequest(rpcRequest);
+        // Socket 同步传输实现直接返回响应
+        if (async) {
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            try {
+                future.complete(getData((RpcResponse<Object>) result, rpcRequest));
+            } catch (RpcException e) {
+                future.completeExceptionally(e);
+            }
+            return future;
         }
+        return getData((RpcResponse<Object>) result, rpcRequest);
+    }
+
+    /**
+     * the result of the remote method, an asynchronous method is completed with the value of the server's future
+     */
+    private Object getData(RpcResponse<Object> rpcResponse, RpcRequest rpcRequest) {
         this.check(rpcResponse, rpcRequest);
         return rpcResponse.getData();
     }
 
+    private static Executor defaultCallbackExecutor() {
+        int threads = RpcConfigUtil.getInt(RpcConfigEnum.CLIENT_CALLBACK_THREADS, RuntimeUtil.cpus());
+        CustomThreadPoolConfig customThreadPoolConfig = new CustomThreadPoolConfig();
+        customThreadPoolConfig.setCorePoolSize(threads);
+        customThreadPoolConfig.setMaximumPoolSize(threads);
+        // 回调不能因为队列满被拒绝，否则调用方的 future 永远不会完成
+        customThreadPoolConfig.setWorkQueue(new LinkedBlockingQueue<>());
+        return ThreadPoolFactoryUtil.createCustomThreadPoolIfAbsent(customThreadPoolConfig, CALLBACK_THREAD_NAME_PREFIX, true);
+    }
+
     private void check(RpcResponse<Object> rpcResponse, RpcRequest rpcRequest) {
         if (rpcResponse == null) {
             throw new RpcException(RpcErrorMessageEnum.SERVICE_INVOCATION_FAILURE, INTERFACE_NAME + ":" + rpcRequest.getInterfaceName());
         }
 
-        if (!rpcRequest.getRequestId().equals(rpcResponse.getRequestId())) {
+        // netty 传输通常按消息头中的 long 请求 ID 匹配响应，消息体里不带 ID；只有请求带了 ID 且响应回显了 ID 时才比较。
+        // 失败响应不回显 ID，交给下面的响应码检查
+        if (rpcRequest.getRequestId() != null && rpcResponse.getRequestId() != null
+                && !rpcRequest.getRequestId().equals(rpcResponse.getRequestId())) {
             throw new RpcException(RpcErrorMessageEnum.REQUEST_NOT_MATCH_RESPONSE, INTERFACE_NAME + ":" + rpcRequest.getInterfaceName());
         }
 
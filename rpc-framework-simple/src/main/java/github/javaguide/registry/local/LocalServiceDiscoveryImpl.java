@@ -0,0 +1,39 @@
+package github.javaguide.registry.local;
+
+import github.javaguide.enums.LoadBalanceEnum;
+import github.javaguide.enums.RpcErrorMessageEnum;
+import github.javaguide.exception.RpcException;
+import github.javaguide.extension.ExtensionLoader;
+import github.javaguide.loadbalance.LoadBalance;
+import github.javaguide.registry.ServiceDiscovery;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.utils.CollectionUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+
+/**
+ * service discovery from the {@link LocalServiceRegistryImpl} of the current JVM
+ */
+@Slf4j
+public class LocalServiceDiscoveryImpl implements ServiceDiscovery {
+    private final LoadBalance loadBalance;
+
+    public LocalServiceDiscoveryImpl() {
+        this.loadBalance = ExtensionLoader.getExtensionLoader(LoadBalance.class).getExtension(LoadBalanceEnum.LOADBALANCE.getName());
+    }
+
+    @Override
+    public InetSocketAddress lookupService(RpcRequest rpcRequest) {
+        String rpcServiceName = rpcRequest.getRpcServiceName();
+        List<String> serviceUrlList = LocalServiceRegistryImpl.getServiceAddresses(rpcServiceName);
+        if (CollectionUtil.isEmpty(serviceUrlList)) {
+            throw new RpcException(RpcErrorMessageEnum.SERVICE_CAN_NOT_BE_FOUND, rpcServiceName);
+        }
+        String targetServiceUrl = loadBalance.selectServiceAddress(serviceUrlList, rpcRequest);
+        log.debug("Successfully found the service address:[{}]", targetServiceUrl);
+        String[] socketAddressArray = targetServiceUrl.split(":");
+        return new InetSocketAddress(socketAddressArray[0], Integer.parseInt(socketAddressArray[1]));
+    }
+}
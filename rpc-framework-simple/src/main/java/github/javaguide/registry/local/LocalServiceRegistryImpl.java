@@ -0,0 +1,36 @@
+package github.javaguide.registry.local;
+
+import github.javaguide.registry.ServiceRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 注册到当前 JVM 内存中的注册中心，客户端和服务端运行在同一个进程里（测试、基准测试）时代替 Zookeeper，
+ * 通过 {@code rpc.registry.type=local} 启用。
+ */
+@Slf4j
+public class LocalServiceRegistryImpl implements ServiceRegistry {
+
+    /**
+     * key: rpc service name, value: addresses in the same "host:port" form as the zookeeper child nodes
+     */
+    private static final Map<String, Set<String>> SERVICE_ADDRESS_MAP = new ConcurrentHashMap<>();
+
+    @Override
+    public void registerService(String rpcServiceName, InetSocketAddress inetSocketAddress) {
+        String address = inetSocketAddress.getHostString() + ":" + inetSocketAddress.getPort();
+        SERVICE_ADDRESS_MAP.computeIfAbsent(rpcServiceName, k -> ConcurrentHashMap.newKeySet()).add(address);
+        log.info("The local registry added [{}] at [{}]", rpcServiceName, address);
+    }
+
+    static List<String> getServiceAddresses(String rpcServiceName) {
+        Set<String> addresses = SERVICE_ADDRESS_MAP.get(rpcServiceName);
+        return addresses == null ? Collections.emptyList() : List.copyOf(addresses);
+    }
+}
@@ -17,6 +17,10 @@ public class RpcConstants {
     public static final Charset DEFAULT_CHARSET = StandardCharsets.UTF_8;
     //version information
     public static final byte VERSION = 1;
+    /**
+     * v2 header: 64-bit request id, flags and attachments, negotiated per connection
+     */
+    public static final byte VERSION_2 = 2;
     public static final byte TOTAL_LENGTH = 16;
     public static final byte REQUEST_TYPE = 1;
     public static final byte RESPONSE_TYPE = 2;
@@ -25,6 +29,42 @@ public class RpcConstants {
     //pong
     public static final byte HEARTBEAT_RESPONSE_TYPE = 4;
     public static final int HEAD_LENGTH = 16;
+    /**
+     * length of the v2 header without the attachments
+     */
+    public static final int HEAD_LENGTH_V2 = 23;
+    /**
+     * v2 flags
+     */
+    public static final byte FLAG_ONEWAY = 0x01;
+    public static final byte FLAG_HEARTBEAT = 0x02;
+    public static final byte FLAG_STREAM = 0x04;
+    public static final byte FLAG_COMPRESSED = 0x08;
+    /**
+     * the request body is a method id negotiated on the connection followed by the arguments only
+     */
+    public static final byte FLAG_METHOD_ID = 0x10;
+    /**
+     * attachment proposing a method id for the method of a full request, echoed in the response once the server bound it
+     */
+    public static final String ATTACHMENT_METHOD_ID = "mid";
+    /**
+     * the body refers to class names by the ids of the connection's class-name dictionary
+     */
+    public static final byte FLAG_CLASS_DICTIONARY = 0x20;
+    /**
+     * attachment defining the class-name dictionary entries that have not been sent on the connection yet
+     */
+    public static final String ATTACHMENT_CLASS_NAMES = "cls";
+    /**
+     * attachment with the milliseconds the caller still waits for the response when the request is sent. A budget
+     * instead of an absolute time, so that the clocks of client and server do not have to agree
+     */
+    public static final String ATTACHMENT_TIMEOUT = "to";
+    /**
+     * the request/response envelope is written in a fixed binary layout, only parameters and data go through the serializer
+     */
+    public static final byte FLAG_BINARY_ENVELOPE = 0x40;
     public static final String PING = "ping";
     public static final String PONG = "pong";
     public static final int MAX_FRAME_LENGTH = 8 * 1024 * 1024;
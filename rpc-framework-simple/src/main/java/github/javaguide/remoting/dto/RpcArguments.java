@@ -0,0 +1,21 @@
+package github.javaguide.remoting.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.io.Serializable;
+
+/**
+ * 带方法 ID 的请求的消息体：接口、方法、参数类型、分组和版本都由连接上协商好的方法 ID 代替，只剩下请求 ID 和参数
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@ToString
+public class RpcArguments implements Serializable {
+    private static final long serialVersionUID = 3420583364184418907L;
+    private String requestId;
+    private Object[] parameters;
+}
@@ -1,6 +1,8 @@
 package github.javaguide.remoting.dto;
 
 
+import github.javaguide.serialize.ClassNameDictionary;
+import io.netty.buffer.ByteBuf;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
@@ -8,6 +10,8 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
 
+import java.util.Map;
+
 /**
  * @author wangtao
  * @createTime 2020年10月2日 12:33
@@ -35,10 +39,40 @@ public class RpcMessage {
     /**
      * request id
      */
-    private int requestId;
+    private long requestId;
+    /**
+     * protocol version of the frame, 0 means the version negotiated for the connection
+     */
+    private byte version;
+    /**
+     * v2 flags, see RpcConstants.FLAG_*
+     */
+    private byte flags;
+    /**
+     * v2 attachments, metadata that can be read without decoding the body
+     */
+    private Map<String, String> attachments;
     /**
      * request data
      */
     private Object data;
+    /**
+     * raw (still compressed) body: either received and decoded lazily by RpcMessageBodyCodec,
+     * or pre-encoded by the sending thread and passed through by the encoder
+     */
+    private ByteBuf body;
+    /**
+     * service#method the data belongs to, only used locally to pick the compressor and never written on the wire
+     */
+    private String methodKey;
+    /**
+     * class-name dictionary of the connection a received body refers to, set by the decoder and never written on the wire
+     */
+    private ClassNameDictionary classNames;
+    /**
+     * System.nanoTime() after which the caller of a received request no longer waits for it, 0 when it sent no budget,
+     * set by the decoder from {@link github.javaguide.remoting.constants.RpcConstants#ATTACHMENT_TIMEOUT} and never written on the wire
+     */
+    private long deadlineNanos;
 
 }
@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
 import lombok.ToString;
 
 import java.io.Serializable;
@@ -22,6 +23,7 @@ public class RpcRequest implements Serializable {
     // 序列化版本号，用于保证序列化和反序列化的兼容性
     private static final long serialVersionUID = 1905122041950251207L;
     // 请求的唯一标识，用于匹配请求和响应
+    @Setter
     private String requestId;
     // 要调用的接口名称
     private String interfaceName;
@@ -35,6 +37,23 @@ public class RpcRequest implements Serializable {
     private String version;
     // 服务的分组信息
     private String group;
+    /**
+     * 连接上协商好的方法 ID，不为 0 时请求只带这个 ID 和参数，见 {@link github.javaguide.remoting.constants.RpcConstants#FLAG_METHOD_ID}。
+     * 不参与序列化，写在消息体的最前面
+     */
+    private transient int methodId;
+    /**
+     * 这个服务选择的序列化方式（SerializationTypeEnum 的 code），0 表示默认的 hessian。不参与序列化，写在消息头里
+     */
+    private transient byte codec;
+    /**
+     * 这个方法选择的压缩方式（CompressTypeEnum 的 code），null 表示使用 rpc.compress.type。不参与序列化，写在消息头里
+     */
+    private transient Byte compress;
+    /**
+     * 等待响应的毫秒数，0 表示一直等待。不参与序列化，只在客户端使用
+     */
+    private transient long timeout;
     /**
      * 获取 RPC 服务的完整名称，由接口名称、分组信息和版本号组合而成
      * @return RPC 服务的完整名称
@@ -0,0 +1,80 @@
+package github.javaguide.remoting.handler;
+
+import github.javaguide.enums.RpcErrorMessageEnum;
+import github.javaguide.exception.RpcException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 调用方的截止时间，以 System.nanoTime() 表示，0 表示没有截止时间。
+ * <p>
+ * 客户端把请求剩余的等待时间作为 {@link github.javaguide.remoting.constants.RpcConstants#ATTACHMENT_TIMEOUT} 附件发出，
+ * 服务端在读到请求时换算成本地的截止时间：已经过期的请求不再反序列化和调用，调用期间截止时间放在当前线程上，
+ * 服务方法里同步发起的嵌套 RPC 的超时不会超过它剩下的时间，见 {@link #timeout(long)}。
+ */
+public final class Deadline {
+    /**
+     * deadline of the request being invoked on this thread, one element to avoid boxing on every call
+     */
+    private static final ThreadLocal<long[]> CURRENT = ThreadLocal.withInitial(() -> new long[1]);
+
+    private Deadline() {
+    }
+
+    /**
+     * @return the deadline that many nanoseconds from now, never 0
+     */
+    public static long after(long nanos) {
+        long deadline = System.nanoTime() + nanos;
+        return deadline == 0 ? 1 : deadline;
+    }
+
+    public static boolean isExpired(long deadlineNanos) {
+        return deadlineNanos != 0 && System.nanoTime() - deadlineNanos >= 0;
+    }
+
+    /**
+     * make the deadline of a request current while its service method runs
+     *
+     * @return the deadline to restore with {@link #restore(long)}
+     */
+    public static long enter(long deadlineNanos) {
+        long[] current = CURRENT.get();
+        long previous = current[0];
+        current[0] = deadlineNanos;
+        return previous;
+    }
+
+    public static void restore(long previous) {
+        CURRENT.get()[0] = previous;
+    }
+
+    /**
+     * @return the deadline of the request being invoked on this thread, 0 when there is none
+     */
+    public static long current() {
+        return CURRENT.get()[0];
+    }
+
+    /**
+     * the timeout of an outgoing call, shortened to what is left of the deadline of the request being invoked
+     *
+     * @param timeoutMillis timeout configured for the call, 0 waits forever
+     * @return the timeout in milliseconds, 0 waits forever
+     * @throws RpcException when the deadline has already passed, nobody waits for the result of the call any more
+     */
+    public static long timeout(long timeoutMillis) {
+        long deadline = current();
+        if (deadline == 0) {
+            return timeoutMillis;
+        }
+        long remainingNanos = deadline - System.nanoTime();
+        if (remainingNanos <= 0) {
+            throw new RpcException(RpcErrorMessageEnum.REQUEST_TIMEOUT, "deadline of the request being handled passed "
+                    + TimeUnit.NANOSECONDS.toMillis(-remainingNanos) + "ms ago");
+        }
+        // rounded up, a timeout of 0 would mean no timeout
+        long remainingMillis = (remainingNanos + TimeUnit.MILLISECONDS.toNanos(1) - 1) / TimeUnit.MILLISECONDS.toNanos(1);
+        return timeoutMillis > 0 ? Math.min(timeoutMillis, remainingMillis) : remainingMillis;
+    }
+}
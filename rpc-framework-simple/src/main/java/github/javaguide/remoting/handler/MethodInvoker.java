@@ -0,0 +1,53 @@
+package github.javaguide.remoting.handler;
+
+import github.javaguide.exception.RpcException;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * A service method resolved once: the service object and the {@link Method} to call on it.
+ * Requests carrying a method id negotiated on the connection are dispatched to it directly.
+ */
+@Slf4j
+@Getter
+public final class MethodInvoker {
+    private final Object service;
+    private final Method method;
+    private final String interfaceName;
+    /**
+     * service#method, see {@link github.javaguide.remoting.transport.netty.codec.RpcMessageBodyCodec#methodKey}
+     */
+    private final String methodKey;
+    /**
+     * CompressTypeEnum code of the responses, null when rpc.compress.type applies, see {@link github.javaguide.config.MethodCodec}
+     */
+    private final Byte compress;
+
+    MethodInvoker(Object service, Method method, String interfaceName, String methodKey, Byte compress) {
+        this.service = service;
+        this.method = method;
+        this.interfaceName = interfaceName;
+        this.methodKey = methodKey;
+        this.compress = compress;
+    }
+
+    /**
+     * get method execution results
+     *
+     * @param parameters arguments of the call
+     * @return the result of the target method execution
+     */
+    public Object invoke(Object[] parameters) {
+        Object result;
+        try {
+            result = method.invoke(service, parameters);
+            log.info("service:[{}] successful invoke method:[{}]", interfaceName, method.getName());
+        } catch (IllegalArgumentException | InvocationTargetException | IllegalAccessException e) {
+            throw new RpcException(e.getMessage(), e);
+        }
+        return result;
+    }
+}
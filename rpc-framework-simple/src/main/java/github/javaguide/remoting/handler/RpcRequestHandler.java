@@ -1,14 +1,23 @@
 package github.javaguide.remoting.handler;
 
+import github.javaguide.config.MethodCodec;
+import github.javaguide.config.RpcServiceConfig;
 import github.javaguide.exception.RpcException;
 import github.javaguide.factory.SingletonFactory;
 import github.javaguide.provider.ServiceProvider;
 import github.javaguide.provider.impl.ZkServiceProviderImpl;
 import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageBodyCodec;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
 import lombok.extern.slf4j.Slf4j;
 
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * RpcRequest processor
@@ -19,6 +28,10 @@ import java.lang.reflect.Method;
 @Slf4j
 public class RpcRequestHandler {
     private final ServiceProvider serviceProvider;
+    /**
+     * methods resolved so far, so that reflection and {@link MethodCodec} run once per method instead of once per request
+     */
+    private final Map<InvokerKey, MethodInvoker> invokers = new ConcurrentHashMap<>();
 
     public RpcRequestHandler() {
         serviceProvider = SingletonFactory.getInstance(ZkServiceProviderImpl.class);
@@ -26,30 +39,69 @@ public class RpcRequestHandler {
 
     /**
      * Processing rpcRequest: call the corresponding method, and then return the method
+     * <p>
+     * the socket server writes the response on the calling thread, so the value of an asynchronous method is waited for
      */
     public Object handle(RpcRequest rpcRequest) {
-        //获取服务对象
-        Object service = serviceProvider.getService(rpcRequest.getRpcServiceName());
-        //调用服务对象方法
-        return invokeTargetMethod(rpcRequest, service);
+        Object result = resolve(rpcRequest).invoke(rpcRequest.getParameters());
+        if (result instanceof CompletionStage) {
+            try {
+                return ((CompletionStage<?>) result).toCompletableFuture().join();
+            } catch (CompletionException | CancellationException e) {
+                throw new RpcException(e.getMessage(), e);
+            }
+        }
+        return result;
     }
 
     /**
-     * get method execution results
+     * find the service object and the method a request targets
      *
-     * @param rpcRequest client request
-     * @param service    service object
-     * @return the result of the target method execution
+     * @param rpcRequest client request carrying the full method description
+     * @return the resolved method, ready to be invoked with the request's arguments
      */
-    private Object invokeTargetMethod(RpcRequest rpcRequest, Object service) {
-        Object result;
+    public MethodInvoker resolve(RpcRequest rpcRequest) {
+        InvokerKey key = new InvokerKey(rpcRequest.getRpcServiceName(), rpcRequest.getMethodName(), rpcRequest.getParamTypes());
+        MethodInvoker invoker = invokers.get(key);
+        if (invoker == null) {
+            invoker = invokers.computeIfAbsent(key, k -> newInvoker(rpcRequest));
+        }
+        return invoker;
+    }
+
+    private MethodInvoker newInvoker(RpcRequest rpcRequest) {
+        //获取服务对象
+        RpcServiceConfig rpcServiceConfig = serviceProvider.getServiceConfig(rpcRequest.getRpcServiceName());
+        Object service = rpcServiceConfig.getService();
         try {
             Method method = service.getClass().getMethod(rpcRequest.getMethodName(), rpcRequest.getParamTypes());
-            result = method.invoke(service, rpcRequest.getParameters());
-            log.info("service:[{}] successful invoke method:[{}]", rpcRequest.getInterfaceName(), rpcRequest.getMethodName());
-        } catch (NoSuchMethodException | IllegalArgumentException | InvocationTargetException | IllegalAccessException e) {
+            // @RpcMethod on the implementation wins over the one on the interface
+            MethodCodec methodCodec = MethodCodec.of(rpcServiceConfig, method, interfaceMethod(rpcRequest, service));
+            return new MethodInvoker(service, method, rpcRequest.getInterfaceName(), RpcMessageBodyCodec.methodKey(rpcRequest),
+                    methodCodec.getCompress());
+        } catch (NoSuchMethodException e) {
             throw new RpcException(e.getMessage(), e);
         }
-        return result;
+    }
+
+    private static Method interfaceMethod(RpcRequest rpcRequest, Object service) {
+        for (Class<?> serviceInterface : service.getClass().getInterfaces()) {
+            if (serviceInterface.getName().equals(rpcRequest.getInterfaceName())) {
+                try {
+                    return serviceInterface.getMethod(rpcRequest.getMethodName(), rpcRequest.getParamTypes());
+                } catch (NoSuchMethodException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    private static final class InvokerKey {
+        private final String rpcServiceName;
+        private final String methodName;
+        private final Class<?>[] paramTypes;
     }
 }
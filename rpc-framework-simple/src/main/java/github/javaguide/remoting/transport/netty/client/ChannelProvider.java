@@ -1,69 +1,261 @@
 package github.javaguide.remoting.transport.netty.client;
 
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.enums.RpcErrorMessageEnum;
+import github.javaguide.exception.RpcException;
+import github.javaguide.utils.RpcConfigUtil;
 import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
 import lombok.extern.slf4j.Slf4j;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
  * store and get Channel object
+ * <p>
+ * 每个服务端地址维护一个最多 {@code rpc.client.connectionsPerAddress} 个连接的连接池。发送时选择在途请求最少的连接
+ * （优先可写的连接，在途请求一样多时选写缓冲区剩余空间最大的）；所有连接都有在途请求且没到上限时再建一个新连接。
+ * 多出来的连接超过 {@code rpc.client.connectionIdleTimeout} 秒没有被选中时，在写空闲检查时关闭，每个地址至少保留一个连接。
+ * <p>
+ * 同一个地址同时只有一次建连，正在建立的连接是一个共享的 future，还没有可用连接的调用方都挂在它上面，不阻塞线程。
+ * 建连失败后这个失败的 future 会保留一段带随机抖动的指数退避时间，期间的调用直接失败，不会反复去连一个连不上的地址。
  *
  * @author shuang.kou
  * @createTime 2020年05月29日 16:36:00
  */
 @Slf4j
 public class ChannelProvider {
+    private static final AttributeKey<PooledChannel> POOLED_CHANNEL = AttributeKey.valueOf("rpcPooledChannel");
+    private static final int MAX_BACKOFF_SHIFT = 20;
+
     /**
-     * 用于存储套接字地址与 Channel 对象映射关系的 Map
-     * 键为地址的字符串表示，值为对应的 Channel 对象
+     * 用于存储套接字地址与连接池映射关系的 Map
+     * 键为地址的字符串表示，值为到该地址的连接池
      */
-    private final Map<String, Channel> channelMap;
+    private final Map<String, Pool> channelMap;
+    private final int maxConnections;
+    private final long idleTimeoutNanos;
+    private final long backoffNanos;
+    private final long maxBackoffNanos;
+
     /**
-     * 构造函数，初始化存储 Channel 对象的 Map 为线程安全的 ConcurrentHashMap
+     * 构造函数，初始化存储连接池的 Map 为线程安全的 ConcurrentHashMap，连接数上限、空闲时间和重连退避时间从配置中读取
      */
     public ChannelProvider() {
-        channelMap = new ConcurrentHashMap<>();
+        this(RpcConfigUtil.getInt(RpcConfigEnum.CLIENT_CONNECTIONS_PER_ADDRESS, 1),
+                TimeUnit.SECONDS.toNanos(RpcConfigUtil.getLong(RpcConfigEnum.CLIENT_CONNECTION_IDLE_TIMEOUT, 60)),
+                TimeUnit.MILLISECONDS.toNanos(RpcConfigUtil.getLong(RpcConfigEnum.CLIENT_RECONNECT_BACKOFF, 100)),
+                TimeUnit.MILLISECONDS.toNanos(RpcConfigUtil.getLong(RpcConfigEnum.CLIENT_RECONNECT_MAX_BACKOFF, 10_000)));
+    }
+
+    ChannelProvider(int maxConnections, long idleTimeoutNanos, long backoffNanos, long maxBackoffNanos) {
+        this.channelMap = new ConcurrentHashMap<>();
+        this.maxConnections = Math.max(1, maxConnections);
+        this.idleTimeoutNanos = idleTimeoutNanos;
+        this.backoffNanos = backoffNanos;
+        this.maxBackoffNanos = maxBackoffNanos;
     }
+
     /**
-     * 根据 InetSocketAddress 获取对应的 Channel 对象
+     * 选择一个发往指定地址的连接，需要时通过 connector 新建连接。
+     * 已经有连接时立即返回其中最空闲的一个（新连接在后台建立）；还没有连接时返回共享的建连 future。
      *
      * @param inetSocketAddress 目标地址
-     * @return 若存在可用的 Channel 则返回该 Channel，否则返回 null
+     * @param connector         异步建立到目标地址的连接，失败时 future 异常完成
+     * @return 可用的 Channel
      */
-    public Channel get(InetSocketAddress inetSocketAddress) {
-        String key = inetSocketAddress.toString();
-        // determine if there is a connection for the corresponding address
-        if (channelMap.containsKey(key)) {
-            Channel channel = channelMap.get(key);
-            // if so, determine if the connection is available, and if so, get it directly
-            if (channel != null && channel.isActive()) {
-                return channel;
-            } else {
-                channelMap.remove(key);
+    public CompletableFuture<Channel> acquire(InetSocketAddress inetSocketAddress,
+                                              Function<InetSocketAddress, CompletableFuture<Channel>> connector) {
+        Pool pool = channelMap.computeIfAbsent(inetSocketAddress.toString(), Pool::new);
+        PooledChannel selected = select(pool.channels);
+        if (selected == null || (selected.pending() > 0 && pool.channels.size() < maxConnections)) {
+            CompletableFuture<Channel> connecting = connect(pool, inetSocketAddress, connector);
+            if (selected == null) {
+                return connecting;
             }
         }
-        return null;
+        selected.lastUsedNanos = System.nanoTime();
+        return CompletableFuture.completedFuture(selected.channel);
     }
+
     /**
-     * 设置指定地址对应的 Channel 对象
+     * 写空闲时调用：连接上没有在途请求、超过空闲时间没有被选中，并且不是到这个地址的最后一个连接时关闭它
      *
-     * @param inetSocketAddress 目标地址
-     * @param channel 要存储的 Channel 对象
+     * @return 连接是否被关闭
      */
-    public void set(InetSocketAddress inetSocketAddress, Channel channel) {
-        String key = inetSocketAddress.toString();
-        channelMap.put(key, channel);
+    public boolean closeIfIdle(Channel channel) {
+        PooledChannel pooledChannel = channel.attr(POOLED_CHANNEL).get();
+        if (pooledChannel == null) {
+            return false;
+        }
+        Pool pool = channelMap.get(pooledChannel.key);
+        if (pool == null) {
+            return false;
+        }
+        synchronized (pool) {
+            if (pool.channels.size() <= 1 || pooledChannel.pending() > 0
+                    || System.nanoTime() - pooledChannel.lastUsedNanos < idleTimeoutNanos) {
+                return false;
+            }
+            pool.channels.remove(pooledChannel);
+        }
+        log.info("Close idle connection [{}], connections to [{}]: [{}]", channel, pooledChannel.key, pool.channels.size());
+        channel.close();
+        return true;
     }
+
     /**
-     * 移除指定地址对应的 Channel 对象
-     *
-     * @param inetSocketAddress 目标地址
+     * @return 到指定地址的每个连接当前的占用情况
      */
-    public void remove(InetSocketAddress inetSocketAddress) {
-        String key = inetSocketAddress.toString();
-        channelMap.remove(key);
-        log.info("Channel map size :[{}]", channelMap.size());
+    public List<ConnectionOccupancy> occupancy(InetSocketAddress inetSocketAddress) {
+        Pool pool = channelMap.get(inetSocketAddress.toString());
+        if (pool == null) {
+            return Collections.emptyList();
+        }
+        long now = System.nanoTime();
+        List<ConnectionOccupancy> occupancy = new ArrayList<>(pool.channels.size());
+        for (PooledChannel pooledChannel : pool.channels) {
+            Channel channel = pooledChannel.channel;
+            occupancy.add(new ConnectionOccupancy(String.valueOf(channel.localAddress()), pooledChannel.pending(),
+                    channel.isWritable(), channel.bytesBeforeUnwritable(),
+                    TimeUnit.NANOSECONDS.toMillis(now - pooledChannel.lastUsedNanos)));
+        }
+        return occupancy;
+    }
+
+    /**
+     * 同一个地址同时只建一个连接：正在建立或者还在退避期内的失败结果直接共享给调用方
+     */
+    private CompletableFuture<Channel> connect(Pool pool, InetSocketAddress inetSocketAddress,
+                                               Function<InetSocketAddress, CompletableFuture<Channel>> connector) {
+        synchronized (pool) {
+            CompletableFuture<Channel> connecting = pool.connecting;
+            if (connecting != null && (!connecting.isDone()
+                    || (connecting.isCompletedExceptionally() && System.nanoTime() < pool.retryAtNanos))) {
+                return connecting;
+            }
+            CompletableFuture<Channel> attempt;
+            try {
+                attempt = connector.apply(inetSocketAddress);
+            } catch (RuntimeException e) {
+                attempt = new CompletableFuture<>();
+                attempt.completeExceptionally(e);
+            }
+            // 先把新连接放进连接池（或者记下失败）再通知等待的调用方
+            pool.connecting = attempt.handle((channel, cause) -> connected(pool, channel, cause));
+            return pool.connecting;
+        }
+    }
+
+    private Channel connected(Pool pool, Channel channel, Throwable cause) {
+        synchronized (pool) {
+            if (cause == null) {
+                pool.failures = 0;
+                add(pool, new PooledChannel(pool.key, channel));
+                log.info("Connections to [{}]: [{}]", pool.key, pool.channels.size());
+                return channel;
+            }
+            pool.failures++;
+            long backoff = backoff(pool.failures);
+            pool.retryAtNanos = System.nanoTime() + backoff;
+            log.warn("Connect to [{}] failed {} time(s), retry in {} ms", pool.key, pool.failures,
+                    TimeUnit.NANOSECONDS.toMillis(backoff));
+        }
+        Throwable reason = cause instanceof CompletionException && cause.getCause() != null ? cause.getCause() : cause;
+        throw new RpcException(RpcErrorMessageEnum.CLIENT_CONNECT_SERVER_FAILURE.getMessage() + ":" + pool.key, reason);
+    }
+
+    /**
+     * 指数退避，取 [d/2, d] 之间的随机值，避免很多客户端同时重连
+     */
+    long backoff(int failures) {
+        long delay = backoffNanos << Math.min(failures - 1, MAX_BACKOFF_SHIFT);
+        if (delay <= 0 || delay > maxBackoffNanos) {
+            delay = maxBackoffNanos;
+        }
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    private static void add(Pool pool, PooledChannel pooledChannel) {
+        Channel channel = pooledChannel.channel;
+        channel.attr(POOLED_CHANNEL).set(pooledChannel);
+        pool.channels.add(pooledChannel);
+        // 连接断开后立刻从连接池中移除
+        channel.closeFuture().addListener(future -> pool.channels.remove(pooledChannel));
+    }
+
+    /**
+     * 可写的连接优先，其次在途请求最少，最后写缓冲区剩余空间最大
+     */
+    private static PooledChannel select(List<PooledChannel> channels) {
+        PooledChannel selected = null;
+        int selectedPending = 0;
+        for (PooledChannel candidate : channels) {
+            Channel channel = candidate.channel;
+            if (!channel.isActive()) {
+                channels.remove(candidate);
+                continue;
+            }
+            int pending = candidate.pending();
+            if (selected == null || isBetter(channel, pending, selected.channel, selectedPending)) {
+                selected = candidate;
+                selectedPending = pending;
+            }
+        }
+        return selected;
+    }
+
+    private static boolean isBetter(Channel channel, int pending, Channel selected, int selectedPending) {
+        if (channel.isWritable() != selected.isWritable()) {
+            return channel.isWritable();
+        }
+        if (pending != selectedPending) {
+            return pending < selectedPending;
+        }
+        return channel.bytesBeforeUnwritable() > selected.bytesBeforeUnwritable();
+    }
+
+    /**
+     * connections to one address, the connection being established and the reconnect backoff
+     */
+    private static final class Pool {
+        private final String key;
+        private final List<PooledChannel> channels = new CopyOnWriteArrayList<>();
+        /**
+         * last connection attempt, guarded by the pool
+         */
+        private CompletableFuture<Channel> connecting;
+        private int failures;
+        private long retryAtNanos;
+
+        private Pool(String key) {
+            this.key = key;
+        }
+    }
+
+    private static final class PooledChannel {
+        private final String key;
+        private final Channel channel;
+        private volatile long lastUsedNanos = System.nanoTime();
+
+        private PooledChannel(String key, Channel channel) {
+            this.key = key;
+            this.channel = channel;
+        }
+
+        private int pending() {
+            return UnprocessedRequests.get(channel).size();
+        }
     }
 }
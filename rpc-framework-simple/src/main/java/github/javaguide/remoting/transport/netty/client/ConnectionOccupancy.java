@@ -0,0 +1,31 @@
+package github.javaguide.remoting.transport.netty.client;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 某个时刻一个客户端连接的占用情况，见 {@link ChannelProvider#occupancy(java.net.InetSocketAddress)}
+ */
+@AllArgsConstructor
+@Getter
+@ToString
+public class ConnectionOccupancy {
+    /**
+     * local address of the connection
+     */
+    private final String localAddress;
+    /**
+     * requests sent on the connection and still waiting for their response
+     */
+    private final int pendingRequests;
+    private final boolean writable;
+    /**
+     * bytes that can still be written before the connection becomes unwritable
+     */
+    private final long bytesBeforeUnwritable;
+    /**
+     * milliseconds since the connection was last chosen for a request
+     */
+    private final long idleMillis;
+}
@@ -0,0 +1,97 @@
+package github.javaguide.remoting.transport.netty.client;
+
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageBodyCodec;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 客户端一个连接上的方法 ID 表，保存在 channel 的属性上，重连后从头协商。
+ * <p>
+ * 某个方法第一次在连接上调用时，完整的请求带着附件 {@code mid} 提议一个 ID；服务端解析出方法后记下这个 ID，
+ * 并在响应的附件里原样带回。收到确认之后，这个方法的请求只带 ID 和参数。没有确认（旧服务端、v1 连接）就一直发送完整请求。
+ */
+public final class MethodIds {
+    private static final AttributeKey<MethodIds> KEY = AttributeKey.valueOf("rpcMethodIds");
+
+    private final AtomicInteger idGenerator = new AtomicInteger(1);
+    private final Map<Signature, Binding> bindings = new ConcurrentHashMap<>();
+    private final Map<Integer, Binding> bindingsById = new ConcurrentHashMap<>();
+
+    public static MethodIds get(Channel channel) {
+        MethodIds methodIds = channel.attr(KEY).get();
+        if (methodIds == null) {
+            MethodIds created = new MethodIds();
+            methodIds = channel.attr(KEY).setIfAbsent(created);
+            if (methodIds == null) {
+                methodIds = created;
+            }
+        }
+        return methodIds;
+    }
+
+    /**
+     * @return the id of the method the request targets, assigned on first use
+     */
+    public Binding bind(RpcRequest rpcRequest) {
+        Signature signature = new Signature(rpcRequest.getInterfaceName(), rpcRequest.getGroup(), rpcRequest.getVersion(),
+                rpcRequest.getMethodName(), rpcRequest.getParamTypes());
+        Binding binding = bindings.get(signature);
+        if (binding == null) {
+            binding = bindings.computeIfAbsent(signature, k -> {
+                Binding created = new Binding(idGenerator.getAndIncrement(), RpcMessageBodyCodec.methodKey(rpcRequest));
+                bindingsById.put(created.getId(), created);
+                return created;
+            });
+        }
+        return binding;
+    }
+
+    /**
+     * the server echoed the id: from now on requests for the method only carry the id
+     */
+    public void acknowledge(int id) {
+        Binding binding = bindingsById.get(id);
+        if (binding != null) {
+            binding.acknowledged = true;
+        }
+    }
+
+    @Getter
+    public static final class Binding {
+        private final int id;
+        /**
+         * service#method, computed once per connection instead of per call
+         */
+        private final String methodKey;
+        private volatile boolean acknowledged;
+
+        private Binding(int id, String methodKey) {
+            this.id = id;
+            this.methodKey = methodKey;
+        }
+    }
+
+    @EqualsAndHashCode
+    private static final class Signature {
+        private final String interfaceName;
+        private final String group;
+        private final String version;
+        private final String methodName;
+        private final Class<?>[] paramTypes;
+
+        private Signature(String interfaceName, String group, String version, String methodName, Class<?>[] paramTypes) {
+            this.interfaceName = interfaceName;
+            this.group = group;
+            this.version = version;
+            this.methodName = methodName;
+            this.paramTypes = paramTypes;
+        }
+    }
+}
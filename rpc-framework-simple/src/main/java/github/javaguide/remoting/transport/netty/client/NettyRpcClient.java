@@ -1,7 +1,7 @@
 package github.javaguide.remoting.transport.netty.client;
 
 
-import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.RpcConfigEnum;
 import github.javaguide.enums.SerializationTypeEnum;
 import github.javaguide.enums.ServiceDiscoveryEnum;
 import github.javaguide.extension.ExtensionLoader;
@@ -10,10 +10,12 @@ import github.javaguide.registry.ServiceDiscovery;
 import github.javaguide.remoting.constants.RpcConstants;
 import github.javaguide.remoting.dto.RpcMessage;
 import github.javaguide.remoting.dto.RpcRequest;
-import github.javaguide.remoting.dto.RpcResponse;
 import github.javaguide.remoting.transport.RpcRequestTransport;
+import github.javaguide.remoting.transport.netty.codec.ConnectionContext;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageBodyCodec;
 import github.javaguide.remoting.transport.netty.codec.RpcMessageDecoder;
 import github.javaguide.remoting.transport.netty.codec.RpcMessageEncoder;
+import github.javaguide.utils.RpcConfigUtil;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.*;
 import io.netty.channel.epoll.EpollEventLoopGroup;
@@ -23,11 +25,14 @@ import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 import io.netty.handler.timeout.IdleStateHandler;
-import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 
 import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -41,8 +46,6 @@ import java.util.concurrent.TimeUnit;
 public final class NettyRpcClient implements RpcRequestTransport {
     // 服务发现组件，用于查找服务提供者的地址
     private final ServiceDiscovery serviceDiscovery;
-    // 未处理请求的容器，用于存储待处理的 RPC 请求及其对应的 CompletableFuture
-    private final UnprocessedRequests unprocessedRequests;
     // 通道提供者，用于管理和获取与服务器地址对应的通道
     private final ChannelProvider channelProvider;
     // Netty 的客户端启动器，用于配置和启动客户端连接
@@ -101,9 +104,8 @@ public final class NettyRpcClient implements RpcRequestTransport {
                     }
                 });
         // 初始化服务发现组件
-        this.serviceDiscovery = ExtensionLoader.getExtensionLoader(ServiceDiscovery.class).getExtension(ServiceDiscoveryEnum.ZK.getName());
-        // 获取 UnprocessedRequests 的单例实例
-        this.unprocessedRequests = SingletonFactory.getInstance(UnprocessedRequests.class);
+        this.serviceDiscovery = ExtensionLoader.getExtensionLoader(ServiceDiscovery.class)
+                .getExtension(RpcConfigUtil.getString(RpcConfigEnum.REGISTRY_TYPE, ServiceDiscoveryEnum.ZK.getName()));
         // 获取 ChannelProvider 的单例实例
         this.channelProvider = SingletonFactory.getInstance(ChannelProvider.class);
     }
@@ -112,10 +114,9 @@ public final class NettyRpcClient implements RpcRequestTransport {
      * connect server and get the channel ,so that you can send rpc message to server
      *
      * @param inetSocketAddress server address
-     * @return the channel
+     * @return the channel, completed exceptionally when the connection fails
      */
-    @SneakyThrows
-    public Channel doConnect(InetSocketAddress inetSocketAddress) {
+    public CompletableFuture<Channel> doConnect(InetSocketAddress inetSocketAddress) {
         // 1. 创建异步结果容器,结果是Channel类型
         /*
         * CompletableFuture 是 Java 8 引入的异步编程工具，用于表示一个“未来可能完成的异步操作结果”。
@@ -153,37 +154,83 @@ public final class NettyRpcClient implements RpcRequestTransport {
                 * */
                 completableFuture.complete(future.channel());
             } else {
-                // 4. 连接失败处理
-                throw new IllegalStateException();
+                // 4. 连接失败处理：让等待这个连接的调用方都收到失败，而不是在监听器里抛异常让它们一直等下去
+                completableFuture.completeExceptionally(future.cause());
             }
         });
-        // 5. 阻塞等待连接完成，返回 Channel
+        // 5. 不阻塞，返回 Channel 的 future
         /*
-        * 通过 completableFuture.get() 同步阻塞等待连接完成，或通过 thenAccept 等方法异步处理结果
+        * 调用方通过 thenAccept/whenComplete 等方法异步处理结果，见 sendRpcRequest
         * */
-        return completableFuture.get();//返回已连接的 Channel 实例
+        return completableFuture;
     }
 
     @Override
     public Object sendRpcRequest(RpcRequest rpcRequest) {
         // build return value
         /*
-        * CompletableFuture<RpcResponse<Object>> 实例是异步对象。
+        * CompletableFuture<RpcMessage> 实例是异步对象。
         * 它的作用是异步等待服务端响应结果，并在响应到达时通过 complete 方法传递结果。
+        * 响应消息只解析了消息头，消息体由等待结果的线程通过 RpcMessageBodyCodec.decodeBody 反序列化。
         * */
-        CompletableFuture<RpcResponse<Object>> resultFuture = new CompletableFuture<>();
+        CompletableFuture<RpcMessage> resultFuture = new CompletableFuture<>();
+        // 超时从调用开始计算，等待建立连接花掉的时间从中扣除
+        long deadlineNanos = rpcRequest.getTimeout() > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(rpcRequest.getTimeout()) : 0;
         // get server address
         InetSocketAddress inetSocketAddress = serviceDiscovery.lookupService(rpcRequest);
-        // get  server address related channel
-        Channel channel = getChannel(inetSocketAddress);
+        // get  server address related channel, 连接还没建好时在连接的 future 上继续，不阻塞调用线程
+        getChannel(inetSocketAddress).whenComplete((channel, cause) -> {
+            if (cause != null) {
+                resultFuture.completeExceptionally(cause instanceof CompletionException && cause.getCause() != null ? cause.getCause() : cause);
+            } else {
+                try {
+                    send(channel, rpcRequest, resultFuture, deadlineNanos);
+                } catch (RuntimeException e) {
+                    // 可能运行在 I/O 线程的回调里，异常只能通过 future 交给调用方
+                    resultFuture.completeExceptionally(e);
+                }
+            }
+        });
+        return resultFuture;
+    }
+
+    private void send(Channel channel, RpcRequest rpcRequest, CompletableFuture<RpcMessage> resultFuture, long deadlineNanos) {
         if (channel.isActive()) {
-            // put unprocessed request
-            unprocessedRequests.put(rpcRequest.getRequestId(), resultFuture);
+            // 请求 ID 在连接内递增，响应按消息头中的请求 ID 匹配（对端是旧版本服务端时按消息体中的 ID）
+            UnprocessedRequests unprocessedRequests = UnprocessedRequests.get(channel);
+            long requestId = unprocessedRequests.nextRequestId();
+            long timeoutNanos = deadlineNanos == 0 ? 0 : Math.max(1, deadlineNanos - System.nanoTime());
+            // put unprocessed request，到期还没有响应时由 UnprocessedRequests 的定时器移除并让它失败
+            unprocessedRequests.put(requestId, resultFuture, timeoutNanos);
             RpcMessage rpcMessage = RpcMessage.builder()
                     .data(rpcRequest)
-                    .codec(SerializationTypeEnum.HESSIAN.getCode())
-                    .compress(CompressTypeEnum.GZIP.getCode())
+                    .codec(rpcRequest.getCodec() != 0 ? rpcRequest.getCodec() : SerializationTypeEnum.HESSIAN.getCode())
+                    .compress(rpcRequest.getCompress() != null ? rpcRequest.getCompress() : RpcMessageBodyCodec.getCompressType())
+                    .requestId(requestId)
                     .messageType(RpcConstants.REQUEST_TYPE).build();
+            if (!ConnectionContext.get(channel).hasPeerHandshake()) {
+                // 还没有收到服务端的握手，对端可能是不回显消息头中请求 ID 的旧版本服务端：
+                // 请求 ID 也写进消息体，并固定按 v1 发送，响应按消息体中回显的 ID 匹配，见 UnprocessedRequests#complete
+                rpcRequest.setRequestId(Long.toString(requestId));
+                rpcMessage.setVersion(RpcConstants.VERSION);
+            }
+            if (RpcMessageBodyCodec.isMethodIdEnabled() && ConnectionContext.get(channel).getVersion() >= RpcConstants.VERSION_2) {
+                internMethod(rpcMessage, rpcRequest, channel);
+            }
+            if (timeoutNanos != 0 && ConnectionContext.get(channel).getVersion() >= RpcConstants.VERSION_2) {
+                // 告诉服务端还剩多少时间，过期的请求服务端不再处理；v1 的消息头没有附件，不传
+                attach(rpcMessage, RpcConstants.ATTACHMENT_TIMEOUT, Long.toString(TimeUnit.NANOSECONDS.toMillis(timeoutNanos)));
+            }
+            if (RpcMessageBodyCodec.isPreEncode()) {
+                // 在调用线程上完成序列化和压缩，I/O 线程只需要写消息头
+                try {
+                    RpcMessageBodyCodec.preEncode(rpcMessage, channel);
+                } catch (RuntimeException e) {
+                    unprocessedRequests.remove(requestId);
+                    resultFuture.completeExceptionally(e);
+                    return;
+                }
+            }
             //相当于先写入缓冲区再立即刷新，是发送完整消息, 在channel中发送rpc请求
             //writeAndFlush是异步的，会返回一个ChannelFuture对象，用于监听消息发送的结果
             ChannelFuture channelFuture = channel.writeAndFlush(rpcMessage);
@@ -195,24 +242,48 @@ public final class NettyRpcClient implements RpcRequestTransport {
                     log.info("client send message: [{}]", rpcMessage);
                 } else {
                     future.channel().close();
+                    RpcMessageBodyCodec.discardBody(rpcMessage);
+                    unprocessedRequests.remove(requestId);
                     resultFuture.completeExceptionally(future.cause());
                     log.error("Send failed:", future.cause());
                 }
             });
         } else {
-            throw new IllegalStateException();
+            resultFuture.completeExceptionally(new IllegalStateException("connection " + channel + " is not active"));
         }
+    }
 
-        return resultFuture;
+    /**
+     * 方法 ID 已经被服务端确认时只发送 ID 和参数，否则发送完整请求并提议一个 ID，见 {@link MethodIds}
+     */
+    private void internMethod(RpcMessage rpcMessage, RpcRequest rpcRequest, Channel channel) {
+        MethodIds.Binding binding = MethodIds.get(channel).bind(rpcRequest);
+        rpcMessage.setMethodKey(binding.getMethodKey());
+        if (binding.isAcknowledged()) {
+            rpcMessage.setFlags(RpcConstants.FLAG_METHOD_ID);
+            rpcMessage.setData(RpcRequest.builder()
+                    .methodId(binding.getId())
+                    .requestId(rpcRequest.getRequestId())
+                    .parameters(rpcRequest.getParameters()).build());
+        } else {
+            attach(rpcMessage, RpcConstants.ATTACHMENT_METHOD_ID, Integer.toString(binding.getId()));
+        }
     }
 
-    public Channel getChannel(InetSocketAddress inetSocketAddress) {
-        Channel channel = channelProvider.get(inetSocketAddress); // 从 ChannelProvider 中获取已有连接
-        if (channel == null) {//没有连接就新建连接
-            channel = doConnect(inetSocketAddress);// 调用 doConnect 新建连接
-            channelProvider.set(inetSocketAddress, channel); // 存储新连接到 ChannelProvider
+    private static void attach(RpcMessage rpcMessage, String key, String value) {
+        Map<String, String> attachments = rpcMessage.getAttachments();
+        if (attachments == null) {
+            rpcMessage.setAttachments(Collections.singletonMap(key, value));
+        } else {
+            Map<String, String> merged = new HashMap<>(attachments);
+            merged.put(key, value);
+            rpcMessage.setAttachments(merged);
         }
-        return channel;
+    }
+
+    public CompletableFuture<Channel> getChannel(InetSocketAddress inetSocketAddress) {
+        // 从连接池中选择在途请求最少的连接，需要时调用 doConnect 新建连接
+        return channelProvider.acquire(inetSocketAddress, this::doConnect);
     }
 
     public void close() {
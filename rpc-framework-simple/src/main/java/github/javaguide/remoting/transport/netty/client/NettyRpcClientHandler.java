@@ -5,7 +5,8 @@ import github.javaguide.enums.SerializationTypeEnum;
 import github.javaguide.factory.SingletonFactory;
 import github.javaguide.remoting.constants.RpcConstants;
 import github.javaguide.remoting.dto.RpcMessage;
-import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.remoting.transport.netty.codec.ConnectionContext;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageBodyCodec;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
@@ -16,8 +17,6 @@ import io.netty.handler.timeout.IdleStateEvent;
 import io.netty.util.ReferenceCountUtil;
 import lombok.extern.slf4j.Slf4j;
 
-import java.net.InetSocketAddress;
-
 /**
  * Customize the client ChannelHandler to process the data sent by the server
  *
@@ -30,12 +29,10 @@ import java.net.InetSocketAddress;
  */
 @Slf4j
 public class NettyRpcClientHandler extends ChannelInboundHandlerAdapter {
-    private final UnprocessedRequests unprocessedRequests;
-    private final NettyRpcClient nettyRpcClient;
+    private final ChannelProvider channelProvider;
 
     public NettyRpcClientHandler() {
-        this.unprocessedRequests = SingletonFactory.getInstance(UnprocessedRequests.class);
-        this.nettyRpcClient = SingletonFactory.getInstance(NettyRpcClient.class);
+        this.channelProvider = SingletonFactory.getInstance(ChannelProvider.class);
     }
 
     /**
@@ -49,12 +46,20 @@ public class NettyRpcClientHandler extends ChannelInboundHandlerAdapter {
                 RpcMessage tmp = (RpcMessage) msg;
                 byte messageType = tmp.getMessageType();
                 if (messageType == RpcConstants.HEARTBEAT_RESPONSE_TYPE) {
-                    // 心跳响应，不做处理
+                    // 心跳响应，带消息体的是服务端对握手的回应
                     log.info("heart [{}]", tmp.getData());
+                    if (tmp.getBody() != null) {
+                        ConnectionContext.get(ctx.channel()).readHandshake(tmp.getBody());
+                        RpcMessageBodyCodec.discardBody(tmp);
+                    }
                 } else if (messageType == RpcConstants.RESPONSE_TYPE) {
-                    // 处理响应消息
-                    RpcResponse<Object> rpcResponse = (RpcResponse<Object>) tmp.getData();
-                    unprocessedRequests.complete(rpcResponse);
+                    // 处理响应消息，消息体留给等待结果的调用线程反序列化
+                    String methodId = tmp.getAttachments() == null ? null : tmp.getAttachments().get(RpcConstants.ATTACHMENT_METHOD_ID);
+                    if (methodId != null) {
+                        // 服务端确认了请求里提议的方法 ID
+                        MethodIds.get(ctx.channel()).acknowledge(Integer.parseInt(methodId));
+                    }
+                    UnprocessedRequests.get(ctx.channel()).complete(tmp);
                 }
             }
         } finally {
@@ -62,13 +67,41 @@ public class NettyRpcClientHandler extends ChannelInboundHandlerAdapter {
         }
     }
 
+    /**
+     * 连接建立后先发送一个带握手信息的心跳请求，告诉服务端本端支持的可选能力
+     */
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        RpcMessage rpcMessage = new RpcMessage();
+        rpcMessage.setCodec(SerializationTypeEnum.PROTOSTUFF.getCode());
+        rpcMessage.setCompress(CompressTypeEnum.NONE.getCode());
+        rpcMessage.setMessageType(RpcConstants.HEARTBEAT_REQUEST_TYPE);
+        rpcMessage.setData(RpcConstants.PING);
+        rpcMessage.setBody(ConnectionContext.writeHandshake(ctx.alloc()));
+        ctx.writeAndFlush(rpcMessage).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+        super.channelActive(ctx);
+    }
+
+    /**
+     * 连接断开后，这个连接上还没有收到响应的请求都不会再有响应了
+     */
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        UnprocessedRequests.get(ctx.channel()).failAll(new IllegalStateException("connection to " + ctx.channel().remoteAddress() + " closed"));
+        super.channelInactive(ctx);
+    }
+
     @Override
     public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
         if (evt instanceof IdleStateEvent) {
             IdleState state = ((IdleStateEvent) evt).state();
             if (state == IdleState.WRITER_IDLE) {
                 log.info("write idle happen [{}]", ctx.channel().remoteAddress());
-                Channel channel = nettyRpcClient.getChannel((InetSocketAddress) ctx.channel().remoteAddress());
+                // 连接池中多余的空闲连接直接关闭，其余的连接发送心跳保活
+                if (channelProvider.closeIfIdle(ctx.channel())) {
+                    return;
+                }
+                Channel channel = ctx.channel();
                 RpcMessage rpcMessage = new RpcMessage();
                 rpcMessage.setCodec(SerializationTypeEnum.PROTOSTUFF.getCode());
                 rpcMessage.setCompress(CompressTypeEnum.GZIP.getCode());
@@ -1,40 +1,249 @@
 package github.javaguide.remoting.transport.netty.client;
 
+import github.javaguide.enums.RpcErrorMessageEnum;
+import github.javaguide.exception.RpcException;
+import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.remoting.dto.RpcMessage;
 import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.remoting.transport.netty.codec.ConnectionContext;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageBodyCodec;
+import github.javaguide.utils.concurrent.threadpool.ThreadPoolFactoryUtil;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.collection.LongObjectHashMap;
+import lombok.extern.slf4j.Slf4j;
 
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * unprocessed requests by the server.
+ * <p>
+ * 每个连接一张表，保存在 channel 的属性上。请求 ID 是连接内单调递增的 long，写在消息头里，响应按消息头中的 ID 匹配。
+ * 旧版本的服务端不回显消息头中的请求 ID，对端的握手到达之前响应改按消息体中回显的 ID 匹配，见 {@link ConnectionContext#hasPeerHandshake()}。
+ * 表按 ID 分成 {@link #STRIPES} 段，每段是一个以 long 为键的 {@link LongObjectHashMap}（键不装箱），
+ * 只在读写自己那一段时加锁，连续的 ID 落在不同的段上。
+ * <p>
+ * 带超时的请求在所有连接共用的一个 {@link HashedWheelTimer} 上登记，到期时从表中移除并以超时异常结束；
+ * 先收到响应时取消它。超时之后才到的响应找不到请求，直接丢弃并计数。
  *
  * @author shuang.kou
  * @createTime 2020年06月04日 17:30:00
  */
-public class UnprocessedRequests {
-    private static final Map<String, CompletableFuture<RpcResponse<Object>>> UNPROCESSED_RESPONSE_FUTURES = new ConcurrentHashMap<>();
+@Slf4j
+public final class UnprocessedRequests {
+    private static final AttributeKey<UnprocessedRequests> KEY = AttributeKey.valueOf("rpcUnprocessedRequests");
+    /**
+     * number of stripes, a power of two
+     */
+    private static final int STRIPES = 16;
+    private static final long TICK_MILLIS = 10;
+    private static final int TICKS_PER_WHEEL = 512;
+    /**
+     * expires the requests of all the connections
+     */
+    private static final Timer TIMER = new HashedWheelTimer(ThreadPoolFactoryUtil.createThreadFactory("rpc-request-timeout", true),
+            TICK_MILLIS, TimeUnit.MILLISECONDS, TICKS_PER_WHEEL);
+    private static final LongAdder TIMED_OUT_REQUESTS = new LongAdder();
+    private static final LongAdder LATE_RESPONSES = new LongAdder();
+
+    private final Channel channel;
+    private final AtomicLong requestIdGenerator = new AtomicLong(1);
+    private final LongObjectHashMap<Pending>[] stripes;
+    /**
+     * number of entries over all the stripes, read on every send to pick the least busy connection
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    @SuppressWarnings("unchecked")
+    UnprocessedRequests(Channel channel) {
+        this.channel = channel;
+        this.stripes = new LongObjectHashMap[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new LongObjectHashMap<>();
+        }
+    }
+
+    /**
+     * @return the pending request table of the connection, created on first use
+     */
+    public static UnprocessedRequests get(Channel channel) {
+        UnprocessedRequests unprocessedRequests = channel.attr(KEY).get();
+        if (unprocessedRequests == null) {
+            UnprocessedRequests created = new UnprocessedRequests(channel);
+            unprocessedRequests = channel.attr(KEY).setIfAbsent(created);
+            if (unprocessedRequests == null) {
+                unprocessedRequests = created;
+            }
+        }
+        return unprocessedRequests;
+    }
+
+    /**
+     * 生成连接内唯一的请求 ID。协议 v1 的消息头只有 4 个字节放请求 ID，所以 v1 连接上的 ID 取低 32 位
+     */
+    public long nextRequestId() {
+        long requestId = requestIdGenerator.getAndIncrement();
+        return ConnectionContext.get(channel).getVersion() == RpcConstants.VERSION ? requestId & 0xFFFFFFFFL : requestId;
+    }
 
     /**
      * 存储未处理的请求（发送请求时调用）
-     * @param requestId RPC 请求的唯一标识
+     * @param requestId RPC 消息头中的请求 ID
      * @param future 与该请求关联的异步结果对象（用于后续接收响应）
      */
-    public void put(String requestId, CompletableFuture<RpcResponse<Object>> future) {
-        UNPROCESSED_RESPONSE_FUTURES.put(requestId, future);
+    public void put(long requestId, CompletableFuture<RpcMessage> future) {
+        put(requestId, future, 0);
+    }
+
+    /**
+     * 存储未处理的请求，超时后以 {@link RpcErrorMessageEnum#REQUEST_TIMEOUT} 失败
+     * @param timeoutNanos 等待响应的纳秒数，0 表示一直等待
+     */
+    public void put(long requestId, CompletableFuture<RpcMessage> future, long timeoutNanos) {
+        Pending entry = new Pending(future);
+        LongObjectHashMap<Pending> stripe = stripe(requestId);
+        synchronized (stripe) {
+            Pending replaced = stripe.put(requestId, entry);
+            if (replaced == null) {
+                pending.incrementAndGet();
+            } else {
+                replaced.cancelTimeout();
+            }
+        }
+        if (timeoutNanos > 0) {
+            // 登记在放进表之后：响应先到时这个定时任务找不到请求，什么也不做
+            entry.timeout = TIMER.newTimeout(timeout -> expire(requestId, timeoutNanos), timeoutNanos, TimeUnit.NANOSECONDS);
+        }
     }
 
     /**
-     * 处理服务端响应（收到响应时调用）
-     * @param rpcResponse 服务端返回的 RPC 响应对象（包含请求ID和结果）
+     * 处理服务端响应（收到响应时调用）。
+     * 响应按消息头中的请求 ID 匹配，消息体此时还没有反序列化，由等待结果的线程去反序列化
+     * @param rpcMessage 服务端返回的响应消息（只解析了消息头）
      */
-    public void complete(RpcResponse<Object> rpcResponse) {
-        CompletableFuture<RpcResponse<Object>> future = UNPROCESSED_RESPONSE_FUTURES.remove(rpcResponse.getRequestId());
+    public void complete(RpcMessage rpcMessage) {
+        long requestId = ConnectionContext.get(channel).hasPeerHandshake() ? rpcMessage.getRequestId() : bodyRequestId(rpcMessage);
+        CompletableFuture<RpcMessage> future = remove(requestId);
         if (null != future) {
             // 将服务端响应结果传递给异步对象，唤醒等待线程
-            future.complete(rpcResponse);
+            future.complete(rpcMessage);
         } else {
-            throw new IllegalStateException();
+            // 请求已经超时或者连接上没有这个请求，丢弃响应
+            RpcMessageBodyCodec.discardBody(rpcMessage);
+            LATE_RESPONSES.increment();
+            log.warn("Drop the response to request [{}] from [{}], it timed out or is unknown", requestId, channel.remoteAddress());
+        }
+    }
+
+    /**
+     * 发送失败时移除未处理的请求
+     * @param requestId RPC 消息头中的请求 ID
+     * @return 被移除的异步结果对象，不存在时返回 null
+     */
+    public CompletableFuture<RpcMessage> remove(long requestId) {
+        LongObjectHashMap<Pending> stripe = stripe(requestId);
+        Pending entry;
+        synchronized (stripe) {
+            entry = stripe.remove(requestId);
+        }
+        if (entry == null) {
+            return null;
+        }
+        pending.decrementAndGet();
+        entry.cancelTimeout();
+        return entry.future;
+    }
+
+    /**
+     * @return number of requests waiting for a response on this connection
+     */
+    public int size() {
+        return pending.get();
+    }
+
+    /**
+     * 连接断开时让所有还在等待的请求失败，而不是一直等下去
+     */
+    public void failAll(Throwable cause) {
+        List<Pending> entries = new ArrayList<>();
+        for (LongObjectHashMap<Pending> stripe : stripes) {
+            synchronized (stripe) {
+                entries.addAll(stripe.values());
+                stripe.clear();
+            }
+        }
+        pending.addAndGet(-entries.size());
+        for (Pending entry : entries) {
+            entry.cancelTimeout();
+            entry.future.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * @return number of requests of all the connections that failed because their response did not arrive in time
+     */
+    public static long getTimedOutRequests() {
+        return TIMED_OUT_REQUESTS.sum();
+    }
+
+    /**
+     * @return number of responses of all the connections that were dropped because no request was waiting for them
+     */
+    public static long getLateResponses() {
+        return LATE_RESPONSES.sum();
+    }
+
+    /**
+     * 没有发过握手的服务端在消息头里写的是它自己的计数器，只能在 I/O 线程上反序列化消息体，取 {@link RpcResponse} 中回显的请求 ID
+     * @return the request id echoed in the body, -1 when there is none
+     */
+    private long bodyRequestId(RpcMessage rpcMessage) {
+        try {
+            Object data = RpcMessageBodyCodec.decodeBody(rpcMessage);
+            if (data instanceof RpcResponse && ((RpcResponse<?>) data).getRequestId() != null) {
+                return Long.parseLong(((RpcResponse<?>) data).getRequestId());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Cannot read the request id of the response from [{}]", channel.remoteAddress(), e);
+        }
+        return -1;
+    }
+
+    private void expire(long requestId, long timeoutNanos) {
+        CompletableFuture<RpcMessage> future = remove(requestId);
+        if (future != null) {
+            TIMED_OUT_REQUESTS.increment();
+            future.completeExceptionally(new RpcException(RpcErrorMessageEnum.REQUEST_TIMEOUT,
+                    channel.remoteAddress() + " requestId:" + requestId + " timeout:" + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + "ms"));
+        }
+    }
+
+    private LongObjectHashMap<Pending> stripe(long requestId) {
+        return stripes[(int) requestId & (STRIPES - 1)];
+    }
+
+    private static final class Pending {
+        private final CompletableFuture<RpcMessage> future;
+        private volatile Timeout timeout;
+
+        private Pending(CompletableFuture<RpcMessage> future) {
+            this.future = future;
+        }
+
+        private void cancelTimeout() {
+            Timeout scheduled = timeout;
+            if (scheduled != null) {
+                scheduled.cancel();
+            }
         }
     }
 }
@@ -0,0 +1,93 @@
+package github.javaguide.remoting.transport.netty.codec;
+
+import github.javaguide.utils.concurrent.threadpool.ThreadPoolFactoryUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Time spent encoding and decoding RpcMessage, split by where it was spent.
+ * <p>
+ * {@link RpcMessageEncoder} and {@link RpcMessageDecoder} always run on the channel's event loop, so their time is
+ * I/O thread time. Body decoding is deferred to the caller of {@link RpcMessageBodyCodec#decodeBody(RpcMessage)}
+ * (the business executor on the server, the calling thread on the client) and is recorded separately.
+ */
+@Slf4j
+public final class CodecMetrics {
+
+    private static final LongAdder IO_THREAD_ENCODE_NANOS = new LongAdder();
+    private static final LongAdder IO_THREAD_DECODE_NANOS = new LongAdder();
+    private static final LongAdder IO_THREAD_FRAMES = new LongAdder();
+    private static final LongAdder BODY_DECODE_NANOS = new LongAdder();
+    private static final LongAdder BODY_DECODES = new LongAdder();
+
+    private CodecMetrics() {
+    }
+
+    public static void recordIoThreadEncode(long nanos) {
+        IO_THREAD_ENCODE_NANOS.add(nanos);
+        IO_THREAD_FRAMES.increment();
+    }
+
+    public static void recordIoThreadDecode(long nanos) {
+        IO_THREAD_DECODE_NANOS.add(nanos);
+        IO_THREAD_FRAMES.increment();
+    }
+
+    public static void recordBodyDecode(long nanos) {
+        BODY_DECODE_NANOS.add(nanos);
+        BODY_DECODES.increment();
+    }
+
+    /**
+     * @return total nanoseconds the event loops spent inside the rpc codec
+     */
+    public static long ioThreadNanos() {
+        return IO_THREAD_ENCODE_NANOS.sum() + IO_THREAD_DECODE_NANOS.sum();
+    }
+
+    public static long ioThreadFrames() {
+        return IO_THREAD_FRAMES.sum();
+    }
+
+    /**
+     * @return total nanoseconds spent decompressing and deserializing bodies off the event loop
+     */
+    public static long bodyDecodeNanos() {
+        return BODY_DECODE_NANOS.sum();
+    }
+
+    public static long bodyDecodes() {
+        return BODY_DECODES.sum();
+    }
+
+    public static void reset() {
+        IO_THREAD_ENCODE_NANOS.reset();
+        IO_THREAD_DECODE_NANOS.reset();
+        IO_THREAD_FRAMES.reset();
+        BODY_DECODE_NANOS.reset();
+        BODY_DECODES.reset();
+    }
+
+    /**
+     * 定时打印编解码耗时
+     *
+     * @param period 打印间隔（秒）
+     */
+    public static void printCodecStatus(long period) {
+        ScheduledExecutorService scheduledExecutorService = new ScheduledThreadPoolExecutor(1,
+                ThreadPoolFactoryUtil.createThreadFactory("print-codec-status", true));
+        scheduledExecutorService.scheduleAtFixedRate(() -> {
+            log.info("============Codec Status=============");
+            log.info("I/O thread encode time: [{}] us", TimeUnit.NANOSECONDS.toMicros(IO_THREAD_ENCODE_NANOS.sum()));
+            log.info("I/O thread decode time: [{}] us", TimeUnit.NANOSECONDS.toMicros(IO_THREAD_DECODE_NANOS.sum()));
+            log.info("I/O thread frames: [{}]", IO_THREAD_FRAMES.sum());
+            log.info("Off-loaded body decode time: [{}] us", TimeUnit.NANOSECONDS.toMicros(BODY_DECODE_NANOS.sum()));
+            log.info("Off-loaded body decodes: [{}]", BODY_DECODES.sum());
+            log.info("=====================================");
+        }, period, period, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,147 @@
+package github.javaguide.remoting.transport.netty.codec;
+
+import github.javaguide.compress.zstd.ZstdDictionaries;
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.factory.SingletonFactory;
+import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.serialize.ClassNameDictionary;
+import github.javaguide.utils.RpcConfigUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Per-connection codec state, kept as a channel attribute.
+ * <p>
+ * Right after connecting, the client sends a heartbeat request whose body is a handshake announcing what it supports;
+ * the server stores it and answers with a heartbeat response carrying its own handshake. Peers that do not know
+ * the handshake ignore heartbeat bodies, so until (or unless) the peer's handshake arrives, nothing optional is used.
+ * <pre>
+ * handshake = entry*
+ * entry     = 1B tag | 2B value length | value
+ * tag 1     : ids of the zstd dictionaries the sender can decompress with, 4B each
+ * tag 2     : highest protocol version the sender supports, 1B
+ * tag 3     : the sender understands class-name dictionary bodies, 1B (1)
+ * </pre>
+ * Unknown tags are skipped. Both sides use the lower of the two highest versions once they have seen the peer's
+ * handshake; before that, and with peers that send no handshake, everything is sent as version 1.
+ * The server always answers a request with the version the request came in.
+ * <p>
+ * Servers older than the handshake do not echo the request id of the header either, they write a counter of their own
+ * there. Until the server's handshake arrived, the client therefore also puts the id in the request body and matches
+ * responses on the id echoed in the response body, see {@link #hasPeerHandshake()}.
+ * <p>
+ * The {@link ClassNameDictionary} of the connection lives here too, so it is dropped with the channel and a reconnect
+ * starts from an empty one on both sides.
+ */
+@Slf4j
+public final class ConnectionContext {
+
+    private static final AttributeKey<ConnectionContext> KEY = AttributeKey.valueOf("rpcConnectionContext");
+    private static final byte TAG_ZSTD_DICT_IDS = 1;
+    private static final byte TAG_MAX_VERSION = 2;
+    private static final byte TAG_CLASS_DICTIONARY = 3;
+    private static final byte MAX_VERSION = (byte) Math.max(RpcConstants.VERSION, Math.min(RpcConstants.VERSION_2,
+            RpcConfigUtil.getInt(RpcConfigEnum.PROTOCOL_MAX_VERSION, RpcConstants.VERSION_2)));
+    private static final boolean CLASS_DICTIONARY = RpcConfigUtil.getBoolean(RpcConfigEnum.SERIALIZE_CLASS_DICTIONARY, false);
+
+    private volatile Set<Integer> peerZstdDictIds = Collections.emptySet();
+    /**
+     * protocol version used for messages this side initiates on the connection
+     */
+    private volatile byte version = RpcConstants.VERSION;
+    private volatile boolean peerClassDictionary;
+    private volatile boolean peerHandshake;
+    private final ClassNameDictionary classNames = new ClassNameDictionary();
+
+    public static ConnectionContext get(Channel channel) {
+        ConnectionContext context = channel.attr(KEY).get();
+        if (context == null) {
+            ConnectionContext created = new ConnectionContext();
+            context = channel.attr(KEY).setIfAbsent(created);
+            if (context == null) {
+                context = created;
+            }
+        }
+        return context;
+    }
+
+    public byte getVersion() {
+        return version;
+    }
+
+    /**
+     * @return whether the peer sent its handshake, only then the request id of response headers can be trusted
+     */
+    public boolean hasPeerHandshake() {
+        return peerHandshake;
+    }
+
+    public boolean peerHasZstdDict(int dictId) {
+        return peerZstdDictIds.contains(dictId);
+    }
+
+    /**
+     * @return whether bodies of frames of the given version may use the class-name dictionary, see {@link RpcConfigEnum#SERIALIZE_CLASS_DICTIONARY}
+     */
+    public boolean useClassDictionary(byte frameVersion) {
+        return CLASS_DICTIONARY && peerClassDictionary && frameVersion == RpcConstants.VERSION_2;
+    }
+
+    public ClassNameDictionary getClassNames() {
+        return classNames;
+    }
+
+    /**
+     * @return the handshake announcing what this process supports
+     */
+    public static ByteBuf writeHandshake(ByteBufAllocator alloc) {
+        Set<Integer> dictIds = SingletonFactory.getInstance(ZstdDictionaries.class).ids();
+        ByteBuf out = alloc.ioBuffer();
+        out.writeByte(TAG_ZSTD_DICT_IDS);
+        out.writeShort(dictIds.size() * 4);
+        dictIds.forEach(out::writeInt);
+        out.writeByte(TAG_MAX_VERSION);
+        out.writeShort(1);
+        out.writeByte(MAX_VERSION);
+        if (CLASS_DICTIONARY) {
+            out.writeByte(TAG_CLASS_DICTIONARY);
+            out.writeShort(1);
+            out.writeByte(1);
+        }
+        return out;
+    }
+
+    /**
+     * record what the peer announced in its handshake, the buffer is consumed but not released
+     */
+    public void readHandshake(ByteBuf in) {
+        peerHandshake = true;
+        while (in.readableBytes() >= 3) {
+            byte tag = in.readByte();
+            int length = in.readUnsignedShort();
+            if (in.readableBytes() < length) {
+                log.warn("truncated handshake entry [{}]", tag);
+                return;
+            }
+            ByteBuf value = in.readSlice(length);
+            if (tag == TAG_ZSTD_DICT_IDS) {
+                Set<Integer> ids = new HashSet<>();
+                while (value.readableBytes() >= 4) {
+                    ids.add(value.readInt());
+                }
+                peerZstdDictIds = Collections.unmodifiableSet(ids);
+            } else if (tag == TAG_MAX_VERSION && length >= 1) {
+                version = (byte) Math.max(RpcConstants.VERSION, Math.min(MAX_VERSION, value.readByte()));
+            } else if (tag == TAG_CLASS_DICTIONARY && length >= 1) {
+                peerClassDictionary = value.readByte() == 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package github.javaguide.remoting.transport.netty.codec;
+
+import github.javaguide.exception.SerializeException;
+import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.serialize.Serializer;
+import io.netty.buffer.ByteBuf;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fixed binary layout of the {@link RpcRequest}/{@link RpcResponse} envelope, used by frames carrying
+ * {@link RpcConstants#FLAG_BINARY_ENVELOPE}. The routing fields are read straight from the buffer without
+ * reflection; only the parameters and the response data go through the {@link Serializer} of the message.
+ * <pre>
+ * string   = 2B length (0xFFFF: null) | UTF-8
+ * request  = requestId | interfaceName | methodName | group | version | 2B type count (0xFFFF: null) | type name* | parameters
+ * interned = 4B methodId | requestId | parameters     (with FLAG_METHOD_ID)
+ * response = requestId | 1B fields (1: code, 2: data) | [4B code] | message | [data]
+ * </pre>
+ * parameters and data come last and take the rest of the body, see {@link Serializer#serializeValue(Object, ByteBuf)}.
+ */
+final class RpcEnvelopeCodec {
+
+    private static final int NULL_LENGTH = 0xFFFF;
+    private static final byte FIELD_CODE = 0x01;
+    private static final byte FIELD_DATA = 0x02;
+    private static final Map<String, Class<?>> PRIMITIVE_TYPES = new HashMap<>();
+    /**
+     * parameter type name -> class, so that a type is only looked up once
+     */
+    private static final Map<String, Class<?>> TYPES = new ConcurrentHashMap<>();
+
+    static {
+        for (Class<?> type : new Class<?>[]{boolean.class, byte.class, char.class, short.class, int.class,
+                long.class, float.class, double.class, void.class}) {
+            PRIMITIVE_TYPES.put(type.getName(), type);
+        }
+    }
+
+    private RpcEnvelopeCodec() {
+    }
+
+    static void writeRequest(RpcRequest rpcRequest, boolean interned, Serializer serializer, ByteBuf out) {
+        if (interned) {
+            out.writeInt(rpcRequest.getMethodId());
+            writeString(rpcRequest.getRequestId(), out);
+        } else {
+            writeString(rpcRequest.getRequestId(), out);
+            writeString(rpcRequest.getInterfaceName(), out);
+            writeString(rpcRequest.getMethodName(), out);
+            writeString(rpcRequest.getGroup(), out);
+            writeString(rpcRequest.getVersion(), out);
+            Class<?>[] paramTypes = rpcRequest.getParamTypes();
+            if (paramTypes == null) {
+                out.writeShort(NULL_LENGTH);
+            } else {
+                out.writeShort(paramTypes.length);
+                for (Class<?> paramType : paramTypes) {
+                    writeString(paramType.getName(), out);
+                }
+            }
+        }
+        serializer.serializeValue(rpcRequest.getParameters(), out);
+    }
+
+    static RpcRequest readRequest(boolean interned, Serializer serializer, ByteBuf in) {
+        RpcRequest.RpcRequestBuilder builder = RpcRequest.builder();
+        if (interned) {
+            builder.methodId(in.readInt()).requestId(readString(in));
+        } else {
+            builder.requestId(readString(in))
+                    .interfaceName(readString(in))
+                    .methodName(readString(in))
+                    .group(readString(in))
+                    .version(readString(in));
+            int count = in.readUnsignedShort();
+            if (count != NULL_LENGTH) {
+                Class<?>[] paramTypes = new Class<?>[count];
+                for (int i = 0; i < count; i++) {
+                    paramTypes[i] = typeOf(readString(in));
+                }
+                builder.paramTypes(paramTypes);
+            }
+        }
+        return builder.parameters((Object[]) serializer.deserializeValue(in)).build();
+    }
+
+    static void writeResponse(RpcResponse<?> rpcResponse, Serializer serializer, ByteBuf out) {
+        writeString(rpcResponse.getRequestId(), out);
+        byte fields = 0;
+        if (rpcResponse.getCode() != null) {
+            fields |= FIELD_CODE;
+        }
+        if (rpcResponse.getData() != null) {
+            fields |= FIELD_DATA;
+        }
+        out.writeByte(fields);
+        if (rpcResponse.getCode() != null) {
+            out.writeInt(rpcResponse.getCode());
+        }
+        writeString(rpcResponse.getMessage(), out);
+        if (rpcResponse.getData() != null) {
+            serializer.serializeValue(rpcResponse.getData(), out);
+        }
+    }
+
+    static RpcResponse<Object> readResponse(Serializer serializer, ByteBuf in) {
+        RpcResponse<Object> rpcResponse = new RpcResponse<>();
+        rpcResponse.setRequestId(readString(in));
+        byte fields = in.readByte();
+        if ((fields & FIELD_CODE) != 0) {
+            rpcResponse.setCode(in.readInt());
+        }
+        rpcResponse.setMessage(readString(in));
+        if ((fields & FIELD_DATA) != 0) {
+            rpcResponse.setData(serializer.deserializeValue(in));
+        }
+        return rpcResponse;
+    }
+
+    private static void writeString(String value, ByteBuf out) {
+        int lengthIndex = out.writerIndex();
+        out.writeShort(NULL_LENGTH);
+        if (value == null) {
+            return;
+        }
+        int length = out.writeCharSequence(value, RpcConstants.DEFAULT_CHARSET);
+        if (length >= NULL_LENGTH) {
+            throw new SerializeException("envelope field is too long: " + length);
+        }
+        out.setShort(lengthIndex, length);
+    }
+
+    private static String readString(ByteBuf in) {
+        int length = in.readUnsignedShort();
+        return length == NULL_LENGTH ? null : in.readCharSequence(length, RpcConstants.DEFAULT_CHARSET).toString();
+    }
+
+    private static Class<?> typeOf(String name) {
+        Class<?> type = PRIMITIVE_TYPES.get(name);
+        if (type != null) {
+            return type;
+        }
+        type = TYPES.get(name);
+        if (type == null) {
+            try {
+                type = Class.forName(name, false, RpcEnvelopeCodec.class.getClassLoader());
+            } catch (ClassNotFoundException e) {
+                throw new SerializeException("unknown parameter type: " + name);
+            }
+            TYPES.putIfAbsent(name, type);
+        }
+        return type;
+    }
+}
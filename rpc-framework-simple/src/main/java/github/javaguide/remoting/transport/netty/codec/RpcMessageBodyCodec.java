@@ -0,0 +1,311 @@
+package github.javaguide.remoting.transport.netty.codec;
+
+import github.javaguide.compress.Compress;
+import github.javaguide.compress.CompressSelector;
+import github.javaguide.compress.zstd.ZstdDictCompress;
+import github.javaguide.compress.zstd.ZstdDictSampler;
+import github.javaguide.compress.zstd.ZstdDictionaries;
+import github.javaguide.compress.zstd.ZstdDictionary;
+import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.enums.SerializationTypeEnum;
+import github.javaguide.extension.ExtensionLoader;
+import github.javaguide.factory.SingletonFactory;
+import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.remoting.dto.RpcArguments;
+import github.javaguide.remoting.dto.RpcMessage;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.serialize.ClassNameDictionary;
+import github.javaguide.serialize.Serializer;
+import github.javaguide.utils.RpcConfigUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+
+/**
+ * Serialize/compress and decompress/deserialize the body of a {@link RpcMessage}.
+ * <p>
+ * The decoder only parses the header and hands over the raw body as {@link RpcMessage#getBody()}, so that the
+ * expensive part runs where {@link #decodeBody(RpcMessage)} is called instead of on the event loop.
+ */
+@Slf4j
+public final class RpcMessageBodyCodec {
+
+    private static final CompressSelector COMPRESS_SELECTOR = SingletonFactory.getInstance(CompressSelector.class);
+    private static final ZstdDictionaries ZSTD_DICTIONARIES = SingletonFactory.getInstance(ZstdDictionaries.class);
+    private static final ZstdDictSampler ZSTD_DICT_SAMPLER = SingletonFactory.getInstance(ZstdDictSampler.class);
+    private static final byte COMPRESS_TYPE = CompressTypeEnum.getByName(
+            RpcConfigUtil.getString(RpcConfigEnum.COMPRESS_TYPE, CompressTypeEnum.GZIP.getName())).getCode();
+    private static final boolean PRE_ENCODE = RpcConfigUtil.getBoolean(RpcConfigEnum.PRE_ENCODE, false);
+    private static final boolean METHOD_ID = RpcConfigUtil.getBoolean(RpcConfigEnum.PROTOCOL_METHOD_ID, true);
+    private static final boolean BINARY_ENVELOPE = RpcConfigUtil.getBoolean(RpcConfigEnum.PROTOCOL_BINARY_ENVELOPE, true);
+
+    private RpcMessageBodyCodec() {
+    }
+
+    /**
+     * serialize and compress {@code rpcMessage.getData()} and append it to {@code out}.
+     * The compress type actually used is decided by {@link CompressSelector} and written back to the message.
+     */
+    public static void encodeBody(RpcMessage rpcMessage, Channel channel, ByteBuf out) {
+        encodeBody(rpcMessage, channel, out, null);
+    }
+
+    private static void encodeBody(RpcMessage rpcMessage, Channel channel, ByteBuf out, ClassNameDictionary classNames) {
+        useBinaryEnvelope(rpcMessage, channel);
+        // serialize the object into a pooled buffer, then compress it straight into out
+        Serializer serializer = getSerializer(rpcMessage.getCodec());
+        ByteBuf bodyBuf = channel.alloc().ioBuffer();
+        try {
+            if (classNames != null) {
+                ClassNameDictionary.bind(classNames);
+            }
+            if (isBinaryEnvelope(rpcMessage)) {
+                if (rpcMessage.getMessageType() == RpcConstants.REQUEST_TYPE) {
+                    RpcEnvelopeCodec.writeRequest((RpcRequest) rpcMessage.getData(), isMethodIdRequest(rpcMessage), serializer, bodyBuf);
+                } else {
+                    RpcEnvelopeCodec.writeResponse((RpcResponse<?>) rpcMessage.getData(), serializer, bodyBuf);
+                }
+            } else if (isMethodIdRequest(rpcMessage)) {
+                // the negotiated method id replaces interface, method, parameter types, group and version
+                RpcRequest rpcRequest = (RpcRequest) rpcMessage.getData();
+                bodyBuf.writeInt(rpcRequest.getMethodId());
+                serializer.serialize(new RpcArguments(rpcRequest.getRequestId(), rpcRequest.getParameters()), bodyBuf);
+            } else {
+                serializer.serialize(rpcMessage.getData(), bodyBuf);
+            }
+            int rawSize = bodyBuf.readableBytes();
+            String methodKey = getMethodKey(rpcMessage);
+            if (ZSTD_DICT_SAMPLER.isEnabled()) {
+                ZSTD_DICT_SAMPLER.sample(methodKey, bodyBuf);
+            }
+            boolean legacyPeer = isLegacyPeer(rpcMessage, channel);
+            byte compressType = COMPRESS_SELECTOR.select(methodKey, rpcMessage.getCompress(), rawSize);
+            if (compressType == CompressTypeEnum.NONE.getCode() && legacyPeer) {
+                compressType = legacyCompressType(rpcMessage.getCompress());
+            }
+            ZstdDictionary dictionary = null;
+            if (compressType == CompressTypeEnum.ZSTD_DICT.getCode()) {
+                dictionary = ZSTD_DICTIONARIES.select(methodKey);
+                if (dictionary == null || !ConnectionContext.get(channel).peerHasZstdDict(dictionary.getId())) {
+                    // no dictionary for this service or the peer does not have it: plain zstd
+                    dictionary = null;
+                    compressType = CompressTypeEnum.ZSTD.getCode();
+                }
+            }
+            if (compressType != CompressTypeEnum.NONE.getCode()) {
+                int start = out.writerIndex();
+                long startNanos = System.nanoTime();
+                if (dictionary != null) {
+                    ((ZstdDictCompress) getCompress(compressType)).compress(bodyBuf, out, dictionary);
+                } else {
+                    getCompress(compressType).compress(bodyBuf, out);
+                }
+                int compressedSize = out.writerIndex() - start;
+                COMPRESS_SELECTOR.record(methodKey, compressType, rawSize, compressedSize, System.nanoTime() - startNanos);
+                if (compressedSize >= rawSize && !legacyPeer) {
+                    // compression made it bigger, send the raw body instead
+                    out.writerIndex(start);
+                    bodyBuf.readerIndex(0);
+                    compressType = CompressTypeEnum.NONE.getCode();
+                }
+            }
+            if (compressType == CompressTypeEnum.NONE.getCode()) {
+                out.writeBytes(bodyBuf);
+            }
+            rpcMessage.setCompress(compressType);
+        } finally {
+            ClassNameDictionary.unbind();
+            bodyBuf.release();
+        }
+    }
+
+    /**
+     * @return service#method -> compressor currently chosen for it, see {@link CompressSelector#getChosenCompressors()}
+     */
+    public static Map<String, String> getChosenCompressors() {
+        return COMPRESS_SELECTOR.getChosenCompressors();
+    }
+
+    /**
+     * Encode the body on the calling thread so that {@link RpcMessageEncoder} only has to write the header.
+     * The encoded body is stored as {@link RpcMessage#getBody()} and released by the encoder once written.
+     * Only pre-encoded bodies use the class-name dictionary: its definitions go into the header written afterwards.
+     */
+    public static void preEncode(RpcMessage rpcMessage, Channel channel) {
+        ConnectionContext context = ConnectionContext.get(channel);
+        byte version = rpcMessage.getVersion() != 0 ? rpcMessage.getVersion() : context.getVersion();
+        ClassNameDictionary classNames = null;
+        if (context.useClassDictionary(version)) {
+            // pin the version: the body can only be read back from a v2 frame carrying the flag
+            rpcMessage.setVersion(version);
+            rpcMessage.setFlags((byte) (rpcMessage.getFlags() | RpcConstants.FLAG_CLASS_DICTIONARY));
+            classNames = context.getClassNames();
+        }
+        ByteBuf body = channel.alloc().ioBuffer();
+        try {
+            encodeBody(rpcMessage, channel, body, classNames);
+        } catch (RuntimeException e) {
+            body.release();
+            throw e;
+        }
+        rpcMessage.setBody(body);
+    }
+
+    /**
+     * @return the compress type configured for requests and responses, see {@link RpcConfigEnum#COMPRESS_TYPE}
+     */
+    public static byte getCompressType() {
+        return COMPRESS_TYPE;
+    }
+
+    /**
+     * @return whether bodies should be encoded by the sending thread, see {@link RpcConfigEnum#PRE_ENCODE}
+     */
+    public static boolean isPreEncode() {
+        return PRE_ENCODE;
+    }
+
+    /**
+     * @return whether methods are interned to per-connection ids, see {@link RpcConfigEnum#PROTOCOL_METHOD_ID}
+     */
+    public static boolean isMethodIdEnabled() {
+        return METHOD_ID;
+    }
+
+    /**
+     * Decompress and deserialize the raw body carried by {@code rpcMessage}, store it as its data and release the body.
+     * Calling it again, or on a message without body, just returns the data.
+     *
+     * @return the request or response carried by the message
+     */
+    public static Object decodeBody(RpcMessage rpcMessage) {
+        ByteBuf body = rpcMessage.getBody();
+        if (body == null) {
+            return rpcMessage.getData();
+        }
+        rpcMessage.setBody(null);
+        long start = System.nanoTime();
+        ByteBuf decompressed;
+        if (rpcMessage.getCompress() == CompressTypeEnum.NONE.getCode()) {
+            // uncompressed body is deserialized in place
+            decompressed = body.retain();
+        } else {
+            decompressed = body.alloc().ioBuffer(body.readableBytes());
+        }
+        try {
+            if (decompressed != body) {
+                getCompress(rpcMessage.getCompress()).decompress(body, decompressed);
+            }
+            Serializer serializer = getSerializer(rpcMessage.getCodec());
+            if (rpcMessage.getClassNames() != null) {
+                ClassNameDictionary.bind(rpcMessage.getClassNames());
+            }
+            if (isBinaryEnvelope(rpcMessage)) {
+                if (rpcMessage.getMessageType() == RpcConstants.REQUEST_TYPE) {
+                    rpcMessage.setData(RpcEnvelopeCodec.readRequest(isMethodIdRequest(rpcMessage), serializer, decompressed));
+                } else {
+                    rpcMessage.setData(RpcEnvelopeCodec.readResponse(serializer, decompressed));
+                }
+            } else if (isMethodIdRequest(rpcMessage)) {
+                int methodId = decompressed.readInt();
+                RpcArguments arguments = serializer.deserialize(decompressed, RpcArguments.class);
+                rpcMessage.setData(RpcRequest.builder().methodId(methodId)
+                        .requestId(arguments.getRequestId())
+                        .parameters(arguments.getParameters()).build());
+            } else if (rpcMessage.getMessageType() == RpcConstants.REQUEST_TYPE) {
+                rpcMessage.setData(serializer.deserialize(decompressed, RpcRequest.class));
+            } else {
+                rpcMessage.setData(serializer.deserialize(decompressed, RpcResponse.class));
+            }
+        } finally {
+            ClassNameDictionary.unbind();
+            body.release();
+            decompressed.release();
+            CodecMetrics.recordBodyDecode(System.nanoTime() - start);
+        }
+        return rpcMessage.getData();
+    }
+
+    /**
+     * release the raw or pre-encoded body of a message that will never be decoded or written
+     */
+    public static void discardBody(RpcMessage rpcMessage) {
+        ByteBuf body = rpcMessage.getBody();
+        if (body != null) {
+            rpcMessage.setBody(null);
+            body.release();
+        }
+    }
+
+    /**
+     * Decided per frame, see {@link RpcConfigEnum#PROTOCOL_BINARY_ENVELOPE}. The envelope layout is told by a v2 flag, so whatever the receiver is configured with it reads the body back.
+     * The version is pinned because a v1 frame has no flags.
+     */
+    private static void useBinaryEnvelope(RpcMessage rpcMessage, Channel channel) {
+        if (!BINARY_ENVELOPE || !(rpcMessage.getData() instanceof RpcRequest || rpcMessage.getData() instanceof RpcResponse)) {
+            return;
+        }
+        byte version = rpcMessage.getVersion() != 0 ? rpcMessage.getVersion() : ConnectionContext.get(channel).getVersion();
+        if (version == RpcConstants.VERSION_2) {
+            rpcMessage.setVersion(version);
+            rpcMessage.setFlags((byte) (rpcMessage.getFlags() | RpcConstants.FLAG_BINARY_ENVELOPE));
+        }
+    }
+
+    /**
+     * Peers from before the handshake do not know {@link CompressTypeEnum#NONE}: they look the compress code up and fail
+     * on every uncompressed body. Until the peer's handshake arrived, v1 bodies are therefore always compressed.
+     */
+    private static boolean isLegacyPeer(RpcMessage rpcMessage, Channel channel) {
+        ConnectionContext context = ConnectionContext.get(channel);
+        byte version = rpcMessage.getVersion() != 0 ? rpcMessage.getVersion() : context.getVersion();
+        return version == RpcConstants.VERSION && !context.hasPeerHandshake();
+    }
+
+    /**
+     * @return the configured compress type, or gzip, which every version understands, when none was configured
+     */
+    private static byte legacyCompressType(byte requested) {
+        return requested != CompressTypeEnum.NONE.getCode() ? requested : CompressTypeEnum.GZIP.getCode();
+    }
+
+    private static boolean isBinaryEnvelope(RpcMessage rpcMessage) {
+        return (rpcMessage.getFlags() & RpcConstants.FLAG_BINARY_ENVELOPE) != 0;
+    }
+
+    private static boolean isMethodIdRequest(RpcMessage rpcMessage) {
+        return rpcMessage.getMessageType() == RpcConstants.REQUEST_TYPE && (rpcMessage.getFlags() & RpcConstants.FLAG_METHOD_ID) != 0;
+    }
+
+    private static String getMethodKey(RpcMessage rpcMessage) {
+        if (rpcMessage.getMethodKey() != null) {
+            return rpcMessage.getMethodKey();
+        }
+        if (rpcMessage.getData() instanceof RpcRequest) {
+            return methodKey((RpcRequest) rpcMessage.getData());
+        }
+        return null;
+    }
+
+    /**
+     * @return key identifying the service method a request targets
+     */
+    public static String methodKey(RpcRequest rpcRequest) {
+        return rpcRequest.getRpcServiceName() + "#" + rpcRequest.getMethodName();
+    }
+
+    private static Serializer getSerializer(byte codec) {
+        String codecName = SerializationTypeEnum.getName(codec);
+        log.debug("codec name: [{}] ", codecName);
+        return ExtensionLoader.getExtensionLoader(Serializer.class).getExtension(codecName);
+    }
+
+    private static Compress getCompress(byte compressType) {
+        String compressName = CompressTypeEnum.getName(compressType);
+        return ExtensionLoader.getExtensionLoader(Compress.class).getExtension(compressName);
+    }
+}
@@ -1,20 +1,18 @@
 package github.javaguide.remoting.transport.netty.codec;
 
-import github.javaguide.compress.Compress;
-import github.javaguide.enums.CompressTypeEnum;
-import github.javaguide.enums.SerializationTypeEnum;
-import github.javaguide.extension.ExtensionLoader;
 import github.javaguide.remoting.constants.RpcConstants;
 import github.javaguide.remoting.dto.RpcMessage;
-import github.javaguide.remoting.dto.RpcRequest;
-import github.javaguide.remoting.dto.RpcResponse;
-import github.javaguide.serialize.Serializer;
+import github.javaguide.remoting.handler.Deadline;
+import github.javaguide.serialize.ClassNameDictionary;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * custom protocol decoder
@@ -31,6 +29,15 @@ import java.util.Arrays;
  * 4B  magic code（魔法数）   1B version（版本）   4B full length（消息长度）    1B messageType（消息类型）
  * 1B compress（压缩类型） 1B codec（序列化类型）    4B  requestId（请求的Id）
  * body（object类型数据）
+ *
+ * version 2（连接建立时协商）:
+ *   0     1     2     3     4        5  6  7  8      9            10      11        12      13 ... 20    21 22
+ *   +-----+-----+-----+-----+--------+---------+------------+-------+--------+-------+-----------+---------------+
+ *   |   magic   code        |version |full length| messageType| codec|compress| flags | RequestId |attach length|
+ *   +-----------------------+--------+---------+------------+-------+--------+-------+-----------+---------------+
+ *   |  attachments: (1B key length | key | 2B value length | value)*   |   body                                  |
+ *   +------------------------------------------------------------------------------------------------------------+
+ * 1B flags（标志位：oneway、heartbeat、stream、compressed、method id、class dictionary、binary envelope）  8B requestId   2B attachments length
  * </pre>
  * <p>
  * {@link LengthFieldBasedFrameDecoder} is a length-based decoder , used to solve TCP unpacking and sticking problems.
@@ -67,12 +74,21 @@ public class RpcMessageDecoder extends LengthFieldBasedFrameDecoder {
 
     @Override
     protected Object decode(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
+        long start = System.nanoTime();
+        Object decoded = doDecode(ctx, in);
+        if (decoded != null) {
+            CodecMetrics.recordIoThreadDecode(System.nanoTime() - start);
+        }
+        return decoded;
+    }
+
+    private Object doDecode(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
         Object decoded = super.decode(ctx, in);
         if (decoded instanceof ByteBuf) {
             ByteBuf frame = (ByteBuf) decoded;
             if (frame.readableBytes() >= RpcConstants.TOTAL_LENGTH) {
                 try {
-                    return decodeFrame(frame);
+                    return decodeFrame(ctx, frame);
                 } catch (Exception e) {
                     log.error("Decode frame error!", e);
                     throw e;
@@ -86,60 +102,103 @@ public class RpcMessageDecoder extends LengthFieldBasedFrameDecoder {
     }
 
 
-    private Object decodeFrame(ByteBuf in) {
+    /**
+     * Only the header is parsed here, on the event loop. The body is handed over as a retained slice and decoded later
+     * by {@link RpcMessageBodyCodec#decodeBody(RpcMessage)} on the thread that consumes the message.
+     */
+    private Object decodeFrame(ChannelHandlerContext ctx, ByteBuf in) {
+        int frameStart = in.readerIndex();
         // note: must read ByteBuf in order
         checkMagicNumber(in);
-        checkVersion(in);
+        byte version = checkVersion(in);
         int fullLength = in.readInt();
         // build RpcMessage object
         byte messageType = in.readByte();
         byte codecType = in.readByte();
         byte compressType = in.readByte();
-        int requestId = in.readInt();
         RpcMessage rpcMessage = RpcMessage.builder()
+                .version(version)
                 .codec(codecType)
-                .requestId(requestId)
+                .compress(compressType)
                 .messageType(messageType).build();
+        if (version == RpcConstants.VERSION_2) {
+            rpcMessage.setFlags(in.readByte());
+            rpcMessage.setRequestId(in.readLong());
+            rpcMessage.setAttachments(readAttachments(in, in.readUnsignedShort()));
+            readClassNames(ctx, rpcMessage);
+            readDeadline(rpcMessage);
+        } else {
+            rpcMessage.setRequestId(in.readUnsignedInt());
+        }
         if (messageType == RpcConstants.HEARTBEAT_REQUEST_TYPE) {
             rpcMessage.setData(RpcConstants.PING);
-            return rpcMessage;
-        }
-        if (messageType == RpcConstants.HEARTBEAT_RESPONSE_TYPE) {
+        } else if (messageType == RpcConstants.HEARTBEAT_RESPONSE_TYPE) {
             rpcMessage.setData(RpcConstants.PONG);
-            return rpcMessage;
         }
-        int bodyLength = fullLength - RpcConstants.HEAD_LENGTH;
+        // the body of a heartbeat, if any, is a connection handshake, see ConnectionContext
+        int bodyLength = fullLength - (in.readerIndex() - frameStart);
         if (bodyLength > 0) {
-            byte[] bs = new byte[bodyLength];
-            in.readBytes(bs);
-            // decompress the bytes
-            String compressName = CompressTypeEnum.getName(compressType);
-            Compress compress = ExtensionLoader.getExtensionLoader(Compress.class)
-                    .getExtension(compressName);
-            bs = compress.decompress(bs);
-            // deserialize the object
-            String codecName = SerializationTypeEnum.getName(rpcMessage.getCodec());
-            log.info("codec name: [{}] ", codecName);
-            Serializer serializer = ExtensionLoader.getExtensionLoader(Serializer.class)
-                    .getExtension(codecName);
-            if (messageType == RpcConstants.REQUEST_TYPE) {
-                RpcRequest tmpValue = serializer.deserialize(bs, RpcRequest.class);
-                rpcMessage.setData(tmpValue);
-            } else {
-                RpcResponse tmpValue = serializer.deserialize(bs, RpcResponse.class);
-                rpcMessage.setData(tmpValue);
-            }
+            // keep the body as a retained slice of the frame, it is released once the body has been decoded
+            rpcMessage.setBody(in.retainedSlice(in.readerIndex(), bodyLength));
+            in.skipBytes(bodyLength);
         }
         return rpcMessage;
 
     }
 
-    private void checkVersion(ByteBuf in) {
+    /**
+     * The budget of a request starts when its frame is read, so the time it then waits for a service handler thread counts.
+     */
+    private static void readDeadline(RpcMessage rpcMessage) {
+        Map<String, String> attachments = rpcMessage.getAttachments();
+        String timeout = attachments == null ? null : attachments.get(RpcConstants.ATTACHMENT_TIMEOUT);
+        if (timeout != null && rpcMessage.getMessageType() == RpcConstants.REQUEST_TYPE) {
+            rpcMessage.setDeadlineNanos(Deadline.after(TimeUnit.MILLISECONDS.toNanos(Long.parseLong(timeout))));
+        }
+    }
+
+    /**
+     * Class names are defined here, in wire order, before any body using them can be decoded on another thread.
+     */
+    private static void readClassNames(ChannelHandlerContext ctx, RpcMessage rpcMessage) {
+        Map<String, String> attachments = rpcMessage.getAttachments();
+        String definitions = attachments == null ? null : attachments.get(RpcConstants.ATTACHMENT_CLASS_NAMES);
+        if (definitions == null && (rpcMessage.getFlags() & RpcConstants.FLAG_CLASS_DICTIONARY) == 0) {
+            return;
+        }
+        ClassNameDictionary classNames = ConnectionContext.get(ctx.channel()).getClassNames();
+        if (definitions != null) {
+            classNames.define(definitions);
+        }
+        if ((rpcMessage.getFlags() & RpcConstants.FLAG_CLASS_DICTIONARY) != 0) {
+            rpcMessage.setClassNames(classNames);
+        }
+    }
+
+    private static Map<String, String> readAttachments(ByteBuf in, int length) {
+        if (length == 0) {
+            return null;
+        }
+        Map<String, String> attachments = new HashMap<>();
+        int end = in.readerIndex() + length;
+        while (in.readerIndex() < end) {
+            String key = in.readCharSequence(in.readUnsignedByte(), RpcConstants.DEFAULT_CHARSET).toString();
+            String value = in.readCharSequence(in.readUnsignedShort(), RpcConstants.DEFAULT_CHARSET).toString();
+            attachments.put(key, value);
+        }
+        if (in.readerIndex() != end) {
+            throw new IllegalArgumentException("malformed attachments");
+        }
+        return attachments;
+    }
+
+    private byte checkVersion(ByteBuf in) {
         // read the version and compare
         byte version = in.readByte();
-        if (version != RpcConstants.VERSION) {
+        if (version != RpcConstants.VERSION && version != RpcConstants.VERSION_2) {
             throw new RuntimeException("version isn't compatible" + version);
         }
+        return version;
     }
 
     private void checkMagicNumber(ByteBuf in) {
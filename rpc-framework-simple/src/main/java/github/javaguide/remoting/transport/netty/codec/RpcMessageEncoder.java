@@ -1,19 +1,17 @@
 package github.javaguide.remoting.transport.netty.codec;
 
 
-import github.javaguide.compress.Compress;
 import github.javaguide.enums.CompressTypeEnum;
-import github.javaguide.enums.SerializationTypeEnum;
-import github.javaguide.extension.ExtensionLoader;
 import github.javaguide.remoting.constants.RpcConstants;
 import github.javaguide.remoting.dto.RpcMessage;
-import github.javaguide.serialize.Serializer;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.handler.codec.MessageToMessageEncoder;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -33,6 +31,15 @@ import java.util.concurrent.atomic.AtomicInteger;
  * 4B  magic code（魔法数）   1B version（版本）   4B full length（消息长度）    1B messageType（消息类型）
  * 1B compress（压缩类型） 1B codec（序列化类型）    4B  requestId（请求的Id）
  * body（object类型数据）
+ *
+ * version 2（连接建立时协商）:
+ *   0     1     2     3     4        5  6  7  8      9            10      11        12      13 ... 20    21 22
+ *   +-----+-----+-----+-----+--------+---------+------------+-------+--------+-------+-----------+---------------+
+ *   |   magic   code        |version |full length| messageType| codec|compress| flags | RequestId |attach length|
+ *   +-----------------------+--------+---------+------------+-------+--------+-------+-----------+---------------+
+ *   |  attachments: (1B key length | key | 2B value length | value)*   |   body                                  |
+ *   +------------------------------------------------------------------------------------------------------------+
+ * 1B flags（标志位：oneway、heartbeat、stream、compressed、method id、class dictionary、binary envelope）  8B requestId   2B attachments length
  * </pre>
  *
  * @author WangTao
@@ -41,54 +48,129 @@ import java.util.concurrent.atomic.AtomicInteger;
  */
 
 @Slf4j
-public class RpcMessageEncoder extends MessageToByteEncoder<RpcMessage> {
-    private static final AtomicInteger ATOMIC_INTEGER = new AtomicInteger(0);
+public class RpcMessageEncoder extends MessageToMessageEncoder<RpcMessage> {
 
+    /**
+     * A message whose body was already encoded by {@link RpcMessageBodyCodec#preEncode}
+     * only gets its header written here; the body buffer is passed through without copying.
+     */
     @Override
-    protected void encode(ChannelHandlerContext ctx, RpcMessage rpcMessage, ByteBuf out) {
+    protected void encode(ChannelHandlerContext ctx, RpcMessage rpcMessage, List<Object> out) {
+        long start = System.nanoTime();
+        byte version = rpcMessage.getVersion() != 0 ? rpcMessage.getVersion() : ConnectionContext.get(ctx.channel()).getVersion();
+        byte messageType = rpcMessage.getMessageType();
+        boolean heartbeat = messageType == RpcConstants.HEARTBEAT_REQUEST_TYPE
+                || messageType == RpcConstants.HEARTBEAT_RESPONSE_TYPE;
+        if (rpcMessage.getBody() == null && !heartbeat && ConnectionContext.get(ctx.channel()).useClassDictionary(version)) {
+            // the class names the body defines go into the attachments, so the body has to be encoded first
+            RpcMessageBodyCodec.preEncode(rpcMessage, ctx.channel());
+        }
+        ByteBuf preEncodedBody = rpcMessage.getBody();
+        rpcMessage.setBody(null);
+        ByteBuf buf = preEncodedBody != null && version == RpcConstants.VERSION
+                ? ctx.alloc().ioBuffer(RpcConstants.HEAD_LENGTH) : ctx.alloc().ioBuffer();
         try {
-            out.writeBytes(RpcConstants.MAGIC_NUMBER);
-            out.writeByte(RpcConstants.VERSION);
+            buf.writeBytes(RpcConstants.MAGIC_NUMBER);
+            buf.writeByte(version);
             // leave a place to write the value of full length
-            out.writerIndex(out.writerIndex() + 4);
-            byte messageType = rpcMessage.getMessageType();
-            out.writeByte(messageType);
-            out.writeByte(rpcMessage.getCodec());
-            out.writeByte(CompressTypeEnum.GZIP.getCode());
-            out.writeInt(ATOMIC_INTEGER.getAndIncrement());
-            // build full length
-            byte[] bodyBytes = null;
-            int fullLength = RpcConstants.HEAD_LENGTH;
-            // if messageType is not heartbeat message,fullLength = head length + body length
-            if (messageType != RpcConstants.HEARTBEAT_REQUEST_TYPE
-                    && messageType != RpcConstants.HEARTBEAT_RESPONSE_TYPE) {
-                // serialize the object
-                String codecName = SerializationTypeEnum.getName(rpcMessage.getCodec());
-                log.info("codec name: [{}] ", codecName);
-                Serializer serializer = ExtensionLoader.getExtensionLoader(Serializer.class)
-                        .getExtension(codecName);
-                bodyBytes = serializer.serialize(rpcMessage.getData());
-                // compress the bytes
-                String compressName = CompressTypeEnum.getName(rpcMessage.getCompress());
-                Compress compress = ExtensionLoader.getExtensionLoader(Compress.class)
-                        .getExtension(compressName);
-                bodyBytes = compress.compress(bodyBytes);
-                fullLength += bodyBytes.length;
+            buf.writerIndex(buf.writerIndex() + 4);
+            buf.writeByte(messageType);
+            buf.writeByte(rpcMessage.getCodec());
+            // placeholder, the compress type is only known once the body has been encoded
+            int compressIndex = buf.writerIndex();
+            buf.writeByte(rpcMessage.getCompress());
+            int flagsIndex = -1;
+            if (version == RpcConstants.VERSION_2) {
+                flagsIndex = buf.writerIndex();
+                buf.writeByte(rpcMessage.getFlags());
+                buf.writeLong(rpcMessage.getRequestId());
+                writeAttachments(withClassNames(rpcMessage, ctx), buf);
+            } else {
+                buf.writeInt((int) rpcMessage.getRequestId());
             }
-
-            if (bodyBytes != null) {
-                out.writeBytes(bodyBytes);
+            if (preEncodedBody == null && !heartbeat) {
+                // if messageType is not heartbeat message,fullLength = head length + body length
+                RpcMessageBodyCodec.encodeBody(rpcMessage, ctx.channel(), buf);
+            }
+            buf.setByte(compressIndex, rpcMessage.getCompress());
+            if (flagsIndex >= 0) {
+                byte flags = rpcMessage.getFlags();
+                if (heartbeat) {
+                    flags |= RpcConstants.FLAG_HEARTBEAT;
+                }
+                if (!heartbeat && rpcMessage.getCompress() != CompressTypeEnum.NONE.getCode()) {
+                    flags |= RpcConstants.FLAG_COMPRESSED;
+                }
+                buf.setByte(flagsIndex, flags);
+            }
+            int fullLength = buf.readableBytes() + (preEncodedBody != null ? preEncodedBody.readableBytes() : 0);
+            // build full length
+            buf.setInt(RpcConstants.MAGIC_NUMBER.length + 1, fullLength);
+            if (preEncodedBody != null) {
+                out.add(ctx.alloc().compositeBuffer(2).addComponents(true, buf, preEncodedBody));
+            } else {
+                out.add(buf);
             }
-            int writeIndex = out.writerIndex();
-            out.writerIndex(writeIndex - fullLength + RpcConstants.MAGIC_NUMBER.length + 1);
-            out.writeInt(fullLength);
-            out.writerIndex(writeIndex);
         } catch (Exception e) {
             log.error("Encode request error!", e);
+            buf.release();
+            if (preEncodedBody != null) {
+                preEncodedBody.release();
+            }
+            throw e;
+        } finally {
+            CodecMetrics.recordIoThreadEncode(System.nanoTime() - start);
         }
+    }
 
+    /**
+     * Runs in wire order: class names defined while encoding this or any earlier body are sent with this frame
+     * at the latest, so the peer knows them before it decodes a body using them.
+     */
+    private static Map<String, String> withClassNames(RpcMessage rpcMessage, ChannelHandlerContext ctx) {
+        Map<String, String> attachments = rpcMessage.getAttachments();
+        if ((rpcMessage.getFlags() & RpcConstants.FLAG_CLASS_DICTIONARY) == 0) {
+            return attachments;
+        }
+        String definitions = ConnectionContext.get(ctx.channel()).getClassNames().takeDefinitions();
+        if (definitions == null) {
+            return attachments;
+        }
+        Map<String, String> merged = attachments == null ? new HashMap<>() : new HashMap<>(attachments);
+        merged.put(RpcConstants.ATTACHMENT_CLASS_NAMES, definitions);
+        return merged;
     }
 
+    /**
+     * 2B total length, then for each entry 1B key length, key, 2B value length, value (UTF-8)
+     */
+    private static void writeAttachments(Map<String, String> attachments, ByteBuf buf) {
+        int lengthIndex = buf.writerIndex();
+        buf.writeShort(0);
+        if (attachments == null || attachments.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<String, String> entry : attachments.entrySet()) {
+            int keyIndex = buf.writerIndex();
+            buf.writeByte(0);
+            int keyLength = buf.writeCharSequence(entry.getKey(), RpcConstants.DEFAULT_CHARSET);
+            if (keyLength > 0xFF) {
+                throw new IllegalArgumentException("attachment key is too long: " + entry.getKey());
+            }
+            buf.setByte(keyIndex, keyLength);
+            int valueIndex = buf.writerIndex();
+            buf.writeShort(0);
+            int valueLength = buf.writeCharSequence(entry.getValue(), RpcConstants.DEFAULT_CHARSET);
+            if (valueLength > 0xFFFF) {
+                throw new IllegalArgumentException("attachment value is too long: " + entry.getKey());
+            }
+            buf.setShort(valueIndex, valueLength);
+        }
+        int length = buf.writerIndex() - lengthIndex - 2;
+        if (length > 0xFFFF) {
+            throw new IllegalArgumentException("attachments are too long: " + length);
+        }
+        buf.setShort(lengthIndex, length);
+    }
 
 }
-
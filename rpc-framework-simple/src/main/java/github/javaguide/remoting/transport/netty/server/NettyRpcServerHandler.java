@@ -1,14 +1,20 @@
 package github.javaguide.remoting.transport.netty.server;
 
-import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.RpcErrorMessageEnum;
 import github.javaguide.enums.RpcResponseCodeEnum;
 import github.javaguide.enums.SerializationTypeEnum;
+import github.javaguide.exception.RpcException;
 import github.javaguide.factory.SingletonFactory;
 import github.javaguide.remoting.constants.RpcConstants;
 import github.javaguide.remoting.dto.RpcMessage;
 import github.javaguide.remoting.dto.RpcRequest;
 import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.remoting.handler.Deadline;
+import github.javaguide.remoting.handler.MethodInvoker;
 import github.javaguide.remoting.handler.RpcRequestHandler;
+import github.javaguide.remoting.transport.netty.codec.ConnectionContext;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageBodyCodec;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
@@ -16,13 +22,24 @@ import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.timeout.IdleState;
 import io.netty.handler.timeout.IdleStateEvent;
 import io.netty.util.ReferenceCountUtil;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.Collections;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * Customize the ChannelHandler of the server to process the data sent by the client.
  * <p>
  * 如果继承自 SimpleChannelInboundHandler 的话就不要考虑 ByteBuf 的释放 ，{@link SimpleChannelInboundHandler} 内部的
  * channelRead 方法会替你释放 ByteBuf ，避免可能导致的内存泄露问题。详见《Netty进阶之路 跟着案例学 Netty》
+ * <p>
+ * 服务方法返回 {@link CompletionStage} 时不在业务线程上等待它，而是在它完成时由完成它的线程写响应。
+ * <p>
+ * 请求带了调用方的等待时间时（见 {@link Deadline}），在业务线程池里排队到过期的请求直接丢弃，不再反序列化和调用；
+ * 调用完成时已经过期的响应也不再编码和发送，调用方已经不等了。
  *
  * @author shuang.kou
  * @createTime 2020年05月25日 20:44:00
@@ -30,7 +47,13 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class NettyRpcServerHandler extends ChannelInboundHandlerAdapter {
 
+    private static final LongAdder EXPIRED_REQUESTS = new LongAdder();
+
     private final RpcRequestHandler rpcRequestHandler;
+    /**
+     * 本连接上协商好的方法 ID，一个连接的请求总是由同一个线程处理
+     */
+    private final IntObjectMap<MethodInvoker> boundMethods = new IntObjectHashMap<>();
 
     public NettyRpcServerHandler() {
         this.rpcRequestHandler = SingletonFactory.getInstance(RpcRequestHandler.class);
@@ -43,51 +66,163 @@ public class NettyRpcServerHandler extends ChannelInboundHandlerAdapter {
             if (msg instanceof RpcMessage) {
                 log.info("server receive msg: [{}] ", msg);
                 byte messageType = ((RpcMessage) msg).getMessageType();
+                // 单向调用：客户端不等待响应
+                boolean oneway = (((RpcMessage) msg).getFlags() & RpcConstants.FLAG_ONEWAY) != 0
+                        && messageType != RpcConstants.HEARTBEAT_REQUEST_TYPE;
+                // 调用方不再等待响应的时间，0 表示没有
+                long deadlineNanos = ((RpcMessage) msg).getDeadlineNanos();
 
-                // 创建响应消息基础结构
+                // 创建响应消息基础结构，使用与请求相同的协议版本
                 RpcMessage rpcMessage = new RpcMessage();
+                rpcMessage.setVersion(((RpcMessage) msg).getVersion());
                 // 设置序列化和压缩方式（与客户端保持一致）
-                rpcMessage.setCodec(SerializationTypeEnum.HESSIAN.getCode());
-                rpcMessage.setCompress(CompressTypeEnum.GZIP.getCode());
+                rpcMessage.setCodec(((RpcMessage) msg).getCodec() != 0 ? ((RpcMessage) msg).getCodec() : SerializationTypeEnum.HESSIAN.getCode());
+                rpcMessage.setCompress(RpcMessageBodyCodec.getCompressType());
 
                 // 心跳请求处理
                 if (messageType == RpcConstants.HEARTBEAT_REQUEST_TYPE) {
                     rpcMessage.setMessageType(RpcConstants.HEARTBEAT_RESPONSE_TYPE);
                     rpcMessage.setData(RpcConstants.PONG); // 返回心跳响应
+                    ByteBuf handshake = ((RpcMessage) msg).getBody();
+                    if (handshake != null) {
+                        // 带消息体的心跳是客户端的握手，记录客户端的能力并回应服务端自己的握手
+                        ConnectionContext.get(ctx.channel()).readHandshake(handshake);
+                        rpcMessage.setBody(ConnectionContext.writeHandshake(ctx.alloc()));
+                    }
                 }
                 // 业务请求处理
                 else {
-                    // 提取RPC请求数据
-                    RpcRequest rpcRequest = (RpcRequest) ((RpcMessage) msg).getData();
-
-                    // 调用业务处理器执行目标方法
-                    Object result = rpcRequestHandler.handle(rpcRequest);
-                    log.info(String.format("server get result: %s", result.toString()));
-
-                    // 设置响应类型
+                    if (Deadline.isExpired(deadlineNanos)) {
+                        dropExpired(ctx, ((RpcMessage) msg).getRequestId(), "before invoking it");
+                        return;
+                    }
+                    // 设置响应类型，并原样带回消息头中的请求 ID 供客户端匹配
                     rpcMessage.setMessageType(RpcConstants.RESPONSE_TYPE);
+                    rpcMessage.setRequestId(((RpcMessage) msg).getRequestId());
+                    RpcRequest rpcRequest;
+                    MethodInvoker invoker;
+                    Object result;
+                    try {
+                        // 提取RPC请求数据：解码器只解析了消息头，消息体在业务线程池中解压和反序列化
+                        rpcRequest = (RpcRequest) RpcMessageBodyCodec.decodeBody((RpcMessage) msg);
+                        invoker = resolve((RpcMessage) msg, rpcRequest, rpcMessage);
+                        if (invoker.getCompress() != null) {
+                            // 方法或服务声明的压缩方式
+                            rpcMessage.setCompress(invoker.getCompress());
+                        }
 
-                    // 检查通道是否可用
-                    if (ctx.channel().isActive() && ctx.channel().isWritable()) {
-                        // 构建成功响应（包含请求ID用于客户端匹配）
-                        RpcResponse<Object> rpcResponse = RpcResponse.success(result, rpcRequest.getRequestId());
-                        rpcMessage.setData(rpcResponse);
-                    } else {
-                        // 通道不可用时返回失败响应
-                        RpcResponse<Object> rpcResponse = RpcResponse.fail(RpcResponseCodeEnum.FAIL);
-                        rpcMessage.setData(rpcResponse);
-                        log.error("not writable now, message dropped");
+                        // 调用业务处理器执行目标方法，方法里发起的嵌套调用继承这个请求的截止时间
+                        long previous = Deadline.enter(deadlineNanos);
+                        try {
+                            result = invoker.invoke(rpcRequest.getParameters());
+                        } finally {
+                            Deadline.restore(previous);
+                        }
+                    } catch (RuntimeException e) {
+                        // 请求处理失败时也回一个失败响应，否则客户端只能等到超时
+                        log.error("server failed to handle request [{}]", rpcMessage.getRequestId(), e);
+                        rpcMessage.setData(RpcResponse.fail(RpcResponseCodeEnum.FAIL));
+                        if (!oneway) {
+                            write(ctx, rpcMessage, deadlineNanos);
+                        }
+                        return;
                     }
+                    log.info("server get result: [{}]", result);
+                    rpcMessage.setMethodKey(invoker.getMethodKey());
+
+                    if (result instanceof CompletionStage) {
+                        // 异步方法：请求消息在下面的 finally 中照常释放，响应只依赖已经取出的字段
+                        ((CompletionStage<?>) result).whenComplete((value, cause) -> {
+                            if (cause != null) {
+                                log.error("service:[{}] failed to complete", invoker.getMethodKey(), cause);
+                                rpcMessage.setData(RpcResponse.fail(RpcResponseCodeEnum.FAIL));
+                            } else {
+                                setResult(ctx, rpcMessage, value, rpcRequest);
+                            }
+                            if (!oneway) {
+                                write(ctx, rpcMessage, deadlineNanos);
+                            }
+                        });
+                        return;
+                    }
+                    setResult(ctx, rpcMessage, result, rpcRequest);
+                }
+                if (!oneway) {
+                    write(ctx, rpcMessage, deadlineNanos);
                 }
-                // 发送响应并添加失败关闭监听
-                ctx.writeAndFlush(rpcMessage).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
             }
         } finally {
             // 确保释放ByteBuf内存（防止内存泄漏）
+            if (msg instanceof RpcMessage) {
+                RpcMessageBodyCodec.discardBody((RpcMessage) msg);
+            }
             ReferenceCountUtil.release(msg);
         }
     }
 
+    private static void setResult(ChannelHandlerContext ctx, RpcMessage rpcMessage, Object result, RpcRequest rpcRequest) {
+        // 检查通道是否可用
+        if (ctx.channel().isActive() && ctx.channel().isWritable()) {
+            // 构建成功响应（包含请求ID用于客户端匹配）
+            RpcResponse<Object> rpcResponse = RpcResponse.success(result, rpcRequest.getRequestId());
+            rpcMessage.setData(rpcResponse);
+        } else {
+            // 通道不可用时返回失败响应
+            RpcResponse<Object> rpcResponse = RpcResponse.fail(RpcResponseCodeEnum.FAIL);
+            rpcMessage.setData(rpcResponse);
+            log.error("not writable now, message dropped");
+        }
+    }
+
+    private static void write(ChannelHandlerContext ctx, RpcMessage rpcMessage, long deadlineNanos) {
+        if (Deadline.isExpired(deadlineNanos)) {
+            dropExpired(ctx, rpcMessage.getRequestId(), "after invoking it");
+            return;
+        }
+        if (rpcMessage.getMessageType() != RpcConstants.HEARTBEAT_RESPONSE_TYPE && RpcMessageBodyCodec.isPreEncode()) {
+            // 在业务线程上完成响应的序列化和压缩，I/O 线程只需要写消息头
+            RpcMessageBodyCodec.preEncode(rpcMessage, ctx.channel());
+        }
+        // 发送响应并添加失败关闭监听
+        ctx.writeAndFlush(rpcMessage).addListener((ChannelFutureListener) future -> {
+            if (!future.isSuccess()) {
+                RpcMessageBodyCodec.discardBody(rpcMessage);
+            }
+        }).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+    }
+
+    private static void dropExpired(ChannelHandlerContext ctx, long requestId, String stage) {
+        EXPIRED_REQUESTS.increment();
+        log.warn("Drop request [{}] from [{}] {}, its caller no longer waits for it", requestId, ctx.channel().remoteAddress(), stage);
+    }
+
+    /**
+     * @return number of requests whose caller had given up before they were invoked or before their response was sent
+     */
+    public static long getExpiredRequests() {
+        return EXPIRED_REQUESTS.sum();
+    }
+
+    /**
+     * 带方法 ID 的请求直接取连接上已经解析好的方法；完整请求提议了方法 ID 时记下它，并在响应里原样带回作为确认
+     */
+    private MethodInvoker resolve(RpcMessage request, RpcRequest rpcRequest, RpcMessage response) {
+        if (rpcRequest.getMethodId() != 0) {
+            MethodInvoker invoker = boundMethods.get(rpcRequest.getMethodId());
+            if (invoker == null) {
+                throw new RpcException(RpcErrorMessageEnum.SERVICE_CAN_NOT_BE_FOUND, "method id:" + rpcRequest.getMethodId());
+            }
+            return invoker;
+        }
+        MethodInvoker invoker = rpcRequestHandler.resolve(rpcRequest);
+        String methodId = request.getAttachments() == null ? null : request.getAttachments().get(RpcConstants.ATTACHMENT_METHOD_ID);
+        if (methodId != null && RpcMessageBodyCodec.isMethodIdEnabled()) {
+            boundMethods.put(Integer.parseInt(methodId), invoker);
+            response.setAttachments(Collections.singletonMap(RpcConstants.ATTACHMENT_METHOD_ID, methodId));
+        }
+        return invoker;
+    }
+
     @Override
     public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
         if (evt instanceof IdleStateEvent) {
@@ -1,11 +1,14 @@
 package github.javaguide.remoting.transport.socket;
 
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.enums.RpcErrorMessageEnum;
 import github.javaguide.enums.ServiceDiscoveryEnum;
 import github.javaguide.exception.RpcException;
 import github.javaguide.extension.ExtensionLoader;
 import github.javaguide.registry.ServiceDiscovery;
 import github.javaguide.remoting.dto.RpcRequest;
 import github.javaguide.remoting.transport.RpcRequestTransport;
+import github.javaguide.utils.RpcConfigUtil;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -14,6 +17,7 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 
 /**
  * 基于 Socket 传输 RpcRequest
@@ -27,7 +31,8 @@ public class SocketRpcClient implements RpcRequestTransport {
     private final ServiceDiscovery serviceDiscovery;
 
     public SocketRpcClient() {
-        this.serviceDiscovery = ExtensionLoader.getExtensionLoader(ServiceDiscovery.class).getExtension(ServiceDiscoveryEnum.ZK.getName());
+        this.serviceDiscovery = ExtensionLoader.getExtensionLoader(ServiceDiscovery.class)
+                .getExtension(RpcConfigUtil.getString(RpcConfigEnum.REGISTRY_TYPE, ServiceDiscoveryEnum.ZK.getName()));
     }
 
     @Override
@@ -35,12 +40,16 @@ public class SocketRpcClient implements RpcRequestTransport {
         InetSocketAddress inetSocketAddress = serviceDiscovery.lookupService(rpcRequest);
         try (Socket socket = new Socket()) {
             socket.connect(inetSocketAddress);
+            // 读不到响应时 read 在超时后抛出 SocketTimeoutException，0 表示一直等待
+            socket.setSoTimeout((int) Math.min(rpcRequest.getTimeout(), Integer.MAX_VALUE));
             ObjectOutputStream objectOutputStream = new ObjectOutputStream(socket.getOutputStream());
             // Send data to the server through the output stream
             objectOutputStream.writeObject(rpcRequest);
             ObjectInputStream objectInputStream = new ObjectInputStream(socket.getInputStream());
             // Read RpcResponse from the input stream
             return objectInputStream.readObject();
+        } catch (SocketTimeoutException e) {
+            throw new RpcException(RpcErrorMessageEnum.REQUEST_TIMEOUT, inetSocketAddress + " timeout:" + rpcRequest.getTimeout() + "ms");
         } catch (IOException | ClassNotFoundException e) {
             throw new RpcException("调用服务失败:", e);
         }
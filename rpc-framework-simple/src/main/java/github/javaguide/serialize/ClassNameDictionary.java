@@ -0,0 +1,144 @@
+package github.javaguide.serialize;
+
+import github.javaguide.exception.SerializeException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 一个连接上的类名字典：每个类名在连接上只发送一次，之后用一个小整数引用。
+ * <p>
+ * 两个方向各自编号：本端序列化时给新的类名分配 ID，发送时由编码器把还没发过的定义放进消息头的附件里；
+ * 对端的定义由解码器在 I/O 线程上按到达顺序记下。因为定义总是跟着第一个（或更早的）用到它的消息一起到达，
+ * 在业务线程上乱序反序列化消息体也不会遇到未知的 ID。字典保存在连接上，重连后从头开始。
+ * <p>
+ * 序列化器通过 {@link #current()} 取得当前消息所在连接的字典，没有绑定字典时照常写完整类名。
+ */
+public final class ClassNameDictionary {
+    /**
+     * at most this many names per direction, so that all definitions always fit into one attachment
+     */
+    private static final int MAX_SIZE = 256;
+    private static final int MAX_NAME_LENGTH = 200;
+    private static final String ALIAS_PREFIX = "#";
+    private static final ThreadLocal<ClassNameDictionary> CURRENT = new ThreadLocal<>();
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    /**
+     * id - 1 -> name, guarded by this
+     */
+    private final List<String> names = new ArrayList<>();
+    /**
+     * number of names already sent to the peer, only used by the event loop
+     */
+    private int announced;
+    private final Map<Integer, String> peerNames = new ConcurrentHashMap<>();
+
+    /**
+     * @return the dictionary of the connection whose message is being serialized or deserialized on this thread
+     */
+    public static ClassNameDictionary current() {
+        return CURRENT.get();
+    }
+
+    public static void bind(ClassNameDictionary dictionary) {
+        CURRENT.set(dictionary);
+    }
+
+    public static void unbind() {
+        CURRENT.remove();
+    }
+
+    /**
+     * @return the id of the class name, assigned on first use, or 0 when the name is not interned
+     */
+    public int idOf(String className) {
+        Integer id = ids.get(className);
+        if (id != null) {
+            return id;
+        }
+        if (className.length() > MAX_NAME_LENGTH || className.indexOf(',') >= 0) {
+            return 0;
+        }
+        synchronized (this) {
+            id = ids.get(className);
+            if (id == null) {
+                if (names.size() >= MAX_SIZE) {
+                    return 0;
+                }
+                names.add(className);
+                id = names.size();
+                ids.put(className, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * @return the class name the peer assigned the id to
+     */
+    public String nameOf(int id) {
+        String className = peerNames.get(id);
+        if (className == null) {
+            throw new SerializeException("unknown class name id: " + id);
+        }
+        return className;
+    }
+
+    /**
+     * @return the short alias standing for the type name in textual type fields (hessian), or the name itself
+     */
+    public String alias(String type) {
+        if (type == null || type.isEmpty()) {
+            return type;
+        }
+        int id = idOf(type);
+        return id == 0 ? type : ALIAS_PREFIX + id;
+    }
+
+    /**
+     * @return the type name an alias written by {@link #alias(String)} stands for
+     */
+    public String resolve(String type) {
+        if (type == null || !type.startsWith(ALIAS_PREFIX)) {
+            return type;
+        }
+        return nameOf(Integer.parseInt(type.substring(ALIAS_PREFIX.length())));
+    }
+
+    /**
+     * Called by the encoder in wire order: the returned definitions are sent before or with any message using them.
+     *
+     * @return {@code firstId:name,name...} for the names not sent yet, or null
+     */
+    public synchronized String takeDefinitions() {
+        if (announced == names.size()) {
+            return null;
+        }
+        StringBuilder definitions = new StringBuilder().append(announced + 1).append(':');
+        for (int i = announced; i < names.size(); i++) {
+            if (i > announced) {
+                definitions.append(',');
+            }
+            definitions.append(names.get(i));
+        }
+        announced = names.size();
+        return definitions.toString();
+    }
+
+    /**
+     * record definitions written by the peer's {@link #takeDefinitions()}
+     */
+    public void define(String definitions) {
+        int colon = definitions.indexOf(':');
+        int id = Integer.parseInt(definitions.substring(0, colon));
+        for (String className : definitions.substring(colon + 1).split(",")) {
+            if (peerNames.size() >= MAX_SIZE) {
+                throw new SerializeException("too many class names defined by the peer");
+            }
+            peerNames.put(id++, className);
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package github.javaguide.serialize;
 
 import github.javaguide.extension.SPI;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+import java.util.Collection;
 
 /**
  * 序列化接口，所有序列化类都要实现这个接口
@@ -28,4 +32,60 @@ public interface Serializer {
      * @return 反序列化的对象
      */
     <T> T deserialize(byte[] bytes, Class<T> clazz);
+
+    /**
+     * 序列化并直接写入 ByteBuf，避免中间的字节数组。
+     * 默认实现退化为 {@link #serialize(Object)}，第三方扩展不实现也可以正常工作
+     *
+     * @param obj 要序列化的对象
+     * @param out 写入的目标缓冲区，从 writerIndex 开始写
+     */
+    default void serialize(Object obj, ByteBuf out) {
+        out.writeBytes(serialize(obj));
+    }
+
+    /**
+     * 直接从 ByteBuf 反序列化，读取 in 中全部可读字节，避免先拷贝成字节数组。
+     * 默认实现退化为 {@link #deserialize(byte[], Class)}
+     *
+     * @param in    序列化后的数据
+     * @param clazz 目标类
+     * @param <T>   类的类型
+     * @return 反序列化的对象
+     */
+    default <T> T deserialize(ByteBuf in, Class<T> clazz) {
+        byte[] bytes = ByteBufUtil.getBytes(in);
+        in.skipBytes(bytes.length);
+        return deserialize(bytes, clazz);
+    }
+
+    /**
+     * 序列化一个类型事先不知道的值（请求的参数数组、响应的数据），写入足够的类型信息让 {@link #deserializeValue(ByteBuf)} 读回。
+     * 默认实现交给 {@link #serialize(Object, ByteBuf)}，适用于本身就带类型信息的格式（例如 hessian）
+     *
+     * @param value 要序列化的值，可以为 null
+     * @param out   写入的目标缓冲区，从 writerIndex 开始写
+     */
+    default void serializeValue(Object value, ByteBuf out) {
+        serialize(value, out);
+    }
+
+    /**
+     * 读回 {@link #serializeValue(Object, ByteBuf)} 写入的值，读取 in 中全部可读字节
+     *
+     * @param in 序列化后的数据
+     * @return 反序列化的值
+     */
+    default Object deserializeValue(ByteBuf in) {
+        return deserialize(in, Object.class);
+    }
+
+    /**
+     * 服务导出或引用时调用，提前准备好服务接口用到的类型（例如构建 schema），避免第一次调用时才准备。
+     * 默认什么都不做
+     *
+     * @param types 服务接口的参数和返回值中用到的应用类型，见 {@link ServiceTypes#of(Class)}
+     */
+    default void prepare(Collection<Class<?>> types) {
+    }
 }
@@ -0,0 +1,121 @@
+package github.javaguide.serialize;
+
+import github.javaguide.config.MethodCodec;
+import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.enums.SerializationTypeEnum;
+import github.javaguide.extension.ExtensionLoader;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 收集服务接口的参数和返回值中用到的应用类型（包括它们字段中的类型），在服务导出或引用时交给各个序列化器提前准备，
+ * 避免第一次调用某个类型时才去构建 schema。
+ */
+@Slf4j
+public final class ServiceTypes {
+
+    private ServiceTypes() {
+    }
+
+    /**
+     * @return the application classes reachable from the methods of the service interface, sorted by name
+     */
+    public static Set<Class<?>> of(Class<?> serviceInterface) {
+        Set<Class<?>> types = new TreeSet<>(Comparator.comparing(Class::getName));
+        Set<Type> visited = new LinkedHashSet<>();
+        Deque<Type> pending = new ArrayDeque<>();
+        for (Method method : serviceInterface.getMethods()) {
+            Collections.addAll(pending, method.getGenericParameterTypes());
+            pending.add(method.getGenericReturnType());
+        }
+        while (!pending.isEmpty()) {
+            Type type = pending.poll();
+            if (!visited.add(type)) {
+                continue;
+            }
+            if (type instanceof ParameterizedType) {
+                pending.add(((ParameterizedType) type).getRawType());
+                Collections.addAll(pending, ((ParameterizedType) type).getActualTypeArguments());
+            } else if (type instanceof GenericArrayType) {
+                pending.add(((GenericArrayType) type).getGenericComponentType());
+            } else if (type instanceof WildcardType) {
+                Collections.addAll(pending, ((WildcardType) type).getUpperBounds());
+            } else if (type instanceof TypeVariable) {
+                Collections.addAll(pending, ((TypeVariable<?>) type).getBounds());
+            } else if (type instanceof Class) {
+                Class<?> clazz = (Class<?>) type;
+                if (clazz.isArray()) {
+                    pending.add(clazz.getComponentType());
+                } else if (isApplicationClass(clazz)) {
+                    types.add(clazz);
+                    for (Class<?> c = clazz; c != null && isApplicationClass(c); c = c.getSuperclass()) {
+                        for (Field field : c.getDeclaredFields()) {
+                            if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isTransient(field.getModifiers())) {
+                                pending.add(field.getGenericType());
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return types;
+    }
+
+    /**
+     * let the serializers a service is configured with prepare the types of the service being exported or referenced.
+     * Serializers the service does not use are left alone, preparing them (Fury's JIT for one) costs time and memory
+     *
+     * @param implementation class of the exported service, its {@link github.javaguide.annotation.RpcMethod} win over
+     *                       the ones on the interface; null for a referenced service
+     */
+    public static void prepareSerializers(RpcServiceConfig rpcServiceConfig, Class<?> serviceInterface, Class<?> implementation) {
+        Set<Class<?>> types = of(serviceInterface);
+        for (byte serialization : serializations(rpcServiceConfig, serviceInterface, implementation)) {
+            String name = SerializationTypeEnum.getName(serialization);
+            log.info("prepare serializer [{}] for [{}]: {}", name, serviceInterface.getName(), types);
+            ExtensionLoader.getExtensionLoader(Serializer.class).getExtension(name).prepare(types);
+        }
+    }
+
+    /**
+     * @return codes of the serializations the methods of the service use, see {@link MethodCodec}
+     */
+    static Set<Byte> serializations(RpcServiceConfig rpcServiceConfig, Class<?> serviceInterface, Class<?> implementation) {
+        Set<Byte> serializations = new TreeSet<>();
+        for (Method method : serviceInterface.getMethods()) {
+            Method implementationMethod = null;
+            if (implementation != null) {
+                try {
+                    implementationMethod = implementation.getMethod(method.getName(), method.getParameterTypes());
+                } catch (NoSuchMethodException e) {
+                    // only the interface's annotation applies
+                }
+            }
+            serializations.add(MethodCodec.of(rpcServiceConfig, implementationMethod, method).getSerialization());
+        }
+        return serializations;
+    }
+
+    private static boolean isApplicationClass(Class<?> clazz) {
+        if (clazz.isPrimitive() || clazz.isInterface() || clazz.isAnnotation()) {
+            return false;
+        }
+        String name = clazz.getName();
+        return !name.startsWith("java.") && !name.startsWith("javax.") && !name.startsWith("jdk.") && !name.startsWith("sun.");
+    }
+}
@@ -0,0 +1,151 @@
+package github.javaguide.serialize.fury;
+
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.exception.SerializeException;
+import github.javaguide.remoting.dto.RpcArguments;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.serialize.Serializer;
+import github.javaguide.utils.RpcConfigUtil;
+import io.netty.buffer.ByteBuf;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.fury.Fury;
+import org.apache.fury.ThreadSafeFury;
+import org.apache.fury.config.Language;
+import org.apache.fury.memory.MemoryBuffer;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Apache Fury serialization. Fury generates (JIT) a serializer for every class the first time it is met, the
+ * generated code is shared by all the instances of the pool.
+ * <p>
+ * Like {@link github.javaguide.serialize.kyro.KryoSerializer}, the envelopes and the application types of exported or
+ * referenced services are registered under ids both ends agree on, other types are written by class name.
+ */
+@Slf4j
+public class FurySerializer implements Serializer {
+
+    /**
+     * ids below are taken by the types Fury registers itself
+     */
+    private static final short ENVELOPE_ID_BASE = 256;
+    private static final int STABLE_ID_BASE = 1024;
+    private static final int STABLE_ID_RANGE = Short.MAX_VALUE - STABLE_ID_BASE;
+    private static final int POOL_SIZE = RpcConfigUtil.getInt(RpcConfigEnum.FURY_POOL_SIZE,
+            Runtime.getRuntime().availableProcessors() * 2);
+
+    /**
+     * Fury is not thread safe: each call borrows an instance from the pool, registrations are applied to all of them
+     */
+    private final ThreadSafeFury fury = Fury.builder()
+            .withLanguage(Language.JAVA)
+            // types outside the service signatures are still written by class name
+            .requireClassRegistration(false)
+            .suppressClassRegistrationWarnings(true)
+            .withCodegen(true)
+            // serialize with the interpreter until the generated serializer of a class is ready
+            .withAsyncCompilation(true)
+            .buildThreadSafeFuryPool(1, POOL_SIZE);
+    /**
+     * stable id -> application type
+     */
+    private final Map<Integer, Class<?>> registrations = new ConcurrentHashMap<>();
+
+    public FurySerializer() {
+        fury.register(RpcRequest.class, ENVELOPE_ID_BASE);
+        fury.register(RpcResponse.class, (short) (ENVELOPE_ID_BASE + 1));
+        fury.register(RpcArguments.class, (short) (ENVELOPE_ID_BASE + 2));
+    }
+
+    @Override
+    public byte[] serialize(Object obj) {
+        try {
+            return fury.serialize(obj);
+        } catch (Exception e) {
+            log.error("Serialization failed", e);
+            throw new SerializeException("Serialization failed");
+        }
+    }
+
+    /**
+     * serialize into the reusable buffer of the borrowed instance and copy it once into out
+     */
+    @Override
+    public void serialize(Object obj, ByteBuf out) {
+        try {
+            fury.execute(f -> {
+                MemoryBuffer buffer = f.getBuffer();
+                buffer.writerIndex(0);
+                f.serialize(buffer, obj);
+                out.writeBytes(buffer.getHeapMemory(), 0, buffer.writerIndex());
+                // shrink the buffer again after a large object
+                f.resetBuffer();
+                return null;
+            });
+        } catch (Exception e) {
+            log.error("Serialization failed", e);
+            throw new SerializeException("Serialization failed");
+        }
+    }
+
+    @Override
+    public <T> T deserialize(byte[] bytes, Class<T> clazz) {
+        try {
+            return clazz.cast(fury.deserialize(bytes));
+        } catch (Exception e) {
+            log.error("Deserialization failed", e);
+            throw new SerializeException("Deserialization failed");
+        }
+    }
+
+    /**
+     * read heap and single-component direct buffers in place
+     */
+    @Override
+    public <T> T deserialize(ByteBuf in, Class<T> clazz) {
+        int length = in.readableBytes();
+        try {
+            Object o;
+            if (in.hasArray()) {
+                o = fury.deserialize(MemoryBuffer.fromByteArray(in.array(), in.arrayOffset() + in.readerIndex(), length));
+            } else if (in.nioBufferCount() == 1) {
+                o = fury.deserialize(in.nioBuffer(in.readerIndex(), length));
+            } else {
+                byte[] bytes = new byte[length];
+                in.getBytes(in.readerIndex(), bytes);
+                o = fury.deserialize(bytes);
+            }
+            in.skipBytes(length);
+            return clazz.cast(o);
+        } catch (Exception e) {
+            log.error("Deserialization failed", e);
+            throw new SerializeException("Deserialization failed");
+        }
+    }
+
+    /**
+     * Register the application types of an exported or referenced service under ids derived from their names.
+     */
+    @Override
+    public synchronized void prepare(Collection<Class<?>> types) {
+        for (Class<?> type : types) {
+            int id = stableId(type);
+            Class<?> registered = registrations.putIfAbsent(id, type);
+            if (registered == type) {
+                continue;
+            }
+            if (registered != null) {
+                throw new SerializeException(String.format("fury id [%d] of [%s] is already used by [%s]",
+                        id, type.getName(), registered.getName()));
+            }
+            fury.register(type, (short) id);
+        }
+    }
+
+    static int stableId(Class<?> type) {
+        return STABLE_ID_BASE + Math.floorMod(type.getName().hashCode(), STABLE_ID_RANGE);
+    }
+}
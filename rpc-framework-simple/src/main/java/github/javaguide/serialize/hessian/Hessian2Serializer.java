@@ -0,0 +1,106 @@
+package github.javaguide.serialize.hessian;
+
+import com.caucho.hessian.io.Hessian2Input;
+import com.caucho.hessian.io.Hessian2Output;
+import com.caucho.hessian.io.SerializerFactory;
+import com.esotericsoftware.kryo.util.Pool;
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.exception.SerializeException;
+import github.javaguide.serialize.Serializer;
+import github.javaguide.utils.RpcConfigUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Hessian 2 serialization. Compared with {@link HessianSerializer} the class definitions and the small-value encodings
+ * of Hessian 2 make the bodies noticeably smaller, the serializers looked up per class are cached in one shared
+ * {@link SerializerFactory}, and the output/input objects with their internal buffers are reused through bounded pools.
+ */
+public class Hessian2Serializer implements Serializer {
+
+    /**
+     * SerializerFactory caches the (reflection based) serializer of every class, share it instead of one per stream
+     */
+    private static final SerializerFactory SERIALIZER_FACTORY = new SerializerFactory();
+    private static final int POOL_SIZE = RpcConfigUtil.getInt(RpcConfigEnum.HESSIAN_POOL_SIZE,
+            Runtime.getRuntime().availableProcessors() * 2);
+    /**
+     * bounded like the Kryo pools: a ThreadLocal would keep one output and input with their buffers per thread
+     */
+    private static final Pool<Hessian2Output> OUTPUT_POOL = new Pool<Hessian2Output>(true, false, POOL_SIZE) {
+        @Override
+        protected Hessian2Output create() {
+            Hessian2Output output = new Hessian2Output();
+            output.setSerializerFactory(SERIALIZER_FACTORY);
+            return output;
+        }
+    };
+    private static final Pool<Hessian2Input> INPUT_POOL = new Pool<Hessian2Input>(true, false, POOL_SIZE) {
+        @Override
+        protected Hessian2Input create() {
+            Hessian2Input input = new Hessian2Input();
+            input.setSerializerFactory(SERIALIZER_FACTORY);
+            return input;
+        }
+    };
+
+    @Override
+    public byte[] serialize(Object obj) {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        write(obj, byteArrayOutputStream);
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    @Override
+    public void serialize(Object obj, ByteBuf out) {
+        write(obj, new ByteBufOutputStream(out));
+    }
+
+    @Override
+    public <T> T deserialize(byte[] bytes, Class<T> clazz) {
+        return read(new ByteArrayInputStream(bytes), clazz);
+    }
+
+    @Override
+    public <T> T deserialize(ByteBuf in, Class<T> clazz) {
+        return read(new ByteBufInputStream(in), clazz);
+    }
+
+    private static void write(Object obj, OutputStream out) {
+        Hessian2Output output = OUTPUT_POOL.obtain();
+        output.init(out);
+        try {
+            output.writeObject(obj);
+            output.flush();
+            output.init(null);
+            OUTPUT_POOL.free(output);
+        } catch (Exception e) {
+            // the buffer may still hold part of the failed object, drop it instead of returning it to the pool
+            output.init(null);
+            throw new SerializeException("Serialization failed");
+        }
+    }
+
+    private static <T> T read(InputStream in, Class<T> clazz) {
+        Hessian2Input input = INPUT_POOL.obtain();
+        input.init(in);
+        try {
+            T value = clazz.cast(input.readObject());
+            // drop anything read ahead of the object, the next body starts from an empty buffer
+            input.resetBuffer();
+            input.init(null);
+            INPUT_POOL.free(input);
+            return value;
+        } catch (Exception e) {
+            // the input may be half way through the failed body, drop it instead of returning it to the pool
+            input.init(null);
+            throw new SerializeException("Deserialization failed");
+        }
+    }
+}
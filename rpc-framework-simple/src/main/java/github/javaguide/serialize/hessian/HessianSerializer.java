@@ -4,10 +4,17 @@ package github.javaguide.serialize.hessian;
 import com.caucho.hessian.io.HessianInput;
 import com.caucho.hessian.io.HessianOutput;
 import github.javaguide.exception.SerializeException;
+import github.javaguide.serialize.ClassNameDictionary;
 import github.javaguide.serialize.Serializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  * Hessian is a dynamically-typed, binary serialization and Web Services protocol designed for object-oriented transmission.
@@ -16,10 +23,11 @@ import java.io.ByteArrayOutputStream;
  * @createTime 2022/2/23 21:11
  */
 public class HessianSerializer implements Serializer {
+
     @Override
     public byte[] serialize(Object obj) {
         try (ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream()) {
-            HessianOutput hessianOutput = new HessianOutput(byteArrayOutputStream);
+            HessianOutput hessianOutput = newOutput(byteArrayOutputStream);
             hessianOutput.writeObject(obj);
 
             return byteArrayOutputStream.toByteArray();
@@ -29,11 +37,36 @@ public class HessianSerializer implements Serializer {
 
     }
 
+    @Override
+    public void serialize(Object obj, ByteBuf out) {
+        try {
+            HessianOutput hessianOutput = newOutput(new ByteBufOutputStream(out));
+            hessianOutput.writeObject(obj);
+            hessianOutput.flush();
+        } catch (Exception e) {
+            throw new SerializeException("Serialization failed");
+        }
+    }
+
     @Override
     public <T> T deserialize(byte[] bytes, Class<T> clazz) {
 
         try (ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(bytes)) {
-            HessianInput hessianInput = new HessianInput(byteArrayInputStream);
+            HessianInput hessianInput = newInput(byteArrayInputStream);
+            Object o = hessianInput.readObject();
+
+            return clazz.cast(o);
+
+        } catch (Exception e) {
+            throw new SerializeException("Deserialization failed");
+        }
+
+    }
+
+    @Override
+    public <T> T deserialize(ByteBuf in, Class<T> clazz) {
+        try {
+            HessianInput hessianInput = newInput(new ByteBufInputStream(in));
             Object o = hessianInput.readObject();
 
             return clazz.cast(o);
@@ -41,6 +74,51 @@ public class HessianSerializer implements Serializer {
         } catch (Exception e) {
             throw new SerializeException("Deserialization failed");
         }
+    }
+
+    private static HessianOutput newOutput(OutputStream out) {
+        ClassNameDictionary dictionary = ClassNameDictionary.current();
+        return dictionary == null ? new HessianOutput(out) : new DictionaryHessianOutput(out, dictionary);
+    }
+
+    private static HessianInput newInput(InputStream in) {
+        ClassNameDictionary dictionary = ClassNameDictionary.current();
+        return dictionary == null ? new HessianInput(in) : new DictionaryHessianInput(in, dictionary);
+    }
+
+    /**
+     * writes the type of objects and lists as an alias from the connection's {@link ClassNameDictionary}
+     */
+    private static final class DictionaryHessianOutput extends HessianOutput {
+        private final ClassNameDictionary dictionary;
+
+        private DictionaryHessianOutput(OutputStream out, ClassNameDictionary dictionary) {
+            super(out);
+            this.dictionary = dictionary;
+        }
 
+        @Override
+        public void writeMapBegin(String type) throws IOException {
+            super.writeMapBegin(dictionary.alias(type));
+        }
+
+        @Override
+        public boolean writeListBegin(int length, String type) throws IOException {
+            return super.writeListBegin(length, dictionary.alias(type));
+        }
+    }
+
+    private static final class DictionaryHessianInput extends HessianInput {
+        private final ClassNameDictionary dictionary;
+
+        private DictionaryHessianInput(InputStream in, ClassNameDictionary dictionary) {
+            super(in);
+            this.dictionary = dictionary;
+        }
+
+        @Override
+        public String readType() throws IOException {
+            return dictionary.resolve(super.readType());
+        }
     }
 }
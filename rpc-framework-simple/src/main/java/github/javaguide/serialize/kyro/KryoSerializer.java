@@ -1,16 +1,35 @@
 package github.javaguide.serialize.kyro;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.Registration;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.util.DefaultClassResolver;
+import com.esotericsoftware.kryo.util.ObjectMap;
+import com.esotericsoftware.kryo.util.Pool;
+import github.javaguide.enums.RpcConfigEnum;
 import github.javaguide.exception.SerializeException;
+import github.javaguide.remoting.dto.RpcArguments;
 import github.javaguide.remoting.dto.RpcRequest;
 import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.serialize.ClassNameDictionary;
 import github.javaguide.serialize.Serializer;
+import github.javaguide.utils.RpcConfigUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Kryo serialization class, Kryo serialization efficiency is very high, but only compatible with Java language
@@ -21,23 +40,68 @@ import java.io.ByteArrayOutputStream;
 @Slf4j
 public class KryoSerializer implements Serializer {
 
+    private static final int BUFFER_SIZE = 1024 * 4;
     /**
-     * Because Kryo is not thread safe. So, use ThreadLocal to store Kryo objects
+     * application types get ids derived from their names, so that both ends agree whatever services they prepared first
      */
-    private final ThreadLocal<Kryo> kryoThreadLocal = ThreadLocal.withInitial(() -> {
-        Kryo kryo = new Kryo();
-        kryo.register(RpcResponse.class);
-        kryo.register(RpcRequest.class);
-        return kryo;
-    });
+    private static final int STABLE_ID_BASE = 1 << 14;
+    private static final int STABLE_ID_RANGE = (1 << 21) - STABLE_ID_BASE;
+    private static final int POOL_SIZE = RpcConfigUtil.getInt(RpcConfigEnum.KRYO_POOL_SIZE,
+            Runtime.getRuntime().availableProcessors() * 2);
+
+    /**
+     * stable id -> application type, registered on every pooled Kryo before use
+     */
+    private final Map<Integer, Class<?>> registrations = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Integer> registeredIds = new ConcurrentHashMap<>();
+    private final List<Class<?>> registrationOrder = new CopyOnWriteArrayList<>();
+
+    /**
+     * Because Kryo is not thread safe, each call borrows one from a bounded pool instead of keeping one per thread:
+     * with virtual threads or large executors a ThreadLocal would hold one Kryo and its maps per thread
+     */
+    private final Pool<PooledKryo> kryoPool = new Pool<PooledKryo>(true, false, POOL_SIZE) {
+        @Override
+        protected PooledKryo create() {
+            Kryo kryo = new Kryo(new DictionaryClassResolver(), null);
+            // types outside the service signatures are still written by class name, interned by the connection's ClassNameDictionary
+            kryo.setRegistrationRequired(false);
+            kryo.register(RpcResponse.class);
+            kryo.register(RpcRequest.class);
+            kryo.register(RpcArguments.class);
+            kryo.register(Object[].class);
+            kryo.register(Class[].class);
+            return new PooledKryo(kryo);
+        }
+    };
+
+    /**
+     * Output and Input keep an internal buffer, reuse them so that streaming into a ByteBuf allocates nothing
+     */
+    private final Pool<Output> outputPool = new Pool<Output>(true, false, POOL_SIZE) {
+        @Override
+        protected Output create() {
+            return new Output(BUFFER_SIZE);
+        }
+    };
+    private final Pool<Input> inputPool = new Pool<Input>(true, false, POOL_SIZE) {
+        @Override
+        protected Input create() {
+            return new Input(BUFFER_SIZE);
+        }
+    };
 
     @Override
     public byte[] serialize(Object obj) {
         try (ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
              Output output = new Output(byteArrayOutputStream)) {
-            Kryo kryo = kryoThreadLocal.get();
-            // Object->byte:将对象序列化为byte数组
-            kryo.writeObject(output, obj);
+            PooledKryo pooledKryo = obtain();
+            try {
+                // Object->byte:将对象序列化为byte数组
+                pooledKryo.kryo.writeObject(output, obj);
+            } finally {
+                kryoPool.free(pooledKryo);
+            }
             output.flush();
             return byteArrayOutputStream.toByteArray();
         } catch (Exception e) {
@@ -46,16 +110,215 @@ public class KryoSerializer implements Serializer {
         }
     }
 
+    @Override
+    public void serialize(Object obj, ByteBuf out) {
+        write(obj, out, false);
+    }
+
+    /**
+     * values of unknown type are written with their class, null included
+     */
+    @Override
+    public void serializeValue(Object value, ByteBuf out) {
+        write(value, out, true);
+    }
+
+    private void write(Object obj, ByteBuf out, boolean withClass) {
+        Output output = outputPool.obtain();
+        output.setOutputStream(new ByteBufOutputStream(out));
+        PooledKryo pooledKryo = obtain();
+        try {
+            if (withClass) {
+                pooledKryo.kryo.writeClassAndObject(output, obj);
+            } else {
+                pooledKryo.kryo.writeObject(output, obj);
+            }
+            output.flush();
+        } catch (Exception e) {
+            log.error("Serialization failed", e);
+            throw new SerializeException("Serialization failed", e);
+        } finally {
+            kryoPool.free(pooledKryo);
+            output.setOutputStream(null);
+            outputPool.free(output);
+        }
+    }
+
     @Override
     public <T> T deserialize(byte[] bytes, Class<T> clazz) {
         try (ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(bytes);
              Input input = new Input(byteArrayInputStream)) {
-            Kryo kryo = kryoThreadLocal.get();
-            // byte->Object:从byte数组中反序列化出对对象
-            return kryo.readObject(input, clazz);
+            PooledKryo pooledKryo = obtain();
+            try {
+                // byte->Object:从byte数组中反序列化出对对象
+                return pooledKryo.kryo.readObject(input, clazz);
+            } finally {
+                kryoPool.free(pooledKryo);
+            }
+        } catch (Exception e) {
+            log.error("Deserialization failed", e);
+            throw new SerializeException("Deserialization failed", e);
+        }
+    }
+
+    @Override
+    public <T> T deserialize(ByteBuf in, Class<T> clazz) {
+        return read(in, clazz);
+    }
+
+    @Override
+    public Object deserializeValue(ByteBuf in) {
+        return read(in, null);
+    }
+
+    /**
+     * @param clazz the type to read, or null to read the class written by {@link #serializeValue(Object, ByteBuf)}
+     */
+    private <T> T read(ByteBuf in, Class<T> clazz) {
+        Input input = inputPool.obtain();
+        input.setInputStream(new ByteBufInputStream(in));
+        PooledKryo pooledKryo = obtain();
+        try {
+            if (clazz == null) {
+                @SuppressWarnings("unchecked")
+                T value = (T) pooledKryo.kryo.readClassAndObject(input);
+                return value;
+            }
+            return pooledKryo.kryo.readObject(input, clazz);
         } catch (Exception e) {
             log.error("Deserialization failed", e);
             throw new SerializeException("Deserialization failed", e);
+        } finally {
+            kryoPool.free(pooledKryo);
+            input.setInputStream(null);
+            inputPool.free(input);
+        }
+    }
+
+    /**
+     * Register the application types of an exported or referenced service under ids derived from their names,
+     * so that payloads carry a small id instead of the class name.
+     * <p>
+     * 名字哈希冲突时后注册的类型顺延到下一个空闲 id，类型按名字排序后注册，两端准备了同样的服务就会得到同样的 id。
+     * 两端只对双方都引用的服务的类型有共识：服务端为另一个服务准备的类型如果以多态值（Object 字段、集合元素）
+     * 出现在客户端只引用的服务里，会按 id 写出，客户端读取时报 unregistered class ID，
+     * 这种值的类型需要出现在该服务的方法签名里，或者客户端也引用声明它的服务。
+     */
+    @Override
+    public synchronized void prepare(Collection<Class<?>> types) {
+        List<Class<?>> sorted = new ArrayList<>(types);
+        sorted.sort(Comparator.comparing(Class::getName));
+        for (Class<?> type : sorted) {
+            if (registeredIds.containsKey(type)) {
+                continue;
+            }
+            int id = stableId(type);
+            Class<?> registered;
+            while ((registered = registrations.putIfAbsent(id, type)) != null) {
+                log.warn("kryo id [{}] of [{}] is already used by [{}], probing the next one", id, type.getName(), registered.getName());
+                id = nextId(id);
+            }
+            registeredIds.put(type, id);
+            registrationOrder.add(type);
+        }
+    }
+
+    static int stableId(Class<?> type) {
+        return STABLE_ID_BASE + Math.floorMod(type.getName().hashCode(), STABLE_ID_RANGE);
+    }
+
+    static int nextId(int id) {
+        return STABLE_ID_BASE + (id - STABLE_ID_BASE + 1) % STABLE_ID_RANGE;
+    }
+
+    int registeredId(Class<?> type) {
+        return registeredIds.get(type);
+    }
+
+    private PooledKryo obtain() {
+        PooledKryo pooledKryo = kryoPool.obtain();
+        // catch up with the types registered since this instance was last used
+        while (pooledKryo.registered < registrationOrder.size()) {
+            Class<?> type = registrationOrder.get(pooledKryo.registered++);
+            pooledKryo.kryo.register(type, registeredIds.get(type));
+        }
+        return pooledKryo;
+    }
+
+    private static final class PooledKryo {
+        private final Kryo kryo;
+        /**
+         * number of entries of registrationOrder already registered on this instance
+         */
+        private int registered;
+
+        private PooledKryo(Kryo kryo) {
+            this.kryo = kryo;
+        }
+    }
+
+    /**
+     * Writes unregistered classes as ids of the bound {@link ClassNameDictionary} instead of their names.
+     * The name id that follows the class tag is 0 followed by the name for names that are not interned.
+     */
+    private static final class DictionaryClassResolver extends DefaultClassResolver {
+
+        /**
+         * Same as the default, but names the likely cause when the peer wrote a stable id this side never prepared
+         */
+        @Override
+        public Registration readClass(Input input) {
+            int classId = input.readVarInt(true);
+            if (classId == Kryo.NULL) {
+                return null;
+            }
+            if (classId == NAME + 2) {
+                return readName(input);
+            }
+            Registration registration = idToRegistration.get(classId - 2);
+            if (registration == null) {
+                throw new KryoException(String.format("Encountered unregistered class ID: %d, the peer prepared this type for a service"
+                        + " this side does not reference, keep it in the signature of the service that carries it", classId - 2));
+            }
+            return registration;
+        }
+
+        @Override
+        protected void writeName(Output output, Class type, Registration registration) {
+            ClassNameDictionary dictionary = ClassNameDictionary.current();
+            if (dictionary == null) {
+                super.writeName(output, type, registration);
+                return;
+            }
+            int id = dictionary.idOf(type.getName());
+            output.writeByte(NAME + 2);
+            output.writeVarInt(id, true);
+            if (id == 0) {
+                output.writeString(type.getName());
+            }
+        }
+
+        @Override
+        protected Registration readName(Input input) {
+            ClassNameDictionary dictionary = ClassNameDictionary.current();
+            if (dictionary == null) {
+                return super.readName(input);
+            }
+            int id = input.readVarInt(true);
+            String className = id == 0 ? input.readString() : dictionary.nameOf(id);
+            Class type = getTypeByName(className);
+            if (type == null) {
+                try {
+                    type = Class.forName(className, false, kryo.getClassLoader());
+                } catch (ClassNotFoundException e) {
+                    throw new KryoException("Unable to find class: " + className, e);
+                }
+                if (nameToClass == null) {
+                    nameToClass = new ObjectMap<>();
+                }
+                nameToClass.put(className, type);
+            }
+            return kryo.getRegistration(type);
         }
     }
 
@@ -1,11 +1,19 @@
 package github.javaguide.serialize.protostuff;
 
+import github.javaguide.exception.SerializeException;
 import github.javaguide.serialize.Serializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
 import io.protostuff.LinkedBuffer;
 import io.protostuff.ProtostuffIOUtil;
 import io.protostuff.Schema;
 import io.protostuff.runtime.RuntimeSchema;
 
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+
 /**
  * @author TangMinXuan
  * @createTime 2020年11月09日 20:13
@@ -13,23 +21,37 @@ import io.protostuff.runtime.RuntimeSchema;
 public class ProtostuffSerializer implements Serializer {
 
     /**
-     * Avoid re applying buffer space every time serialization
+     * Avoid re applying buffer space every time serialization. A LinkedBuffer must not be shared between threads,
+     * so every event loop and business thread gets its own
      */
-    private static final LinkedBuffer BUFFER = LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE);
+    private static final ThreadLocal<LinkedBuffer> BUFFER = ThreadLocal.withInitial(() -> LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE));
 
     @Override
     public byte[] serialize(Object obj) {
-        Class<?> clazz = obj.getClass();
-        Schema schema = RuntimeSchema.getSchema(clazz);
+        Schema<Object> schema = schemaOf(obj);
+        LinkedBuffer buffer = BUFFER.get();
         byte[] bytes;
         try {
-            bytes = ProtostuffIOUtil.toByteArray(obj, schema, BUFFER);
+            bytes = ProtostuffIOUtil.toByteArray(obj, schema, buffer);
         } finally {
-            BUFFER.clear();
+            buffer.clear();
         }
         return bytes;
     }
 
+    @Override
+    public void serialize(Object obj, ByteBuf out) {
+        Schema<Object> schema = schemaOf(obj);
+        LinkedBuffer buffer = BUFFER.get();
+        try {
+            ProtostuffIOUtil.writeTo(new ByteBufOutputStream(out), obj, schema, buffer);
+        } catch (IOException e) {
+            throw new SerializeException("Serialization failed");
+        } finally {
+            buffer.clear();
+        }
+    }
+
     @Override
     public <T> T deserialize(byte[] bytes, Class<T> clazz) {
         Schema<T> schema = RuntimeSchema.getSchema(clazz);
@@ -37,4 +59,62 @@ public class ProtostuffSerializer implements Serializer {
         ProtostuffIOUtil.mergeFrom(bytes, obj, schema);
         return obj;
     }
+
+    @Override
+    public <T> T deserialize(ByteBuf in, Class<T> clazz) {
+        Schema<T> schema = RuntimeSchema.getSchema(clazz);
+        T obj = schema.newMessage();
+        int length = in.readableBytes();
+        if (in.hasArray()) {
+            // heap buffer: parse the backing array in place
+            ProtostuffIOUtil.mergeFrom(in.array(), in.arrayOffset() + in.readerIndex(), length, obj, schema);
+            in.skipBytes(length);
+        } else {
+            try {
+                ProtostuffIOUtil.mergeFrom(new ByteBufInputStream(in), obj, schema);
+            } catch (IOException e) {
+                throw new SerializeException("Deserialization failed");
+            }
+        }
+        return obj;
+    }
+
+    /**
+     * protostuff only writes message classes, a value of unknown type (an Object[] or any response data) is wrapped
+     */
+    @Override
+    public void serializeValue(Object value, ByteBuf out) {
+        serialize(new Value(value), out);
+    }
+
+    @Override
+    public Object deserializeValue(ByteBuf in) {
+        return deserialize(in, Value.class).value;
+    }
+
+    /**
+     * build the runtime schemas up front, RuntimeSchema caches them for the lifetime of the process
+     */
+    @Override
+    public void prepare(Collection<Class<?>> types) {
+        for (Class<?> type : types) {
+            if (!type.isEnum() && !Modifier.isAbstract(type.getModifiers())) {
+                RuntimeSchema.getSchema(type);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Schema<Object> schemaOf(Object obj) {
+        // the schema of the runtime class writes obj, whatever its static type
+        return (Schema<Object>) RuntimeSchema.getSchema(obj.getClass());
+    }
+
+    private static final class Value {
+        private Object value;
+
+        private Value(Object value) {
+            this.value = value;
+        }
+    }
 }
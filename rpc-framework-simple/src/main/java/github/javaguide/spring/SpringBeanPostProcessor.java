@@ -47,6 +47,7 @@ public class SpringBeanPostProcessor implements BeanPostProcessor {
             RpcServiceConfig rpcServiceConfig = RpcServiceConfig.builder()
                     .group(rpcService.group())
                     .version(rpcService.version())
+                    .compress(rpcService.compress())
                     .service(bean).build();
             serviceProvider.publishService(rpcServiceConfig);
         }
@@ -67,7 +68,10 @@ public class SpringBeanPostProcessor implements BeanPostProcessor {
                 // 1. 构建服务配置：从 @RpcReference 中提取分组和版本信息
                 RpcServiceConfig rpcServiceConfig = RpcServiceConfig.builder()
                         .group(rpcReference.group())
-                        .version(rpcReference.version()).build();
+                        .version(rpcReference.version())
+                        .serialization(rpcReference.serialization())
+                        .compress(rpcReference.compress())
+                        .timeout(rpcReference.timeout()).build();
                 // 2. 创建RPC客户端代理生成器：传入RPC传输组件（Netty实现）和服务配置
                 /*
                 * RpcClientProxy实现了InvocationHandler 接口，在里面生成代理对象和代理对象方法的调用(invoke()方法)
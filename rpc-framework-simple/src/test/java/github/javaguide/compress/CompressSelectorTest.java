@@ -0,0 +1,63 @@
+package github.javaguide.compress;
+
+import github.javaguide.enums.CompressTypeEnum;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CompressSelectorTest {
+
+    private static final byte NONE = CompressTypeEnum.NONE.getCode();
+    private static final byte GZIP = CompressTypeEnum.GZIP.getCode();
+
+    @Test
+    void smallBodiesAreNotCompressed() {
+        CompressSelector selector = new CompressSelector(512, false, 90, 100);
+        assertEquals(NONE, selector.select("svc#hello", GZIP, 40));
+        assertEquals(GZIP, selector.select("svc#hello", GZIP, 512));
+        assertEquals(NONE, selector.select("svc#hello", NONE, 4096));
+    }
+
+    @Test
+    void adaptiveTurnsCompressionOffWhenRatioDoesNotPay() {
+        CompressSelector selector = new CompressSelector(0, true, 90, 100);
+        for (int i = 0; i < CompressSelector.WARM_UP_SAMPLES; i++) {
+            assertEquals(GZIP, selector.select("svc#random", GZIP, 1000));
+            selector.record("svc#random", GZIP, 1000, 990, 1000);
+            assertEquals(GZIP, selector.select("svc#text", GZIP, 1000));
+            selector.record("svc#text", GZIP, 1000, 200, 1000);
+        }
+        assertEquals(NONE, selector.select("svc#random", GZIP, 1000));
+        assertEquals(GZIP, selector.select("svc#text", GZIP, 1000));
+        assertEquals("none", selector.getChosenCompressors().get("svc#random"));
+        assertEquals("gzip", selector.getChosenCompressors().get("svc#text"));
+    }
+
+    @Test
+    void adaptiveTurnsCompressionOffWhenTooExpensive() {
+        CompressSelector selector = new CompressSelector(0, true, 90, 100);
+        for (int i = 0; i < CompressSelector.WARM_UP_SAMPLES; i++) {
+            selector.select("svc#slow", GZIP, 1000);
+            // 50% ratio but 100ns per raw byte = 200ns per saved byte
+            selector.record("svc#slow", GZIP, 1000, 500, 100_000);
+        }
+        assertEquals("none", selector.getChosenCompressors().get("svc#slow"));
+    }
+
+    @Test
+    void adaptiveKeepsSamplingAndTurnsCompressionBackOn() {
+        CompressSelector selector = new CompressSelector(0, true, 90, 100);
+        for (int i = 0; i < CompressSelector.WARM_UP_SAMPLES; i++) {
+            selector.select("svc#hello", GZIP, 1000);
+            selector.record("svc#hello", GZIP, 1000, 1000, 1000);
+        }
+        int sampled = 0;
+        for (int i = 0; i < CompressSelector.SAMPLE_INTERVAL * 40 && sampled < 40; i++) {
+            if (selector.select("svc#hello", GZIP, 1000) == GZIP) {
+                sampled++;
+                selector.record("svc#hello", GZIP, 1000, 100, 1000);
+            }
+        }
+        assertEquals("gzip", selector.getChosenCompressors().get("svc#hello"));
+    }
+}
@@ -2,12 +2,19 @@ package github.javaguide.compress.gzip;
 
 import github.javaguide.compress.Compress;
 import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.serialize.hessian.HessianSerializer;
 import github.javaguide.serialize.kyro.KryoSerializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
 import org.junit.jupiter.api.Test;
 
 import java.util.UUID;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class GzipCompressTest {
     @Test
@@ -28,5 +35,48 @@ class GzipCompressTest {
         assertEquals(rpcRequestBytes.length, decompressRpcRequestBytes.length);
     }
 
+    @Test
+    void gzipCompressByteBufTest() {
+        Compress gzipCompress = new GzipCompress();
+        RpcRequest rpcRequest = RpcRequest.builder().methodName("hello")
+                .parameters(new Object[]{"sayhelooloo", "sayhelooloosayhelooloo"})
+                .interfaceName("github.javaguide.HelloService")
+                .requestId(UUID.randomUUID().toString())
+                .build();
+        HessianSerializer hessianSerializer = new HessianSerializer();
+        ByteBuf body = Unpooled.directBuffer();
+        ByteBuf compressed = Unpooled.directBuffer();
+        try {
+            hessianSerializer.serialize(rpcRequest, body);
+            byte[] rpcRequestBytes = ByteBufUtil.getBytes(body);
+            gzipCompress.compress(body, compressed);
+            assertEquals(0, body.readableBytes());
+            byte[] decompressRpcRequestBytes = gzipCompress.decompress(ByteBufUtil.getBytes(compressed));
+            assertArrayEquals(rpcRequestBytes, decompressRpcRequestBytes);
+        } finally {
+            body.release();
+            compressed.release();
+        }
+    }
 
-}
\ No newline at end of file
+    @Test
+    void gzipStopsAtTheDecompressedSizeLimit() {
+        Compress gzipCompress = new GzipCompress();
+        // 64MB of zeros compress to about 64KB, more than the 32MB a body may decompress to by default
+        ByteBuf zeros = Unpooled.wrappedBuffer(new byte[64 * 1024 * 1024]);
+        ByteBuf bomb = Unpooled.buffer();
+        ByteBuf out = Unpooled.buffer();
+        try {
+            gzipCompress.compress(zeros, bomb);
+            byte[] bombBytes = ByteBufUtil.getBytes(bomb);
+            assertThrows(IllegalArgumentException.class, () -> gzipCompress.decompress(bombBytes));
+            assertThrows(IllegalArgumentException.class, () -> gzipCompress.decompress(bomb, out));
+            // stopped within one read of the limit
+            assertTrue(out.readableBytes() <= 32 * 1024 * 1024 + 4096, Integer.toString(out.readableBytes()));
+        } finally {
+            zeros.release();
+            bomb.release();
+            out.release();
+        }
+    }
+}
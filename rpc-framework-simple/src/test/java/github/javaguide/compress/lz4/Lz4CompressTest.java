@@ -0,0 +1,95 @@
+package github.javaguide.compress.lz4;
+
+import github.javaguide.compress.Compress;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.serialize.hessian.HessianSerializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class Lz4CompressTest {
+
+    private final HessianSerializer hessianSerializer = new HessianSerializer();
+
+    @Test
+    void lz4CompressTest() {
+        Compress lz4Compress = new Lz4Compress();
+        byte[] rpcRequestBytes = hessianSerializer.serialize(rpcRequest());
+        byte[] compressRpcRequestBytes = lz4Compress.compress(rpcRequestBytes);
+        byte[] decompressRpcRequestBytes = lz4Compress.decompress(compressRpcRequestBytes);
+        assertArrayEquals(rpcRequestBytes, decompressRpcRequestBytes);
+    }
+
+    @Test
+    void lz4CompressDirectByteBufTest() {
+        byteBufRoundTrip(Unpooled.directBuffer(), Unpooled.directBuffer(), Unpooled.directBuffer());
+    }
+
+    @Test
+    void lz4CompressHeapByteBufTest() {
+        byteBufRoundTrip(Unpooled.buffer(), Unpooled.buffer(), Unpooled.buffer());
+    }
+
+    @Test
+    void lz4RejectsLengthsItCannotTrust() {
+        Compress lz4Compress = new Lz4Compress();
+        byte[] compressed = lz4Compress.compress(hessianSerializer.serialize(rpcRequest()));
+
+        // a few bytes declaring a 1GB body are rejected before anything is allocated for it
+        byte[] huge = Arrays.copyOf(compressed, compressed.length);
+        ByteBuffer.wrap(huge).putInt(1 << 30);
+        assertThrows(IllegalArgumentException.class, () -> lz4Compress.decompress(huge));
+        ByteBuf hugeBuf = Unpooled.wrappedBuffer(huge);
+        ByteBuf out = Unpooled.directBuffer(0);
+        try {
+            assertThrows(IllegalArgumentException.class, () -> lz4Compress.decompress(hugeBuf, out));
+            assertEquals(0, out.capacity());
+        } finally {
+            out.release();
+        }
+
+        // a block that decompresses to less than the declared length is not padded with zeros
+        byte[] longer = Arrays.copyOf(compressed, compressed.length);
+        ByteBuffer.wrap(longer).putInt(ByteBuffer.wrap(compressed).getInt() + 1);
+        assertThrows(RuntimeException.class, () -> lz4Compress.decompress(longer));
+    }
+
+    private void byteBufRoundTrip(ByteBuf body, ByteBuf compressed, ByteBuf decompressed) {
+        Compress lz4Compress = new Lz4Compress();
+        try {
+            hessianSerializer.serialize(rpcRequest(), body);
+            byte[] rpcRequestBytes = ByteBufUtil.getBytes(body);
+            lz4Compress.compress(body, compressed);
+            assertEquals(0, body.readableBytes());
+            // the ByteBuf and byte[] variants produce the same format
+            assertArrayEquals(rpcRequestBytes, lz4Compress.decompress(ByteBufUtil.getBytes(compressed)));
+            lz4Compress.decompress(compressed, decompressed);
+            assertEquals(0, compressed.readableBytes());
+            assertArrayEquals(rpcRequestBytes, ByteBufUtil.getBytes(decompressed));
+        } finally {
+            body.release();
+            compressed.release();
+            decompressed.release();
+        }
+    }
+
+    private static RpcRequest rpcRequest() {
+        return RpcRequest.builder().methodName("hello")
+                .parameters(new Object[]{"sayhelooloo", "sayhelooloosayhelooloo"})
+                .interfaceName("github.javaguide.HelloService")
+                .paramTypes(new Class<?>[]{String.class, String.class})
+                .requestId(UUID.randomUUID().toString())
+                .group("group1")
+                .version("version1")
+                .build();
+    }
+}
@@ -0,0 +1,68 @@
+package github.javaguide.compress.snappy;
+
+import github.javaguide.compress.Compress;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.serialize.hessian.HessianSerializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SnappyCompressTest {
+
+    private final HessianSerializer hessianSerializer = new HessianSerializer();
+
+    @Test
+    void snappyCompressTest() {
+        Compress snappyCompress = new SnappyCompress();
+        byte[] rpcRequestBytes = hessianSerializer.serialize(rpcRequest());
+        byte[] compressRpcRequestBytes = snappyCompress.compress(rpcRequestBytes);
+        byte[] decompressRpcRequestBytes = snappyCompress.decompress(compressRpcRequestBytes);
+        assertArrayEquals(rpcRequestBytes, decompressRpcRequestBytes);
+    }
+
+    @Test
+    void snappyCompressDirectByteBufTest() {
+        byteBufRoundTrip(Unpooled.directBuffer(), Unpooled.directBuffer(), Unpooled.directBuffer());
+    }
+
+    @Test
+    void snappyCompressHeapByteBufTest() {
+        byteBufRoundTrip(Unpooled.buffer(), Unpooled.buffer(), Unpooled.buffer());
+    }
+
+    private void byteBufRoundTrip(ByteBuf body, ByteBuf compressed, ByteBuf decompressed) {
+        Compress snappyCompress = new SnappyCompress();
+        try {
+            hessianSerializer.serialize(rpcRequest(), body);
+            byte[] rpcRequestBytes = ByteBufUtil.getBytes(body);
+            snappyCompress.compress(body, compressed);
+            assertEquals(0, body.readableBytes());
+            // the ByteBuf and byte[] variants produce the same format
+            assertArrayEquals(rpcRequestBytes, snappyCompress.decompress(ByteBufUtil.getBytes(compressed)));
+            snappyCompress.decompress(compressed, decompressed);
+            assertEquals(0, compressed.readableBytes());
+            assertArrayEquals(rpcRequestBytes, ByteBufUtil.getBytes(decompressed));
+        } finally {
+            body.release();
+            compressed.release();
+            decompressed.release();
+        }
+    }
+
+    private static RpcRequest rpcRequest() {
+        return RpcRequest.builder().methodName("hello")
+                .parameters(new Object[]{"sayhelooloo", "sayhelooloosayhelooloo"})
+                .interfaceName("github.javaguide.HelloService")
+                .paramTypes(new Class<?>[]{String.class, String.class})
+                .requestId(UUID.randomUUID().toString())
+                .group("group1")
+                .version("version1")
+                .build();
+    }
+}
@@ -0,0 +1,88 @@
+package github.javaguide.compress.zstd;
+
+import github.javaguide.compress.Compress;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.serialize.hessian.HessianSerializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ZstdCompressTest {
+
+    private final HessianSerializer hessianSerializer = new HessianSerializer();
+
+    @Test
+    void zstdCompressTest() {
+        Compress zstdCompress = new ZstdCompress();
+        byte[] rpcRequestBytes = hessianSerializer.serialize(rpcRequest());
+        byte[] compressRpcRequestBytes = zstdCompress.compress(rpcRequestBytes);
+        byte[] decompressRpcRequestBytes = zstdCompress.decompress(compressRpcRequestBytes);
+        assertArrayEquals(rpcRequestBytes, decompressRpcRequestBytes);
+    }
+
+    @Test
+    void zstdCompressDirectByteBufTest() {
+        byteBufRoundTrip(Unpooled.directBuffer(), Unpooled.directBuffer(), Unpooled.directBuffer());
+    }
+
+    @Test
+    void zstdCompressHeapByteBufTest() {
+        byteBufRoundTrip(Unpooled.buffer(), Unpooled.buffer(), Unpooled.buffer());
+    }
+
+    @Test
+    void zstdRejectsContentSizesAboveTheLimit() {
+        Compress zstdCompress = new ZstdCompress();
+        // 64MB of zeros compress to a few KB, more than the 32MB a body may decompress to by default
+        byte[] bomb = zstdCompress.compress(new byte[64 * 1024 * 1024]);
+        assertThrows(IllegalArgumentException.class, () -> zstdCompress.decompress(bomb));
+        ByteBuf heap = Unpooled.wrappedBuffer(bomb);
+        ByteBuf direct = Unpooled.directBuffer(bomb.length).writeBytes(bomb);
+        ByteBuf out = Unpooled.buffer(0);
+        try {
+            assertThrows(IllegalArgumentException.class, () -> zstdCompress.decompress(heap, out));
+            assertThrows(IllegalArgumentException.class, () -> zstdCompress.decompress(direct, out));
+            assertEquals(0, out.capacity());
+        } finally {
+            direct.release();
+            out.release();
+        }
+    }
+
+    private void byteBufRoundTrip(ByteBuf body, ByteBuf compressed, ByteBuf decompressed) {
+        Compress zstdCompress = new ZstdCompress();
+        try {
+            hessianSerializer.serialize(rpcRequest(), body);
+            byte[] rpcRequestBytes = ByteBufUtil.getBytes(body);
+            zstdCompress.compress(body, compressed);
+            assertEquals(0, body.readableBytes());
+            // the ByteBuf and byte[] variants produce the same format
+            assertArrayEquals(rpcRequestBytes, zstdCompress.decompress(ByteBufUtil.getBytes(compressed)));
+            zstdCompress.decompress(compressed, decompressed);
+            assertEquals(0, compressed.readableBytes());
+            assertArrayEquals(rpcRequestBytes, ByteBufUtil.getBytes(decompressed));
+        } finally {
+            body.release();
+            compressed.release();
+            decompressed.release();
+        }
+    }
+
+    private static RpcRequest rpcRequest() {
+        return RpcRequest.builder().methodName("hello")
+                .parameters(new Object[]{"sayhelooloo", "sayhelooloosayhelooloo"})
+                .interfaceName("github.javaguide.HelloService")
+                .paramTypes(new Class<?>[]{String.class, String.class})
+                .requestId(UUID.randomUUID().toString())
+                .group("group1")
+                .version("version1")
+                .build();
+    }
+}
@@ -0,0 +1,28 @@
+package github.javaguide.compress.zstd;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.Closeable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ZstdContextPoolTest {
+
+    @Test
+    void contextsBeyondThePoolSizeAreClosed() {
+        AtomicInteger closed = new AtomicInteger();
+        ZstdContextPool<Closeable> pool = new ZstdContextPool<>(() -> closed::incrementAndGet, 2);
+        Closeable first = pool.obtain();
+        Closeable second = pool.obtain();
+        Closeable third = pool.obtain();
+        pool.free(first);
+        pool.free(second);
+        pool.free(third);
+        assertEquals(2, pool.idle());
+        assertEquals(1, closed.get());
+        // idle contexts are handed out again instead of creating new ones
+        assertSame(first, pool.obtain());
+    }
+}
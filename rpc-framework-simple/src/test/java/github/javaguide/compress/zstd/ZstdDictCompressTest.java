@@ -0,0 +1,106 @@
+package github.javaguide.compress.zstd;
+
+import com.github.luben.zstd.Zstd;
+import github.javaguide.factory.SingletonFactory;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.serialize.hessian.HessianSerializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ZstdDictCompressTest {
+
+    private static final String SERVICE = "github.javaguide.ZstdDictTestService";
+    private static final HessianSerializer HESSIAN_SERIALIZER = new HessianSerializer();
+    private static ZstdDictionary dictionary;
+
+    @BeforeAll
+    static void trainDictionary() {
+        ZstdDictSampler sampler = new ZstdDictSampler(1);
+        for (int i = 0; i < 2000; i++) {
+            ByteBuf body = Unpooled.wrappedBuffer(HESSIAN_SERIALIZER.serialize(rpcRequest(i)));
+            sampler.sample(SERVICE + "group1version1#hello", body);
+            assertEquals(0, body.readerIndex());
+        }
+        assertEquals(2000, sampler.sampleCount(SERVICE + "group1version1"));
+        byte[] dict = sampler.train(SERVICE + "group1version1", 4096);
+        dictionary = SingletonFactory.getInstance(ZstdDictionaries.class).register(SERVICE, 1, dict);
+    }
+
+    @Test
+    void zstdDictCompressTest() {
+        ZstdDictCompress zstdDictCompress = new ZstdDictCompress();
+        byte[] rpcRequestBytes = HESSIAN_SERIALIZER.serialize(rpcRequest(-1));
+        byte[] compressed = zstdDictCompress.compress(rpcRequestBytes, dictionary);
+        assertEquals(dictionary.getId(), (int) Zstd.getDictIdFromFrame(compressed));
+        assertTrue(compressed.length < new ZstdCompress().compress(rpcRequestBytes).length);
+        assertArrayEquals(rpcRequestBytes, zstdDictCompress.decompress(compressed));
+    }
+
+    @Test
+    void zstdDictCompressByteBufTest() {
+        ZstdDictCompress zstdDictCompress = new ZstdDictCompress();
+        ByteBuf body = Unpooled.directBuffer();
+        ByteBuf compressed = Unpooled.directBuffer();
+        ByteBuf decompressed = Unpooled.directBuffer();
+        try {
+            HESSIAN_SERIALIZER.serialize(rpcRequest(-1), body);
+            byte[] rpcRequestBytes = ByteBufUtil.getBytes(body);
+            zstdDictCompress.compress(body, compressed, dictionary);
+            zstdDictCompress.decompress(compressed, decompressed);
+            assertArrayEquals(rpcRequestBytes, ByteBufUtil.getBytes(decompressed));
+        } finally {
+            body.release();
+            compressed.release();
+            decompressed.release();
+        }
+    }
+
+    @Test
+    void plainFrameTest() {
+        byte[] rpcRequestBytes = HESSIAN_SERIALIZER.serialize(rpcRequest(-1));
+        byte[] compressed = new ZstdCompress().compress(rpcRequestBytes);
+        assertArrayEquals(rpcRequestBytes, new ZstdDictCompress().decompress(compressed));
+    }
+
+    @Test
+    void unknownDictionaryTest() {
+        ZstdDictionaries otherProcess = new ZstdDictionaries();
+        ZstdDictionary unknown = otherProcess.register("other", 1, trainOther());
+        byte[] compressed = new ZstdDictCompress().compress(HESSIAN_SERIALIZER.serialize(rpcRequest(-1)), unknown);
+        assertThrows(IllegalStateException.class, () -> new ZstdDictCompress().decompress(compressed));
+    }
+
+    private static byte[] trainOther() {
+        ZstdDictSampler sampler = new ZstdDictSampler(1);
+        for (int i = 0; i < 2000; i++) {
+            RpcRequest rpcRequest = RpcRequest.builder().methodName("other" + i % 7)
+                    .interfaceName("github.javaguide.OtherService")
+                    .parameters(new Object[]{i, "other" + i})
+                    .requestId(UUID.randomUUID().toString())
+                    .build();
+            sampler.sample("other#m", Unpooled.wrappedBuffer(HESSIAN_SERIALIZER.serialize(rpcRequest)));
+        }
+        return sampler.train("other", 4096);
+    }
+
+    private static RpcRequest rpcRequest(int i) {
+        return RpcRequest.builder().methodName("hello")
+                .parameters(new Object[]{"message " + i, "description of hello number " + i})
+                .interfaceName(SERVICE)
+                .paramTypes(new Class<?>[]{String.class, String.class})
+                .requestId(UUID.randomUUID().toString())
+                .group("group1")
+                .version("version1")
+                .build();
+    }
+}
@@ -0,0 +1,79 @@
+package github.javaguide.config;
+
+import github.javaguide.annotation.RpcMethod;
+import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.SerializationTypeEnum;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class MethodCodecTest {
+
+    interface BulkService {
+        @RpcMethod(serialization = "kyro", compress = "lz4")
+        byte[] export(String query);
+
+        @RpcMethod(compress = "none", timeout = 100)
+        String ping();
+
+        String echo(String message);
+    }
+
+    static class BulkServiceImpl implements BulkService {
+        @Override
+        public byte[] export(String query) {
+            return new byte[0];
+        }
+
+        @Override
+        @RpcMethod(compress = "zstd")
+        public String ping() {
+            return "pong";
+        }
+
+        @Override
+        public String echo(String message) {
+            return message;
+        }
+    }
+
+    @Test
+    void methodOverridesService() throws NoSuchMethodException {
+        RpcServiceConfig rpcServiceConfig = RpcServiceConfig.builder().serialization("protostuff").compress("gzip").build();
+        MethodCodec export = MethodCodec.of(rpcServiceConfig, BulkService.class.getMethod("export", String.class));
+        assertEquals(SerializationTypeEnum.KYRO.getCode(), export.getSerialization());
+        assertEquals(CompressTypeEnum.LZ4.getCode(), export.getCompress());
+
+        MethodCodec ping = MethodCodec.of(rpcServiceConfig, BulkService.class.getMethod("ping"));
+        assertEquals(SerializationTypeEnum.PROTOSTUFF.getCode(), ping.getSerialization());
+        assertEquals(CompressTypeEnum.NONE.getCode(), ping.getCompress());
+
+        MethodCodec echo = MethodCodec.of(rpcServiceConfig, BulkService.class.getMethod("echo", String.class));
+        assertEquals(SerializationTypeEnum.PROTOSTUFF.getCode(), echo.getSerialization());
+        assertEquals(CompressTypeEnum.GZIP.getCode(), echo.getCompress());
+    }
+
+    @Test
+    void methodTimeoutOverridesReference() throws NoSuchMethodException {
+        RpcServiceConfig rpcServiceConfig = RpcServiceConfig.builder().timeout(2000).build();
+        assertEquals(100, MethodCodec.of(rpcServiceConfig, BulkService.class.getMethod("ping")).getTimeout());
+        assertEquals(2000, MethodCodec.of(rpcServiceConfig, BulkService.class.getMethod("echo", String.class)).getTimeout());
+        // rpc.client.requestTimeout
+        assertEquals(5000, MethodCodec.of(new RpcServiceConfig(), BulkService.class.getMethod("echo", String.class)).getTimeout());
+    }
+
+    @Test
+    void implementationOverridesInterfaceAndDefaultsApply() throws NoSuchMethodException {
+        RpcServiceConfig rpcServiceConfig = new RpcServiceConfig();
+        Method ping = BulkServiceImpl.class.getMethod("ping");
+        MethodCodec server = MethodCodec.of(rpcServiceConfig, ping, BulkService.class.getMethod("ping"));
+        assertEquals(CompressTypeEnum.ZSTD.getCode(), server.getCompress());
+
+        MethodCodec echo = MethodCodec.of(rpcServiceConfig, BulkServiceImpl.class.getMethod("echo", String.class), null);
+        assertEquals(SerializationTypeEnum.HESSIAN.getCode(), echo.getSerialization());
+        assertNull(echo.getCompress());
+    }
+}
@@ -0,0 +1,118 @@
+package github.javaguide.proxy;
+
+import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.enums.RpcErrorMessageEnum;
+import github.javaguide.enums.RpcResponseCodeEnum;
+import github.javaguide.exception.RpcException;
+import github.javaguide.remoting.dto.RpcMessage;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.utils.concurrent.threadpool.ThreadPoolFactoryUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RpcClientProxyTest {
+
+    private final ExecutorService callbackExecutor = Executors.newSingleThreadExecutor(
+            ThreadPoolFactoryUtil.createThreadFactory("test-callback", true));
+    private final List<RpcRequest> sent = new CopyOnWriteArrayList<>();
+    private final List<CompletableFuture<RpcMessage>> responses = new CopyOnWriteArrayList<>();
+    private final EchoService echoService = new RpcClientProxy(rpcRequest -> {
+        sent.add(rpcRequest);
+        CompletableFuture<RpcMessage> response = new CompletableFuture<>();
+        responses.add(response);
+        return response;
+    }, new RpcServiceConfig(), callbackExecutor).getProxy(EchoService.class);
+
+    @AfterEach
+    void shutdown() {
+        callbackExecutor.shutdownNow();
+    }
+
+    @Test
+    void asyncMethodsReturnBeforeTheResponseArrives() throws Exception {
+        CompletableFuture<String> result = echoService.echoAsync("hello");
+        assertFalse(result.isDone());
+        assertEquals(1, sent.size());
+        assertEquals("echoAsync", sent.get(0).getMethodName());
+
+        CompletableFuture<String> thread = result.thenApply(value -> Thread.currentThread().getName());
+        responses.get(0).complete(response(RpcResponse.success("hello", sent.get(0).getRequestId())));
+        // the response is decoded and the callbacks run on the callback executor, not on the completing thread
+        assertTrue(thread.get(5, TimeUnit.SECONDS).startsWith("test-callback"), thread.get());
+        assertEquals("hello", result.get());
+    }
+
+    @Test
+    void asyncMethodsFailWithTheRpcException() throws Exception {
+        CompletableFuture<String> failed = echoService.echoAsync("hello");
+        responses.get(0).complete(response(RpcResponse.fail(RpcResponseCodeEnum.FAIL)));
+        CompletionException e = assertThrows(CompletionException.class, failed::join);
+        assertInstanceOf(RpcException.class, e.getCause());
+
+        CompletableFuture<String> unsent = echoService.echoAsync("hello");
+        CompletableFuture<String> thread = unsent.handle((value, cause) -> Thread.currentThread().getName());
+        responses.get(1).completeExceptionally(new RpcException(RpcErrorMessageEnum.CLIENT_CONNECT_SERVER_FAILURE));
+        assertTrue(thread.get(5, TimeUnit.SECONDS).startsWith("test-callback"), thread.get());
+        e = assertThrows(CompletionException.class, unsent::join);
+        assertInstanceOf(RpcException.class, e.getCause());
+    }
+
+    @Test
+    void syncMethodsWaitForTheResponse() throws Exception {
+        CompletableFuture<String> result = CompletableFuture.supplyAsync(() -> echoService.echo("hello"));
+        while (responses.isEmpty()) {
+            Thread.sleep(1);
+        }
+        assertFalse(result.isDone());
+        responses.get(0).complete(response(RpcResponse.success("hello", sent.get(0).getRequestId())));
+        assertEquals("hello", result.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void requestIdsAreComparedOnlyWhenBothSidesCarryOne() {
+        CompletableFuture<String> matching = echoService.echoAsync("hello");
+        sent.get(0).setRequestId("1");
+        responses.get(0).complete(response(RpcResponse.success("hello", "1")));
+        assertEquals("hello", matching.join());
+
+        CompletableFuture<String> mismatched = echoService.echoAsync("hello");
+        sent.get(1).setRequestId("2");
+        responses.get(1).complete(response(RpcResponse.success("hello", "3")));
+        CompletionException e = assertThrows(CompletionException.class, mismatched::join);
+        assertTrue(e.getCause().getMessage().startsWith(RpcErrorMessageEnum.REQUEST_NOT_MATCH_RESPONSE.getMessage()));
+
+        // failure responses do not echo the id, they fail on their response code
+        CompletableFuture<String> failed = echoService.echoAsync("hello");
+        sent.get(2).setRequestId("4");
+        responses.get(2).complete(response(RpcResponse.fail(RpcResponseCodeEnum.FAIL)));
+        e = assertThrows(CompletionException.class, failed::join);
+        assertTrue(e.getCause().getMessage().startsWith(RpcErrorMessageEnum.SERVICE_INVOCATION_FAILURE.getMessage()));
+    }
+
+    private static RpcMessage response(RpcResponse<?> rpcResponse) {
+        RpcMessage rpcMessage = new RpcMessage();
+        rpcMessage.setData(rpcResponse);
+        return rpcMessage;
+    }
+
+    public interface EchoService {
+        String echo(String message);
+
+        CompletableFuture<String> echoAsync(String message);
+    }
+}
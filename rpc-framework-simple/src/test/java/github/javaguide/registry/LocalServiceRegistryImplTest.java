@@ -0,0 +1,48 @@
+package github.javaguide.registry;
+
+import github.javaguide.DemoRpcService;
+import github.javaguide.DemoRpcServiceImpl;
+import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.exception.RpcException;
+import github.javaguide.registry.local.LocalServiceDiscoveryImpl;
+import github.javaguide.registry.local.LocalServiceRegistryImpl;
+import github.javaguide.remoting.dto.RpcRequest;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LocalServiceRegistryImplTest {
+
+    @Test
+    void should_register_service_successful_and_lookup_service_by_service_name() {
+        ServiceRegistry localServiceRegistry = new LocalServiceRegistryImpl();
+        InetSocketAddress givenInetSocketAddress = new InetSocketAddress("127.0.0.1", 9333);
+        RpcServiceConfig rpcServiceConfig = RpcServiceConfig.builder()
+                .group("local").version("version1").service(new DemoRpcServiceImpl()).build();
+        localServiceRegistry.registerService(rpcServiceConfig.getRpcServiceName(), givenInetSocketAddress);
+        ServiceDiscovery localServiceDiscovery = new LocalServiceDiscoveryImpl();
+        InetSocketAddress acquiredInetSocketAddress = localServiceDiscovery.lookupService(request(rpcServiceConfig));
+        assertEquals(givenInetSocketAddress.toString(), acquiredInetSocketAddress.toString());
+    }
+
+    @Test
+    void should_fail_when_service_is_not_registered() {
+        RpcServiceConfig rpcServiceConfig = RpcServiceConfig.builder()
+                .group("local").version("missing").service(new DemoRpcServiceImpl()).build();
+        ServiceDiscovery localServiceDiscovery = new LocalServiceDiscoveryImpl();
+        assertThrows(RpcException.class, () -> localServiceDiscovery.lookupService(request(rpcServiceConfig)));
+    }
+
+    private static RpcRequest request(RpcServiceConfig rpcServiceConfig) {
+        return RpcRequest.builder()
+                .interfaceName(DemoRpcService.class.getName())
+                .requestId(UUID.randomUUID().toString())
+                .group(rpcServiceConfig.getGroup())
+                .version(rpcServiceConfig.getVersion())
+                .build();
+    }
+}
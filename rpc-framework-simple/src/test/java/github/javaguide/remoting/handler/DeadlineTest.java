@@ -0,0 +1,49 @@
+package github.javaguide.remoting.handler;
+
+import github.javaguide.exception.RpcException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeadlineTest {
+
+    @Test
+    void nestedCallsDoNotOutliveTheRequestBeingHandled() {
+        assertEquals(0, Deadline.current());
+        assertEquals(3000, Deadline.timeout(3000));
+        assertEquals(0, Deadline.timeout(0));
+
+        long previous = Deadline.enter(Deadline.after(TimeUnit.SECONDS.toNanos(1)));
+        try {
+            assertEquals(200, Deadline.timeout(200));
+            long shortened = Deadline.timeout(3000);
+            assertTrue(shortened > 900 && shortened <= 1000, Long.toString(shortened));
+            // a call without a timeout of its own gets what is left
+            long inherited = Deadline.timeout(0);
+            assertTrue(inherited > 900 && inherited <= 1000, Long.toString(inherited));
+        } finally {
+            Deadline.restore(previous);
+        }
+        assertEquals(0, Deadline.current());
+    }
+
+    @Test
+    void callsFailOnceTheDeadlinePassed() {
+        long deadline = Deadline.after(-1);
+        assertTrue(Deadline.isExpired(deadline));
+        assertFalse(Deadline.isExpired(0));
+        assertFalse(Deadline.isExpired(Deadline.after(TimeUnit.SECONDS.toNanos(1))));
+
+        long previous = Deadline.enter(deadline);
+        try {
+            assertThrows(RpcException.class, () -> Deadline.timeout(3000));
+        } finally {
+            Deadline.restore(previous);
+        }
+    }
+}
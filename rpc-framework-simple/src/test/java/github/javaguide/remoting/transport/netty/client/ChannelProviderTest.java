@@ -0,0 +1,168 @@
+package github.javaguide.remoting.transport.netty.client;
+
+import github.javaguide.exception.RpcException;
+import io.netty.channel.Channel;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChannelProviderTest {
+
+    private static final InetSocketAddress ADDRESS = new InetSocketAddress("127.0.0.1", 9998);
+
+    private final List<Channel> connected = new ArrayList<>();
+    private final Function<InetSocketAddress, CompletableFuture<Channel>> connector = address -> {
+        Channel channel = new EmbeddedChannel();
+        connected.add(channel);
+        return CompletableFuture.completedFuture(channel);
+    };
+
+    @Test
+    void connectionsAreAddedWhileAllOfThemAreBusy() {
+        ChannelProvider channelProvider = new ChannelProvider(3, Long.MAX_VALUE, 0, 0);
+        Channel first = acquire(channelProvider, connector);
+        assertSame(first, acquire(channelProvider, connector));
+        assertEquals(1, connected.size());
+
+        long firstRequest = send(first);
+        // the busy connection is used while the next one is being opened
+        assertSame(first, acquire(channelProvider, connector));
+        assertEquals(2, connected.size());
+        Channel second = connected.get(1);
+        assertSame(second, acquire(channelProvider, connector));
+        send(second);
+        assertSame(first, acquire(channelProvider, connector));
+        assertEquals(3, connected.size());
+        Channel third = connected.get(2);
+        assertSame(third, acquire(channelProvider, connector));
+        send(third);
+        send(third);
+        send(third);
+        // the pool is full, the least busy connection is chosen
+        assertEquals(3, connected.size());
+        assertSame(first, acquire(channelProvider, connector));
+        assertEquals(3, channelProvider.occupancy(ADDRESS).size());
+        assertEquals(3, channelProvider.occupancy(ADDRESS).get(2).getPendingRequests());
+
+        UnprocessedRequests.get(first).remove(firstRequest);
+        assertSame(first, acquire(channelProvider, connector));
+        assertEquals(3, connected.size());
+    }
+
+    @Test
+    void callersShareTheConnectionBeingEstablished() {
+        ChannelProvider channelProvider = new ChannelProvider(1, Long.MAX_VALUE, 0, 0);
+        CompletableFuture<Channel> connecting = new CompletableFuture<>();
+        int[] attempts = new int[1];
+        Function<InetSocketAddress, CompletableFuture<Channel>> slowConnector = address -> {
+            attempts[0]++;
+            return connecting;
+        };
+        CompletableFuture<Channel> first = channelProvider.acquire(ADDRESS, slowConnector);
+        CompletableFuture<Channel> second = channelProvider.acquire(ADDRESS, slowConnector);
+        assertSame(first, second);
+        assertFalse(first.isDone());
+
+        EmbeddedChannel channel = new EmbeddedChannel();
+        connecting.complete(channel);
+        assertSame(channel, first.join());
+        assertEquals(1, channelProvider.occupancy(ADDRESS).size());
+        assertSame(channel, acquire(channelProvider, slowConnector));
+        assertEquals(1, attempts[0]);
+    }
+
+    @Test
+    void failedConnectionsAreRetriedAfterTheBackoff() throws InterruptedException {
+        ChannelProvider channelProvider = new ChannelProvider(1, Long.MAX_VALUE,
+                TimeUnit.MILLISECONDS.toNanos(50), TimeUnit.MILLISECONDS.toNanos(50));
+        int[] attempts = new int[1];
+        Function<InetSocketAddress, CompletableFuture<Channel>> refused = address -> {
+            attempts[0]++;
+            CompletableFuture<Channel> future = new CompletableFuture<>();
+            future.completeExceptionally(new ConnectException("Connection refused"));
+            return future;
+        };
+        ExecutionException e = assertThrows(ExecutionException.class, () -> channelProvider.acquire(ADDRESS, refused).get());
+        assertInstanceOf(RpcException.class, e.getCause());
+        assertInstanceOf(ConnectException.class, e.getCause().getCause());
+        // within the backoff the failure is returned without connecting again
+        assertTrue(channelProvider.acquire(ADDRESS, refused).isCompletedExceptionally());
+        assertEquals(1, attempts[0]);
+
+        Thread.sleep(60);
+        assertTrue(channelProvider.acquire(ADDRESS, connector).join().isActive());
+        assertEquals(1, connected.size());
+    }
+
+    @Test
+    void backoffGrowsUpToTheLimitWithJitter() {
+        ChannelProvider channelProvider = new ChannelProvider(1, Long.MAX_VALUE, 100, 1000);
+        for (int i = 0; i < 100; i++) {
+            long first = channelProvider.backoff(1);
+            assertTrue(first >= 50 && first <= 100, Long.toString(first));
+            long third = channelProvider.backoff(3);
+            assertTrue(third >= 200 && third <= 400, Long.toString(third));
+            long capped = channelProvider.backoff(64);
+            assertTrue(capped >= 500 && capped <= 1000, Long.toString(capped));
+        }
+    }
+
+    @Test
+    void idleConnectionsAreClosedDownToOne() {
+        ChannelProvider channelProvider = new ChannelProvider(2, 0, 0, 0);
+        Channel first = acquire(channelProvider, connector);
+        long request = send(first);
+        acquire(channelProvider, connector);
+        Channel second = connected.get(1);
+
+        // still waiting for a response
+        assertFalse(channelProvider.closeIfIdle(first));
+        assertTrue(channelProvider.closeIfIdle(second));
+        assertFalse(second.isActive());
+        assertEquals(1, channelProvider.occupancy(ADDRESS).size());
+
+        UnprocessedRequests.get(first).remove(request);
+        // the last connection stays open
+        assertFalse(channelProvider.closeIfIdle(first));
+        assertTrue(first.isActive());
+    }
+
+    @Test
+    void closedConnectionsLeaveThePool() {
+        ChannelProvider channelProvider = new ChannelProvider(2, Long.MAX_VALUE, 0, 0);
+        Channel first = acquire(channelProvider, connector);
+        first.close();
+        assertTrue(channelProvider.occupancy(ADDRESS).isEmpty());
+        Channel second = acquire(channelProvider, connector);
+        assertTrue(second.isActive());
+        assertEquals(2, connected.size());
+    }
+
+    private static Channel acquire(ChannelProvider channelProvider, Function<InetSocketAddress, CompletableFuture<Channel>> connector) {
+        CompletableFuture<Channel> channel = channelProvider.acquire(ADDRESS, connector);
+        assertTrue(channel.isDone());
+        return channel.join();
+    }
+
+    private static long send(Channel channel) {
+        UnprocessedRequests unprocessedRequests = UnprocessedRequests.get(channel);
+        long requestId = unprocessedRequests.nextRequestId();
+        unprocessedRequests.put(requestId, new CompletableFuture<>());
+        return requestId;
+    }
+}
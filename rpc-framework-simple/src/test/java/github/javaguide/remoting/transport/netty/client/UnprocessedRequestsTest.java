@@ -0,0 +1,137 @@
+package github.javaguide.remoting.transport.netty.client;
+
+import github.javaguide.enums.RpcResponseCodeEnum;
+import github.javaguide.exception.RpcException;
+import github.javaguide.remoting.dto.RpcMessage;
+import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.remoting.transport.netty.codec.ConnectionContext;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UnprocessedRequestsTest {
+
+    @Test
+    void responsesAreMatchedOnTheHeaderIdOfTheirConnection() {
+        EmbeddedChannel channel = handshaken();
+        UnprocessedRequests unprocessedRequests = UnprocessedRequests.get(channel);
+        assertSame(unprocessedRequests, UnprocessedRequests.get(channel));
+        assertNotSame(unprocessedRequests, UnprocessedRequests.get(new EmbeddedChannel()));
+
+        List<CompletableFuture<RpcMessage>> futures = new ArrayList<>();
+        long[] ids = new long[100];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = unprocessedRequests.nextRequestId();
+            futures.add(new CompletableFuture<>());
+            unprocessedRequests.put(ids[i], futures.get(i));
+        }
+        assertEquals(ids.length, unprocessedRequests.size());
+        for (int i = ids.length - 1; i >= 0; i--) {
+            RpcMessage response = RpcMessage.builder().requestId(ids[i]).build();
+            unprocessedRequests.complete(response);
+            assertSame(response, futures.get(i).getNow(null));
+        }
+        assertEquals(0, unprocessedRequests.size());
+        // a second response to the same request is dropped and counted
+        long lateResponses = UnprocessedRequests.getLateResponses();
+        unprocessedRequests.complete(RpcMessage.builder().requestId(ids[0]).build());
+        assertEquals(lateResponses + 1, UnprocessedRequests.getLateResponses());
+    }
+
+    @Test
+    void responsesOfServersWithoutHandshakeAreMatchedOnTheBodyId() {
+        // old servers write a counter of their own in the header and echo the id of the request body
+        UnprocessedRequests unprocessedRequests = UnprocessedRequests.get(new EmbeddedChannel());
+        long first = unprocessedRequests.nextRequestId();
+        long second = unprocessedRequests.nextRequestId();
+        CompletableFuture<RpcMessage> firstFuture = new CompletableFuture<>();
+        CompletableFuture<RpcMessage> secondFuture = new CompletableFuture<>();
+        unprocessedRequests.put(first, firstFuture);
+        unprocessedRequests.put(second, secondFuture);
+
+        RpcMessage response = RpcMessage.builder().requestId(first)
+                .data(RpcResponse.success("hello", Long.toString(second))).build();
+        unprocessedRequests.complete(response);
+        assertSame(response, secondFuture.getNow(null));
+        assertFalse(firstFuture.isDone());
+
+        // a response without id cannot be told apart, it is dropped and the request waits for its timeout
+        long lateResponses = UnprocessedRequests.getLateResponses();
+        unprocessedRequests.complete(RpcMessage.builder().requestId(first)
+                .data(RpcResponse.fail(RpcResponseCodeEnum.FAIL)).build());
+        assertEquals(lateResponses + 1, UnprocessedRequests.getLateResponses());
+        assertFalse(firstFuture.isDone());
+    }
+
+    @Test
+    void idsStayWithinFourBytesUntilVersionTwoIsNegotiated() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        UnprocessedRequests unprocessedRequests = new UnprocessedRequests(channel);
+        long first = unprocessedRequests.nextRequestId();
+        assertEquals(first + 1, unprocessedRequests.nextRequestId());
+        assertTrue(first <= 0xFFFFFFFFL);
+
+        ByteBuf handshake = ConnectionContext.writeHandshake(channel.alloc());
+        ConnectionContext.get(channel).readHandshake(handshake);
+        handshake.release();
+        assertEquals(first + 2, unprocessedRequests.nextRequestId());
+    }
+
+    @Test
+    void pendingRequestsFailWhenTheConnectionCloses() {
+        UnprocessedRequests unprocessedRequests = UnprocessedRequests.get(new EmbeddedChannel());
+        CompletableFuture<RpcMessage> future = new CompletableFuture<>();
+        long requestId = unprocessedRequests.nextRequestId();
+        unprocessedRequests.put(requestId, future);
+        unprocessedRequests.failAll(new IllegalStateException("closed"));
+        assertTrue(future.isCompletedExceptionally());
+        assertNull(unprocessedRequests.remove(requestId));
+    }
+
+    @Test
+    void requestsWithoutAResponseInTimeAreEvicted() throws InterruptedException {
+        UnprocessedRequests unprocessedRequests = UnprocessedRequests.get(handshaken());
+        CompletableFuture<RpcMessage> expiring = new CompletableFuture<>();
+        long expiringId = unprocessedRequests.nextRequestId();
+        unprocessedRequests.put(expiringId, expiring, TimeUnit.MILLISECONDS.toNanos(20));
+        CompletableFuture<RpcMessage> answered = new CompletableFuture<>();
+        long answeredId = unprocessedRequests.nextRequestId();
+        unprocessedRequests.put(answeredId, answered, TimeUnit.MILLISECONDS.toNanos(20));
+        unprocessedRequests.complete(RpcMessage.builder().requestId(answeredId).build());
+        long timedOut = UnprocessedRequests.getTimedOutRequests();
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> expiring.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(RpcException.class, e.getCause());
+        assertEquals(0, unprocessedRequests.size());
+        assertEquals(timedOut + 1, UnprocessedRequests.getTimedOutRequests());
+
+        // the response arriving after the timeout is dropped
+        long lateResponses = UnprocessedRequests.getLateResponses();
+        unprocessedRequests.complete(RpcMessage.builder().requestId(expiringId).build());
+        assertEquals(lateResponses + 1, UnprocessedRequests.getLateResponses());
+        assertTrue(answered.isDone() && !answered.isCompletedExceptionally());
+    }
+
+    private static EmbeddedChannel handshaken() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        ByteBuf handshake = ConnectionContext.writeHandshake(channel.alloc());
+        ConnectionContext.get(channel).readHandshake(handshake);
+        handshake.release();
+        return channel;
+    }
+}
@@ -0,0 +1,372 @@
+package github.javaguide.remoting.transport.netty.codec;
+
+import github.javaguide.compress.zstd.ZstdDictSampler;
+import github.javaguide.compress.zstd.ZstdDictionaries;
+import github.javaguide.compress.zstd.ZstdDictionary;
+import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.RpcResponseCodeEnum;
+import github.javaguide.enums.SerializationTypeEnum;
+import github.javaguide.factory.SingletonFactory;
+import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.remoting.dto.RpcMessage;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.serialize.hessian.HessianSerializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RpcMessageCodecTest {
+
+    @Test
+    void hessianRequestRoundTrip() {
+        requestRoundTrip(SerializationTypeEnum.HESSIAN);
+    }
+
+    @Test
+    void protostuffRequestRoundTrip() {
+        requestRoundTrip(SerializationTypeEnum.PROTOSTUFF);
+    }
+
+    @Test
+    void preEncodedRequestRoundTrip() {
+        requestRoundTrip(SerializationTypeEnum.HESSIAN, true);
+    }
+
+    @Test
+    void versionTwoCarriesLongRequestIdFlagsAndAttachments() {
+        Map<String, String> attachments = new HashMap<>();
+        attachments.put("traceId", "4bf92f3577b34da6");
+        attachments.put("租户", "guide");
+        RpcMessage rpcMessage = RpcMessage.builder()
+                .version(RpcConstants.VERSION_2)
+                .flags(RpcConstants.FLAG_ONEWAY)
+                .attachments(attachments)
+                .data(largeRequest("github.javaguide.HelloService", 1))
+                .codec(SerializationTypeEnum.HESSIAN.getCode())
+                .compress(CompressTypeEnum.GZIP.getCode())
+                .requestId((1L << 40) + 3)
+                .messageType(RpcConstants.REQUEST_TYPE).build();
+        EmbeddedChannel encoder = new EmbeddedChannel(new RpcMessageEncoder());
+        EmbeddedChannel decoder = new EmbeddedChannel(new RpcMessageDecoder());
+        assertTrue(encoder.writeOutbound(rpcMessage));
+        assertTrue(decoder.writeInbound((ByteBuf) encoder.readOutbound()));
+        RpcMessage decoded = decoder.readInbound();
+
+        assertEquals(RpcConstants.VERSION_2, decoded.getVersion());
+        assertEquals((1L << 40) + 3, decoded.getRequestId());
+        assertEquals(CompressTypeEnum.GZIP.getCode(), decoded.getCompress());
+        assertEquals(RpcConstants.FLAG_ONEWAY | RpcConstants.FLAG_COMPRESSED | RpcConstants.FLAG_BINARY_ENVELOPE, decoded.getFlags());
+        assertEquals(attachments, decoded.getAttachments());
+        assertEquals(0, decoded.getDeadlineNanos());
+        assertEquals("hello", ((RpcRequest) RpcMessageBodyCodec.decodeBody(decoded)).getMethodName());
+        encoder.finishAndReleaseAll();
+        decoder.finishAndReleaseAll();
+    }
+
+    @Test
+    void timeoutAttachmentBecomesALocalDeadline() {
+        RpcMessage rpcMessage = RpcMessage.builder()
+                .version(RpcConstants.VERSION_2)
+                .attachments(Collections.singletonMap(RpcConstants.ATTACHMENT_TIMEOUT, "60000"))
+                .data(largeRequest("github.javaguide.HelloService", 1))
+                .codec(SerializationTypeEnum.HESSIAN.getCode())
+                .requestId(5)
+                .messageType(RpcConstants.REQUEST_TYPE).build();
+        EmbeddedChannel encoder = new EmbeddedChannel(new RpcMessageEncoder());
+        EmbeddedChannel decoder = new EmbeddedChannel(new RpcMessageDecoder());
+        long before = System.nanoTime();
+        assertTrue(encoder.writeOutbound(rpcMessage));
+        assertTrue(decoder.writeInbound((ByteBuf) encoder.readOutbound()));
+        RpcMessage decoded = decoder.readInbound();
+
+        // the budget starts when the frame is read
+        long budget = decoded.getDeadlineNanos() - before;
+        assertTrue(budget >= TimeUnit.SECONDS.toNanos(60) && budget < TimeUnit.SECONDS.toNanos(61), Long.toString(budget));
+        encoder.finishAndReleaseAll();
+        decoder.finishAndReleaseAll();
+    }
+
+    @Test
+    void methodIdRequestCarriesOnlyTheArguments() {
+        RpcRequest full = RpcRequest.builder().methodName("hello")
+                .parameters(new Object[]{"sayhelooloo"})
+                .interfaceName("github.javaguide.HelloService")
+                .paramTypes(new Class<?>[]{String.class})
+                .group("group1")
+                .version("version1")
+                .build();
+        RpcRequest interned = RpcRequest.builder().methodId(3).parameters(full.getParameters()).build();
+        EmbeddedChannel encoder = new EmbeddedChannel(new RpcMessageEncoder());
+        EmbeddedChannel decoder = new EmbeddedChannel(new RpcMessageDecoder());
+        for (SerializationTypeEnum serializationType : new SerializationTypeEnum[]{SerializationTypeEnum.HESSIAN, SerializationTypeEnum.PROTOSTUFF}) {
+            assertTrue(encoder.writeOutbound(versionTwoRequest(full, serializationType, (byte) 0)));
+            ByteBuf fullFrame = encoder.readOutbound();
+            assertTrue(encoder.writeOutbound(versionTwoRequest(interned, serializationType, RpcConstants.FLAG_METHOD_ID)));
+            ByteBuf internedFrame = encoder.readOutbound();
+            assertTrue(internedFrame.readableBytes() < fullFrame.readableBytes() / 2,
+                    internedFrame.readableBytes() + " vs " + fullFrame.readableBytes());
+            fullFrame.release();
+
+            assertTrue(decoder.writeInbound(internedFrame));
+            RpcRequest decoded = (RpcRequest) RpcMessageBodyCodec.decodeBody(decoder.readInbound());
+            assertEquals(3, decoded.getMethodId());
+            assertNull(decoded.getInterfaceName());
+            assertEquals("sayhelooloo", decoded.getParameters()[0]);
+        }
+        encoder.finishAndReleaseAll();
+        decoder.finishAndReleaseAll();
+    }
+
+    @Test
+    void binaryEnvelopeRoundTrip() {
+        RpcRequest rpcRequest = RpcRequest.builder().methodName("hello")
+                .parameters(new Object[]{"sayhelooloo", 42, null})
+                .interfaceName("github.javaguide.HelloService")
+                .paramTypes(new Class<?>[]{String.class, int.class, String[].class})
+                .requestId(UUID.randomUUID().toString())
+                .group("group1")
+                .build();
+        RpcResponse<Object> success = RpcResponse.success(new Object[]{"hello", 1L}, rpcRequest.getRequestId());
+        RpcResponse<Object> fail = RpcResponse.fail(RpcResponseCodeEnum.FAIL);
+        EmbeddedChannel encoder = new EmbeddedChannel(new RpcMessageEncoder());
+        EmbeddedChannel decoder = new EmbeddedChannel(new RpcMessageDecoder());
+        for (SerializationTypeEnum serializationType : SerializationTypeEnum.values()) {
+            assertTrue(encoder.writeOutbound(versionTwoRequest(rpcRequest, serializationType, (byte) 0)));
+            assertTrue(decoder.writeInbound((ByteBuf) encoder.readOutbound()));
+            RpcMessage decoded = decoder.readInbound();
+            assertEquals(RpcConstants.FLAG_BINARY_ENVELOPE, decoded.getFlags());
+            RpcRequest request = (RpcRequest) RpcMessageBodyCodec.decodeBody(decoded);
+            assertEquals(rpcRequest.getRequestId(), request.getRequestId());
+            assertEquals("group1", request.getGroup());
+            assertNull(request.getVersion());
+            assertArrayEquals(rpcRequest.getParamTypes(), request.getParamTypes());
+            assertArrayEquals(rpcRequest.getParameters(), request.getParameters());
+
+            for (RpcResponse<Object> rpcResponse : Arrays.asList(success, fail)) {
+                assertTrue(encoder.writeOutbound(RpcMessage.builder()
+                        .version(RpcConstants.VERSION_2)
+                        .data(rpcResponse)
+                        .codec(serializationType.getCode())
+                        .compress(CompressTypeEnum.NONE.getCode())
+                        .requestId(11)
+                        .messageType(RpcConstants.RESPONSE_TYPE).build()));
+                assertTrue(decoder.writeInbound((ByteBuf) encoder.readOutbound()));
+                RpcResponse<?> response = (RpcResponse<?>) RpcMessageBodyCodec.decodeBody(decoder.readInbound());
+                assertEquals(rpcResponse.getRequestId(), response.getRequestId());
+                assertEquals(rpcResponse.getCode(), response.getCode());
+                assertEquals(rpcResponse.getMessage(), response.getMessage());
+                if (rpcResponse.getData() == null) {
+                    assertNull(response.getData());
+                } else {
+                    assertArrayEquals((Object[]) rpcResponse.getData(), (Object[]) response.getData());
+                }
+            }
+        }
+        encoder.finishAndReleaseAll();
+        decoder.finishAndReleaseAll();
+    }
+
+    private static RpcMessage versionTwoRequest(RpcRequest rpcRequest, SerializationTypeEnum serializationType, byte flags) {
+        return RpcMessage.builder()
+                .version(RpcConstants.VERSION_2)
+                .flags(flags)
+                .data(rpcRequest)
+                .codec(serializationType.getCode())
+                .compress(CompressTypeEnum.NONE.getCode())
+                .requestId(11)
+                .methodKey("github.javaguide.HelloServicegroup1version1#hello")
+                .messageType(RpcConstants.REQUEST_TYPE).build();
+    }
+
+    @Test
+    void versionIsNegotiatedThroughTheHandshake() {
+        EmbeddedChannel channel = new EmbeddedChannel(new RpcMessageEncoder(), new RpcMessageDecoder());
+        assertEquals(RpcConstants.VERSION, ConnectionContext.get(channel).getVersion());
+        // a handshake without a version entry, as sent by a peer that only speaks v1
+        ByteBuf handshake = Unpooled.buffer().writeByte(1).writeShort(0);
+        ConnectionContext.get(channel).readHandshake(handshake);
+        assertEquals(RpcConstants.VERSION, ConnectionContext.get(channel).getVersion());
+
+        handshake = ConnectionContext.writeHandshake(channel.alloc());
+        ConnectionContext.get(channel).readHandshake(handshake);
+        handshake.release();
+        assertEquals(RpcConstants.VERSION_2, ConnectionContext.get(channel).getVersion());
+
+        RpcMessage ping = RpcMessage.builder()
+                .codec(SerializationTypeEnum.PROTOSTUFF.getCode())
+                .compress(CompressTypeEnum.NONE.getCode())
+                .requestId(9)
+                .messageType(RpcConstants.HEARTBEAT_REQUEST_TYPE).build();
+        assertTrue(channel.writeOutbound(ping));
+        assertTrue(channel.writeInbound((ByteBuf) channel.readOutbound()));
+        RpcMessage decoded = channel.readInbound();
+        assertEquals(RpcConstants.VERSION_2, decoded.getVersion());
+        assertEquals(RpcConstants.FLAG_HEARTBEAT, decoded.getFlags());
+        assertEquals(RpcConstants.PING, decoded.getData());
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void zstdDictionaryIsOnlyUsedOnceThePeerAnnouncedIt() {
+        String service = "github.javaguide.CodecTestService";
+        ZstdDictSampler sampler = new ZstdDictSampler(1);
+        HessianSerializer hessianSerializer = new HessianSerializer();
+        for (int i = 0; i < 1000; i++) {
+            sampler.sample(service + "#hello", Unpooled.wrappedBuffer(hessianSerializer.serialize(largeRequest(service, i))));
+        }
+        ZstdDictionary dictionary = SingletonFactory.getInstance(ZstdDictionaries.class)
+                .register(service, 1, sampler.train(service, 4096));
+
+        EmbeddedChannel encoder = new EmbeddedChannel(new RpcMessageEncoder());
+        EmbeddedChannel decoder = new EmbeddedChannel(new RpcMessageDecoder());
+        // no handshake from the peer yet: plain zstd
+        RpcMessage decoded = roundTrip(encoder, decoder, largeRequest(service, -1));
+        assertEquals(CompressTypeEnum.ZSTD.getCode(), decoded.getCompress());
+        assertEquals(service, ((RpcRequest) RpcMessageBodyCodec.decodeBody(decoded)).getInterfaceName());
+
+        ByteBuf handshake = ConnectionContext.writeHandshake(encoder.alloc());
+        ConnectionContext.get(encoder).readHandshake(handshake);
+        handshake.release();
+        assertTrue(ConnectionContext.get(encoder).peerHasZstdDict(dictionary.getId()));
+        decoded = roundTrip(encoder, decoder, largeRequest(service, -1));
+        assertEquals(CompressTypeEnum.ZSTD_DICT.getCode(), decoded.getCompress());
+        assertEquals(service, ((RpcRequest) RpcMessageBodyCodec.decodeBody(decoded)).getInterfaceName());
+        encoder.finishAndReleaseAll();
+        decoder.finishAndReleaseAll();
+    }
+
+    private RpcMessage roundTrip(EmbeddedChannel encoder, EmbeddedChannel decoder, RpcRequest rpcRequest) {
+        RpcMessage rpcMessage = RpcMessage.builder()
+                .data(rpcRequest)
+                .codec(SerializationTypeEnum.HESSIAN.getCode())
+                .compress(CompressTypeEnum.ZSTD_DICT.getCode())
+                .requestId(8)
+                .messageType(RpcConstants.REQUEST_TYPE).build();
+        assertTrue(encoder.writeOutbound(rpcMessage));
+        assertTrue(decoder.writeInbound((ByteBuf) encoder.readOutbound()));
+        return decoder.readInbound();
+    }
+
+    private static RpcRequest largeRequest(String service, int i) {
+        StringBuilder description = new StringBuilder();
+        for (int j = 0; j < 40; j++) {
+            description.append("hello description ").append(i).append(' ').append(j).append(';');
+        }
+        return RpcRequest.builder().methodName("hello")
+                .parameters(new Object[]{"message " + i, description.toString()})
+                .interfaceName(service)
+                .paramTypes(new Class<?>[]{String.class, String.class})
+                .requestId(UUID.randomUUID().toString())
+                .group("")
+                .version("")
+                .build();
+    }
+
+    @Test
+    void bodiesToPeersWithoutHandshakeAreAlwaysCompressed() {
+        // peers from before the handshake fail on the NONE compress code, however small the body is
+        RpcResponse<Object> small = RpcResponse.success("hello", "1");
+        EmbeddedChannel encoder = new EmbeddedChannel(new RpcMessageEncoder());
+        EmbeddedChannel decoder = new EmbeddedChannel(new RpcMessageDecoder());
+        for (CompressTypeEnum configured : new CompressTypeEnum[]{CompressTypeEnum.GZIP, CompressTypeEnum.NONE}) {
+            assertTrue(encoder.writeOutbound(RpcMessage.builder()
+                    .data(small)
+                    .codec(SerializationTypeEnum.HESSIAN.getCode())
+                    .compress(configured.getCode())
+                    .requestId(3)
+                    .messageType(RpcConstants.RESPONSE_TYPE).build()));
+            assertTrue(decoder.writeInbound((ByteBuf) encoder.readOutbound()));
+            RpcMessage decoded = decoder.readInbound();
+            assertEquals(CompressTypeEnum.GZIP.getCode(), decoded.getCompress());
+            assertEquals("hello", ((RpcResponse<?>) RpcMessageBodyCodec.decodeBody(decoded)).getData());
+        }
+
+        // once the peer's handshake arrived small bodies go uncompressed
+        handshaken(encoder);
+        assertTrue(encoder.writeOutbound(RpcMessage.builder()
+                .data(small)
+                .codec(SerializationTypeEnum.HESSIAN.getCode())
+                .compress(CompressTypeEnum.GZIP.getCode())
+                .version(RpcConstants.VERSION)
+                .requestId(4)
+                .messageType(RpcConstants.RESPONSE_TYPE).build()));
+        assertTrue(decoder.writeInbound((ByteBuf) encoder.readOutbound()));
+        RpcMessage decoded = decoder.readInbound();
+        assertEquals(CompressTypeEnum.NONE.getCode(), decoded.getCompress());
+        RpcMessageBodyCodec.discardBody(decoded);
+        encoder.finishAndReleaseAll();
+        decoder.finishAndReleaseAll();
+    }
+
+    private static EmbeddedChannel handshaken(EmbeddedChannel channel) {
+        ByteBuf handshake = ConnectionContext.writeHandshake(channel.alloc());
+        ConnectionContext.get(channel).readHandshake(handshake);
+        handshake.release();
+        return channel;
+    }
+
+    private void requestRoundTrip(SerializationTypeEnum serializationType) {
+        requestRoundTrip(serializationType, false);
+    }
+
+    private void requestRoundTrip(SerializationTypeEnum serializationType, boolean preEncode) {
+        RpcRequest rpcRequest = RpcRequest.builder().methodName("hello")
+                .parameters(new Object[]{"sayhelooloo", "sayhelooloosayhelooloo"})
+                .interfaceName("github.javaguide.HelloService")
+                .paramTypes(new Class<?>[]{String.class, String.class})
+                .requestId(UUID.randomUUID().toString())
+                .group("group1")
+                .version("version1")
+                .build();
+        RpcMessage rpcMessage = RpcMessage.builder()
+                .data(rpcRequest)
+                .codec(serializationType.getCode())
+                .compress(CompressTypeEnum.GZIP.getCode())
+                .version(RpcConstants.VERSION)
+                .requestId(7)
+                .messageType(RpcConstants.REQUEST_TYPE).build();
+
+        EmbeddedChannel encoder = handshaken(new EmbeddedChannel(new RpcMessageEncoder()));
+        if (preEncode) {
+            RpcMessageBodyCodec.preEncode(rpcMessage, encoder);
+            assertTrue(rpcMessage.getBody().isReadable());
+        }
+        assertTrue(encoder.writeOutbound(rpcMessage));
+        ByteBuf frame = encoder.readOutbound();
+        // the pre-encoded body has been handed over to the outbound frame
+        assertNull(rpcMessage.getBody());
+
+        EmbeddedChannel decoder = new EmbeddedChannel(new RpcMessageDecoder());
+        assertTrue(decoder.writeInbound(frame));
+        RpcMessage decoded = decoder.readInbound();
+        // the serialized request is below the default rpc.compress.minSize, so it is sent uncompressed
+        assertEquals(CompressTypeEnum.NONE.getCode(), decoded.getCompress());
+        // only the header is decoded on the event loop
+        assertNull(decoded.getData());
+        assertEquals(RpcConstants.VERSION, decoded.getVersion());
+        assertEquals(7, decoded.getRequestId());
+
+        RpcRequest actual = (RpcRequest) RpcMessageBodyCodec.decodeBody(decoded);
+        assertNull(decoded.getBody());
+        assertEquals(RpcConstants.REQUEST_TYPE, decoded.getMessageType());
+        assertEquals(rpcRequest.getRequestId(), actual.getRequestId());
+        assertEquals(rpcRequest.getRpcServiceName(), actual.getRpcServiceName());
+        assertEquals("sayhelooloosayhelooloo", actual.getParameters()[1]);
+        encoder.finishAndReleaseAll();
+        decoder.finishAndReleaseAll();
+    }
+}
@@ -0,0 +1,95 @@
+package github.javaguide.serialize;
+
+import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.serialize.hessian.HessianSerializer;
+import github.javaguide.serialize.kyro.KryoSerializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.io.Serializable;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClassNameDictionaryTest {
+
+    @Test
+    void hessianWritesEachClassNameOncePerConnection() {
+        roundTrip(new HessianSerializer());
+    }
+
+    @Test
+    void kryoWritesEachClassNameOncePerConnection() {
+        roundTrip(new KryoSerializer());
+    }
+
+    @Test
+    void definitionsAreTakenOnce() {
+        ClassNameDictionary sender = new ClassNameDictionary();
+        assertEquals(1, sender.idOf("a.A"));
+        assertEquals(2, sender.idOf("b.B"));
+        assertEquals(1, sender.idOf("a.A"));
+        String definitions = sender.takeDefinitions();
+        assertEquals("1:a.A,b.B", definitions);
+        assertNull(sender.takeDefinitions());
+        assertEquals(3, sender.idOf("c.C"));
+        assertEquals("3:c.C", sender.takeDefinitions());
+
+        ClassNameDictionary receiver = new ClassNameDictionary();
+        receiver.define(definitions);
+        assertEquals("b.B", receiver.nameOf(2));
+        assertEquals("b.B", receiver.resolve("#2"));
+        assertEquals("java.lang.String", receiver.resolve("java.lang.String"));
+        assertThrows(RuntimeException.class, () -> receiver.nameOf(3));
+    }
+
+    private static void roundTrip(Serializer serializer) {
+        RpcResponse<Object> response = RpcResponse.success(new Greeting("hello"), "1");
+        ClassNameDictionary sender = new ClassNameDictionary();
+        ClassNameDictionary receiver = new ClassNameDictionary();
+        ByteBuf plain = Unpooled.buffer();
+        ByteBuf first = Unpooled.buffer();
+        ByteBuf second = Unpooled.buffer();
+        try {
+            serializer.serialize(response, plain);
+            ClassNameDictionary.bind(sender);
+            try {
+                serializer.serialize(response, first);
+                serializer.serialize(response, second);
+            } finally {
+                ClassNameDictionary.unbind();
+            }
+            assertTrue(second.readableBytes() < plain.readableBytes(), second.readableBytes() + " vs " + plain.readableBytes());
+            receiver.define(sender.takeDefinitions());
+
+            ClassNameDictionary.bind(receiver);
+            try {
+                for (ByteBuf body : new ByteBuf[]{first, second}) {
+                    RpcResponse<?> decoded = serializer.deserialize(body, RpcResponse.class);
+                    assertEquals("1", decoded.getRequestId());
+                    assertEquals("hello", ((Greeting) decoded.getData()).text);
+                }
+            } finally {
+                ClassNameDictionary.unbind();
+            }
+        } finally {
+            plain.release();
+            first.release();
+            second.release();
+        }
+    }
+
+    static class Greeting implements Serializable {
+        String text;
+
+        Greeting() {
+        }
+
+        Greeting(String text) {
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package github.javaguide.serialize;
+
+import github.javaguide.annotation.RpcMethod;
+import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.enums.SerializationTypeEnum;
+import github.javaguide.remoting.dto.RpcArguments;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ServiceTypesTest {
+
+    interface TypedService {
+        RpcResponse<List<RpcArguments>> call(Map<String, RpcRequest[]> requests, int count);
+    }
+
+    @Test
+    void collectsParameterReturnAndFieldTypes() {
+        assertEquals(Arrays.asList(RpcArguments.class, RpcRequest.class, RpcResponse.class),
+                Arrays.asList(ServiceTypes.of(TypedService.class).toArray()));
+    }
+
+    interface MixedService {
+        String plain(String s);
+
+        @RpcMethod(serialization = "protostuff")
+        String annotated(String s);
+    }
+
+    static class MixedServiceImpl implements MixedService {
+        @Override
+        @RpcMethod(serialization = "kyro")
+        public String plain(String s) {
+            return s;
+        }
+
+        @Override
+        public String annotated(String s) {
+            return s;
+        }
+    }
+
+    @Test
+    void onlyTheSerializationsTheServiceUsesArePrepared() {
+        RpcServiceConfig defaults = new RpcServiceConfig();
+        assertEquals(new HashSet<>(Arrays.asList(SerializationTypeEnum.HESSIAN.getCode(), SerializationTypeEnum.PROTOSTUFF.getCode())),
+                ServiceTypes.serializations(defaults, MixedService.class, null));
+        // the implementation's annotation wins on the server
+        assertEquals(new HashSet<>(Arrays.asList(SerializationTypeEnum.KYRO.getCode(), SerializationTypeEnum.PROTOSTUFF.getCode())),
+                ServiceTypes.serializations(defaults, MixedService.class, MixedServiceImpl.class));
+        RpcServiceConfig fury = RpcServiceConfig.builder().serialization("fury").build();
+        assertEquals(Collections.singleton(SerializationTypeEnum.FURY.getCode()),
+                ServiceTypes.serializations(fury, TypedService.class, null));
+    }
+}
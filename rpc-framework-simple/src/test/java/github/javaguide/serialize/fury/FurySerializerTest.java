@@ -0,0 +1,77 @@
+package github.javaguide.serialize.fury;
+
+import github.javaguide.Hello;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class FurySerializerTest {
+
+    @Test
+    void helloRoundTrip() {
+        Hello hello = new Hello("111", "222");
+        RpcRequest target = RpcRequest.builder().methodName("hello")
+                .parameters(new Object[]{hello})
+                .interfaceName("github.javaguide.HelloService")
+                .paramTypes(new Class<?>[]{Hello.class})
+                .requestId(UUID.randomUUID().toString())
+                .group("test1")
+                .version("version1")
+                .build();
+        FurySerializer furySerializer = new FurySerializer();
+        furySerializer.prepare(Collections.singleton(Hello.class));
+        byte[] bytes = furySerializer.serialize(target);
+        RpcRequest actual = furySerializer.deserialize(bytes, RpcRequest.class);
+        assertEquals(target.getRequestId(), actual.getRequestId());
+        assertArrayEquals(target.getParamTypes(), actual.getParamTypes());
+        Hello actualHello = (Hello) actual.getParameters()[0];
+        assertEquals("111", actualHello.getMessage());
+        assertEquals("222", actualHello.getDescription());
+
+        // written into and read from a direct buffer, the same bytes as the byte[] path
+        ByteBuf out = Unpooled.directBuffer();
+        try {
+            furySerializer.serialize(target, out);
+            assertArrayEquals(bytes, ByteBufUtil.getBytes(out));
+            FurySerializer otherSide = new FurySerializer();
+            otherSide.prepare(Collections.singleton(Hello.class));
+            assertEquals("222", ((Hello) otherSide.deserialize(out, RpcRequest.class).getParameters()[0]).getDescription());
+            assertEquals(0, out.readableBytes());
+        } finally {
+            out.release();
+        }
+    }
+
+    @Test
+    void genericCollectionsRoundTrip() {
+        Map<String, List<Hello>> data = new HashMap<>();
+        data.put("a", Arrays.asList(new Hello("1", "one"), new Hello("2", "two")));
+        data.put("b", new ArrayList<>());
+        data.put("c", null);
+        FurySerializer furySerializer = new FurySerializer();
+        RpcResponse<?> actual = furySerializer.deserialize(
+                furySerializer.serialize(RpcResponse.success(data, "7")), RpcResponse.class);
+        assertEquals("7", actual.getRequestId());
+        @SuppressWarnings("unchecked")
+        Map<String, List<Hello>> actualData = (Map<String, List<Hello>>) actual.getData();
+        assertEquals(data.keySet(), actualData.keySet());
+        assertEquals("two", actualData.get("a").get(1).getDescription());
+        assertEquals(0, actualData.get("b").size());
+        assertNull(actualData.get("c"));
+    }
+}
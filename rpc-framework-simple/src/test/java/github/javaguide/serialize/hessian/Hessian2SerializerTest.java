@@ -0,0 +1,61 @@
+package github.javaguide.serialize.hessian;
+
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Hessian2SerializerTest {
+
+    private static RpcRequest request() {
+        return RpcRequest.builder().methodName("hello")
+                .parameters(new Object[]{"sayhelooloo", "sayhelooloosayhelooloo"})
+                .interfaceName("github.javaguide.HelloService")
+                .paramTypes(new Class<?>[]{String.class, String.class})
+                .requestId(UUID.randomUUID().toString())
+                .group("group1")
+                .version("version1")
+                .build();
+    }
+
+    @Test
+    void hessian2SerializerTest() {
+        RpcRequest target = request();
+        Hessian2Serializer hessian2Serializer = new Hessian2Serializer();
+        // the output and input are reused, every round trip must start from a clean state
+        for (int i = 0; i < 3; i++) {
+            byte[] bytes = hessian2Serializer.serialize(target);
+            RpcRequest actual = hessian2Serializer.deserialize(bytes, RpcRequest.class);
+            assertEquals(target.getGroup(), actual.getGroup());
+            assertEquals(target.getVersion(), actual.getVersion());
+            assertEquals(target.getRequestId(), actual.getRequestId());
+            assertEquals(String.class, actual.getParamTypes()[1]);
+        }
+        RpcResponse<?> response = hessian2Serializer.deserialize(
+                hessian2Serializer.serialize(RpcResponse.success("hello", "1")), RpcResponse.class);
+        assertEquals("hello", response.getData());
+    }
+
+    @Test
+    void hessian2SerializeToByteBufTest() {
+        RpcRequest target = request();
+        Hessian2Serializer hessian2Serializer = new Hessian2Serializer();
+        ByteBuf out = Unpooled.directBuffer();
+        try {
+            hessian2Serializer.serialize(target, out);
+            assertArrayEquals(hessian2Serializer.serialize(target), ByteBufUtil.getBytes(out));
+            assertTrue(out.readableBytes() < new HessianSerializer().serialize(target).length);
+            assertEquals(target.getRequestId(), hessian2Serializer.deserialize(out, RpcRequest.class).getRequestId());
+        } finally {
+            out.release();
+        }
+    }
+}
@@ -1,10 +1,14 @@
 package github.javaguide.serialize.hessian;
 
 import github.javaguide.remoting.dto.RpcRequest;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
 import org.junit.jupiter.api.Test;
 
 import java.util.UUID;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 class HessianSerializerTest {
@@ -26,4 +30,24 @@ class HessianSerializerTest {
         assertEquals(target.getVersion(), actual.getVersion());
         assertEquals(target.getRequestId(), actual.getRequestId());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void hessianSerializeToByteBufTest() {
+        RpcRequest target = RpcRequest.builder().methodName("hello")
+                .parameters(new Object[]{"sayhelooloo", "sayhelooloosayhelooloo"})
+                .interfaceName("github.javaguide.HelloService")
+                .paramTypes(new Class<?>[]{String.class, String.class})
+                .requestId(UUID.randomUUID().toString())
+                .group("group1")
+                .version("version1")
+                .build();
+        HessianSerializer hessianSerializer = new HessianSerializer();
+        ByteBuf out = Unpooled.directBuffer();
+        try {
+            hessianSerializer.serialize(target, out);
+            assertArrayEquals(hessianSerializer.serialize(target), ByteBufUtil.getBytes(out));
+        } finally {
+            out.release();
+        }
+    }
+}
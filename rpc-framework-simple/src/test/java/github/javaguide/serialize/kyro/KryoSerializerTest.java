@@ -1,11 +1,19 @@
 package github.javaguide.serialize.kyro;
 
 import github.javaguide.remoting.dto.RpcRequest;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import org.junit.jupiter.api.Test;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class KryoSerializerTest {
 
@@ -26,4 +34,76 @@ class KryoSerializerTest {
         assertEquals(target.getVersion(), actual.getVersion());
         assertEquals(target.getRequestId(), actual.getRequestId());
     }
-}
\ No newline at end of file
+
+    @Test
+    void preparedTypesAreWrittenByStableId() {
+        RpcRequest target = RpcRequest.builder().methodName("hello")
+                .parameters(new Object[]{new Greeting("sayhelooloo")})
+                .interfaceName("github.javaguide.HelloService")
+                .build();
+        KryoSerializer unprepared = new KryoSerializer();
+        KryoSerializer prepared = new KryoSerializer();
+        prepared.prepare(Collections.singleton(Greeting.class));
+        byte[] byName = unprepared.serialize(target);
+        byte[] byId = prepared.serialize(target);
+        // kryo marks the end of an ascii name in its last byte, look for the rest
+        String name = Greeting.class.getName().substring(0, Greeting.class.getName().length() - 1);
+        assertTrue(new String(byName, StandardCharsets.ISO_8859_1).contains(name));
+        assertFalse(new String(byId, StandardCharsets.ISO_8859_1).contains(name));
+
+        KryoSerializer otherSide = new KryoSerializer();
+        otherSide.prepare(Collections.singleton(Greeting.class));
+        Greeting greeting = (Greeting) otherSide.deserialize(byId, RpcRequest.class).getParameters()[0];
+        assertEquals("sayhelooloo", greeting.text);
+    }
+
+    @Test
+    void collidingNamesProbeTheSameIdsOnBothEnds() {
+        // "Aa" and "BB" have the same String hash, so do the nested class names
+        assertEquals(Aa.class.getName().hashCode(), BB.class.getName().hashCode());
+        KryoSerializer server = new KryoSerializer();
+        server.prepare(Arrays.asList(Aa.class, BB.class));
+        KryoSerializer client = new KryoSerializer();
+        client.prepare(Arrays.asList(BB.class, Aa.class));
+        assertEquals(KryoSerializer.stableId(Aa.class), server.registeredId(Aa.class));
+        assertEquals(KryoSerializer.nextId(KryoSerializer.stableId(Aa.class)), server.registeredId(BB.class));
+        assertEquals(server.registeredId(Aa.class), client.registeredId(Aa.class));
+        assertEquals(server.registeredId(BB.class), client.registeredId(BB.class));
+
+        ByteBuf bb = Unpooled.buffer();
+        server.serializeValue(new BB(), bb);
+        assertTrue(client.deserializeValue(bb) instanceof BB);
+        ByteBuf aa = Unpooled.buffer();
+        server.serializeValue(new Aa(), aa);
+        assertTrue(client.deserializeValue(aa) instanceof Aa);
+    }
+
+    @Test
+    void typesPreparedOnlyByThePeerFailWithTheCause() {
+        KryoSerializer server = new KryoSerializer();
+        server.prepare(Collections.singleton(Greeting.class));
+        ByteBuf buf = Unpooled.buffer();
+        server.serializeValue(new Greeting("sayhelooloo"), buf);
+
+        KryoSerializer client = new KryoSerializer();
+        KryoSerializer.SerializeException e = assertThrows(KryoSerializer.SerializeException.class, () -> client.deserializeValue(buf));
+        assertTrue(e.getCause().getMessage().contains("the peer prepared this type"));
+    }
+
+    static class Aa {
+    }
+
+    static class BB {
+    }
+
+    static class Greeting {
+        String text;
+
+        Greeting() {
+        }
+
+        Greeting(String text) {
+            this.text = text;
+        }
+    }
+}
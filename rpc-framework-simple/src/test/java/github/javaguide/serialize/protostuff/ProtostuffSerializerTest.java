@@ -0,0 +1,53 @@
+package github.javaguide.serialize.protostuff;
+
+import github.javaguide.remoting.dto.RpcRequest;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ProtostuffSerializerTest {
+
+    @Test
+    void concurrentSerializationDoesNotShareBuffers() throws Exception {
+        ProtostuffSerializer serializer = new ProtostuffSerializer();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                String group = "group" + t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        RpcRequest target = RpcRequest.builder()
+                                .interfaceName("github.javaguide.HelloService")
+                                .methodName("hello")
+                                .group(group)
+                                .version("version" + i).build();
+                        ByteBuf out = Unpooled.buffer();
+                        try {
+                            serializer.serialize(target, out);
+                            RpcRequest actual = serializer.deserialize(out, RpcRequest.class);
+                            assertEquals(group, actual.getGroup());
+                            assertEquals("version" + i, actual.getVersion());
+                            assertEquals(target.getVersion(), serializer.deserialize(serializer.serialize(target), RpcRequest.class).getVersion());
+                        } finally {
+                            out.release();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}